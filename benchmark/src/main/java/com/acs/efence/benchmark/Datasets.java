@@ -0,0 +1,235 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.benchmark;
+
+import com.acs.efence.AcsEFInterface;
+import com.acs.efence.ElectronicJsonAPI;
+import com.acs.efence.PolygonStore;
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.MatchResult;
+import com.acs.efence.model.Point;
+import com.acs.efence.model.Ring;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 基准测试使用的数据文件和测试坐标。
+ * <p>
+ * 设置系统属性 {@code acs.efence.data} 时使用指定的region_polygon.json，否则在临时目录中生成 {@link SyntheticRegions} 数据。
+ * 同一个JVM中的数据文件和快照文件只生成一次。
+ */
+public final class Datasets {
+
+    /**
+     * 测试坐标的分布。
+     */
+    public enum Distribution {
+        /**
+         * 集中在少数几个城市中心附近，模拟车辆和手机定位。
+         */
+        URBAN,
+        /**
+         * 在数据覆盖范围内均匀分布。
+         */
+        UNIFORM,
+        /**
+         * 紧邻多边形边界，每个坐标都需要执行射线法。
+         */
+        BOUNDARY,
+        /**
+         * 位于数据覆盖范围之外。
+         */
+        OUTSIDE
+    }
+
+    private static Path json;
+    private static Path snapshot;
+    private static List<Ring> rings;
+
+    private Datasets() {
+    }
+
+    /**
+     * 获取JSON数据文件路径。
+     *
+     * @return JSON数据文件的绝对路径。
+     */
+    public static synchronized String json() {
+        if (json == null) {
+            String configured = System.getProperty("acs.efence.data");
+            try {
+                if (configured != null) {
+                    json = Paths.get(configured).toAbsolutePath();
+                } else {
+                    json = Files.createTempFile("acs-efence-synthetic", ".json");
+                    json.toFile().deleteOnExit();
+                    new SyntheticRegions().write(json);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return json.toString();
+    }
+
+    /**
+     * 获取由JSON数据生成的快照文件路径。
+     *
+     * @return 快照文件的绝对路径。
+     */
+    public static synchronized String snapshot() {
+        if (snapshot == null) {
+            try {
+                snapshot = Files.createTempFile("acs-efence-synthetic", ".snapshot");
+                snapshot.toFile().deleteOnExit();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            PolygonStore.write(new ElectronicJsonAPI(json()), snapshot.toString());
+        }
+        return snapshot.toString();
+    }
+
+    /**
+     * 生成测试坐标。
+     *
+     * @param distribution 坐标分布。
+     * @param count 坐标数量。
+     * @param seed 随机种子。
+     * @return 依次为经度数组和纬度数组。
+     */
+    public static double[][] points(Distribution distribution, int count, long seed) {
+        Random random = new Random(seed);
+        double[] lngs = new double[count], lats = new double[count];
+        BoundingBox extent = extent();
+        switch (distribution) {
+            case URBAN: {
+                // 8个城市中心，坐标按正态分布集中在中心约0.3度范围内
+                double[][] centers = new double[8][];
+                for (int i = 0; i < centers.length; i++) centers[i] = uniform(random, extent);
+                for (int i = 0; i < count; i++) {
+                    double[] center = centers[random.nextInt(centers.length)];
+                    lngs[i] = center[0] + random.nextGaussian() * 0.3;
+                    lats[i] = center[1] + random.nextGaussian() * 0.3;
+                }
+                break;
+            }
+            case UNIFORM:
+                for (int i = 0; i < count; i++) {
+                    double[] point = uniform(random, extent);
+                    lngs[i] = point[0];
+                    lats[i] = point[1];
+                }
+                break;
+            case BOUNDARY: {
+                // 在随机选取的多边形边上取点，并沿任意方向偏移不超过约10米
+                List<Ring> rings = rings();
+                for (int i = 0; i < count; i++) {
+                    Ring ring = rings.get(random.nextInt(rings.size()));
+                    int k = random.nextInt(ring.size()), next = (k + 1) % ring.size();
+                    double t = random.nextDouble();
+                    lngs[i] = ring.lng(k) + (ring.lng(next) - ring.lng(k)) * t + (random.nextDouble() - 0.5) * 2e-4;
+                    lats[i] = ring.lat(k) + (ring.lat(next) - ring.lat(k)) * t + (random.nextDouble() - 0.5) * 2e-4;
+                }
+                break;
+            }
+            case OUTSIDE:
+                // 覆盖范围东侧和南侧的海域
+                for (int i = 0; i < count; i++) {
+                    lngs[i] = extent.getMaxLng() + 1 + random.nextDouble() * 20;
+                    lats[i] = extent.getMinLat() - 15 + random.nextDouble() * 30;
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(distribution.name());
+        }
+        return new double[][]{lngs, lats};
+    }
+
+    /**
+     * 为每个测试坐标选择toCompare使用的区域代码：命中区域时使用其区县、城市或省份代码，未命中时使用任意区域代码。
+     *
+     * @param api 电子围栏API。
+     * @param points 测试坐标。
+     * @param seed 随机种子。
+     * @return 与测试坐标一一对应的区域代码。
+     */
+    public static String[] codes(AcsEFInterface api, double[][] points, long seed) {
+        Random random = new Random(seed);
+        List<String> all = new ArrayList<>();
+        for (int i = 0; i < api.getRegionTable().size(); i++) all.add(api.getRegionTable().code(i));
+        String[] codes = new String[points[0].length];
+        for (int i = 0; i < codes.length; i++) {
+            MatchResult match = api.toMatch(new Point(points[0][i], points[1][i]));
+            String code = match == null ? null : pick(random, match.getAreaCode(), match.getCityCode(), match.getProvinceCode());
+            codes[i] = code != null ? code : all.get(random.nextInt(all.size()));
+        }
+        return codes;
+    }
+
+    private static String pick(Random random, String... candidates) {
+        String code = candidates[random.nextInt(candidates.length)];
+        if (code != null && !code.isEmpty()) return code;
+        for (String candidate : candidates) if (candidate != null && !candidate.isEmpty()) return candidate;
+        return null;
+    }
+
+    private static double[] uniform(Random random, BoundingBox extent) {
+        return new double[]{extent.getMinLng() + random.nextDouble() * (extent.getMaxLng() - extent.getMinLng()),
+                extent.getMinLat() + random.nextDouble() * (extent.getMaxLat() - extent.getMinLat())};
+    }
+
+    /**
+     * 读取数据文件中的全部多边形环。
+     */
+    private static synchronized List<Ring> rings() {
+        if (rings != null) return rings;
+        rings = new ArrayList<>();
+        Gson gson = new Gson();
+        try (JsonReader reader = new JsonReader(new InputStreamReader(Files.newInputStream(Paths.get(json())), StandardCharsets.UTF_8))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Map<?, ?> record = gson.fromJson(reader, Map.class);
+                rings.add(Ring.parse((String) record.get("polygon")));
+            }
+            reader.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rings;
+    }
+
+    /**
+     * 数据覆盖范围。
+     */
+    private static BoundingBox extent() {
+        BoundingBox extent = BoundingBox.empty();
+        rings().forEach(ring -> extent.union(ring.getBounds()));
+        return extent;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.benchmark;
+
+import com.acs.efence.AcsEFInterface;
+import com.acs.efence.ElectronicJsonAPI;
+import com.acs.efence.ElectronicMappedAPI;
+import com.acs.efence.ElectronicSnapshotAPI;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.function.Supplier;
+
+/**
+ * 各种加载方式的常驻堆内存报告。
+ * <p>
+ * 生成数据文件后先完全回收并记录已用堆内存作为基准，之后每种加载方式依次加载数据并保持引用，
+ * 完全回收后的已用堆内存与基准之差即为数据集占用的常驻堆内存；加载下一种方式时上一个数据集已不再被引用。
+ * 内存映射方式的顶点数据位于堆外，另行报告映射文件的大小。建议使用固定的堆大小运行，例如：
+ * <pre>
+ * java -Xms2g -Xmx2g -cp target/benchmarks.jar com.acs.efence.benchmark.FootprintReport
+ * </pre>
+ */
+public final class FootprintReport {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private FootprintReport() {
+    }
+
+    public static void main(String[] args) {
+        String json = Datasets.json();
+        String snapshot = Datasets.snapshot();
+        System.out.printf("data: %s (%.1f MB), snapshot %.1f MB%n", json,
+                new java.io.File(json).length() / 1048576.0, new java.io.File(snapshot).length() / 1048576.0);
+        long baseline = settledHeap();
+        report("JSON", baseline, () -> new ElectronicJsonAPI(json));
+        report("SNAPSHOT", baseline, () -> new ElectronicSnapshotAPI(snapshot));
+        report("MAPPED", baseline, () -> new ElectronicMappedAPI(snapshot));
+    }
+
+    private static void report(String name, long baseline, Supplier<AcsEFInterface> loader) {
+        long start = System.nanoTime();
+        AcsEFInterface api = loader.get();
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long after = settledHeap();
+        System.out.printf("%-9s retained heap %7.1f MB, load %5d ms, %d regions%n",
+                name, (after - baseline) / 1048576.0, millis, api.getRegionTable().size());
+    }
+
+    /**
+     * 多次执行完全回收后的已用堆内存。
+     */
+    private static long settledHeap() {
+        for (int i = 0; i < 3; i++) System.gc();
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
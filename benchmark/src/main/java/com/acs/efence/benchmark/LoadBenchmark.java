@@ -0,0 +1,99 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.benchmark;
+
+import com.acs.efence.AcsEFInterface;
+import com.acs.efence.ElectronicJsonAPI;
+import com.acs.efence.ElectronicJsonLoader;
+import com.acs.efence.ElectronicMappedAPI;
+import com.acs.efence.ElectronicSnapshotAPI;
+import com.acs.efence.model.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据加载基准测试：JSON解析以及各种电子围栏API的完整初始化耗时。
+ * 加载是一次性操作，使用单次执行模式，每次测量都从头加载一份新的数据。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class LoadBenchmark {
+
+    private String json;
+    private String snapshot;
+
+    @Setup
+    public void setup() {
+        json = Datasets.json();
+        snapshot = Datasets.snapshot();
+    }
+
+    /**
+     * 使用Gson一次性反序列化全部记录，不解析坐标字符串。
+     */
+    @Benchmark
+    public List<Polygon> loaderLoad() {
+        return ElectronicJsonLoader.load(json);
+    }
+
+    /**
+     * 逐条读取记录并并行解析坐标字符串。
+     */
+    @Benchmark
+    public void loaderStream(Blackhole blackhole) {
+        ElectronicJsonLoader.stream(json, (polygon, ring) -> blackhole.consume(ring));
+    }
+
+    /**
+     * 从JSON构建完整的电子围栏API，包括层级树、子节点索引和网格索引。
+     */
+    @Benchmark
+    public AcsEFInterface jsonApi() {
+        return new ElectronicJsonAPI(json);
+    }
+
+    /**
+     * 从快照文件整块读入并校验。
+     */
+    @Benchmark
+    public AcsEFInterface snapshotApi() {
+        return new ElectronicSnapshotAPI(snapshot);
+    }
+
+    /**
+     * 以内存映射方式打开快照文件。
+     */
+    @Benchmark
+    public AcsEFInterface mappedApi() {
+        return new ElectronicMappedAPI(snapshot);
+    }
+}
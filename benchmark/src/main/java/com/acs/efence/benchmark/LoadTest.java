@@ -0,0 +1,157 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.benchmark;
+
+import com.acs.efence.ElectronicJsonAPI;
+import com.acs.efence.metrics.LatencyHistogram;
+import com.acs.efence.server.FenceServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地查询服务的压力测试。
+ * <p>
+ * 未指定服务地址时在本进程中启动 {@link FenceServer}，监听localhost的任意空闲端口，数据同 {@link Datasets#json()}。
+ * 多个客户端线程各自使用长连接连续发送请求，预热结束后统计请求数、坐标数、错误数和请求耗时分位数。
+ * 通过系统属性调整：
+ * <ul>
+ *     <li>{@code acs.efence.load.threads}：客户端线程数，默认64；</li>
+ *     <li>{@code acs.efence.load.seconds}：统计时长（秒），默认10，之前另有 {@code acs.efence.load.warmup} 秒预热，默认3；</li>
+ *     <li>{@code acs.efence.load.batch}：为0时发送单点 {@code GET /match}，大于0时每个请求以 {@code POST /match} 发送该数量的坐标，默认0；</li>
+ *     <li>{@code acs.efence.load.distribution}：坐标分布，见 {@link Datasets.Distribution}，默认URBAN。</li>
+ * </ul>
+ * <pre>
+ * java -cp target/benchmarks.jar com.acs.efence.benchmark.LoadTest
+ * java -Dacs.efence.load.batch=1000 -cp target/benchmarks.jar com.acs.efence.benchmark.LoadTest http://127.0.0.1:8866
+ * </pre>
+ */
+public final class LoadTest {
+
+    /**
+     * 测试坐标数量，取2的幂便于循环取下标。
+     */
+    private static final int POINTS = 1 << 16;
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Integer.getInteger("acs.efence.load.threads", 64);
+        int seconds = Integer.getInteger("acs.efence.load.seconds", 10);
+        int warmup = Integer.getInteger("acs.efence.load.warmup", 3);
+        int batch = Integer.getInteger("acs.efence.load.batch", 0);
+        Datasets.Distribution distribution = Datasets.Distribution.valueOf(System.getProperty("acs.efence.load.distribution", "URBAN"));
+        FenceServer server = null;
+        String base;
+        if (args.length > 0) {
+            base = args[0];
+        } else {
+            int workers = Runtime.getRuntime().availableProcessors() * 2;
+            server = new FenceServer(new ElectronicJsonAPI(Datasets.json()),
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), workers, workers * 64).start();
+            base = "http://127.0.0.1:" + server.getPort();
+        }
+        double[][] points = Datasets.points(distribution, POINTS, 42);
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong requests = new AtomicLong(), errors = new AtomicLong();
+        long measureFrom = System.nanoTime() + warmup * 1_000_000_000L;
+        long end = measureFrom + seconds * 1_000_000_000L;
+        Thread[] clients = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int offset = t * (POINTS / threads);
+            clients[t] = new Thread(() -> {
+                int next = offset;
+                long now;
+                while ((now = System.nanoTime()) < end) {
+                    boolean ok;
+                    try {
+                        ok = batch > 0 ? post(base, points, next, batch) : get(base, points, next);
+                    } catch (IOException e) {
+                        ok = false;
+                    }
+                    next += Math.max(batch, 1);
+                    if (now < measureFrom) continue;
+                    latency.record(System.nanoTime() - now);
+                    requests.incrementAndGet();
+                    if (!ok) errors.incrementAndGet();
+                }
+            }, "load-" + t);
+            clients[t].start();
+        }
+        for (Thread client : clients) client.join();
+        if (server != null) server.close();
+        long count = requests.get();
+        System.out.printf("%s %s, %d threads, %s: %.0f requests/s, %.0f points/s, %d errors%n", base, distribution, threads,
+                batch > 0 ? "POST /match x" + batch : "GET /match", count / (double) seconds, count * (double) Math.max(batch, 1) / seconds,
+                errors.get());
+        System.out.printf("latency us: p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n", latency.getValueAtPercentile(50) / 1e3,
+                latency.getValueAtPercentile(99) / 1e3, latency.getValueAtPercentile(99.9) / 1e3, latency.getMax() / 1e3);
+    }
+
+    private static boolean get(String base, double[][] points, int next) throws IOException {
+        int i = next & (POINTS - 1);
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + "/match?lng=" + points[0][i] + "&lat=" + points[1][i]).openConnection();
+        return drain(connection);
+    }
+
+    private static boolean post(String base, double[][] points, int next, int batch) throws IOException {
+        StringBuilder lngs = new StringBuilder("{\"lngs\":["), lats = new StringBuilder("],\"lats\":[");
+        for (int k = 0; k < batch; k++) {
+            int i = (next + k) & (POINTS - 1);
+            if (k > 0) {
+                lngs.append(',');
+                lats.append(',');
+            }
+            lngs.append(points[0][i]);
+            lats.append(points[1][i]);
+        }
+        byte[] body = lngs.append(lats).append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = (HttpURLConnection) new URL(base + "/match").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(body.length);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        return drain(connection);
+    }
+
+    /**
+     * 读完响应体，连接归还长连接缓存以便复用。
+     */
+    private static boolean drain(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                ByteArrayOutputStream sink = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = in.read(buffer)) > 0) sink.write(buffer, 0, n);
+            }
+        }
+        return status == 200;
+    }
+}
@@ -0,0 +1,106 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.benchmark;
+
+import com.acs.efence.AcsEFInterface;
+import com.acs.efence.ElectronicJsonAPI;
+import com.acs.efence.model.CompareResult;
+import com.acs.efence.model.MatchResult;
+import com.acs.efence.model.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询基准测试：不同坐标分布下单个坐标的toMatch和toCompare耗时，分别在单线程和全部处理器线程下测量。
+ * 每次调用依次取下一个测试坐标，测试坐标的数量远大于缓存能容纳的结果，不会反复命中同一个坐标。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class QueryBenchmark {
+
+    /**
+     * 测试坐标数量，取2的幂便于循环取下标。
+     */
+    private static final int POINTS = 1 << 16;
+
+    @Param({"URBAN", "UNIFORM", "BOUNDARY", "OUTSIDE"})
+    public Datasets.Distribution distribution;
+
+    private AcsEFInterface api;
+    private Point[] points;
+    private String[] codes;
+
+    @Setup
+    public void setup() {
+        api = new ElectronicJsonAPI(Datasets.json());
+        double[][] coordinates = Datasets.points(distribution, POINTS, 42);
+        points = new Point[POINTS];
+        for (int i = 0; i < POINTS; i++) points[i] = new Point(coordinates[0][i], coordinates[1][i]);
+        codes = Datasets.codes(api, coordinates, 42);
+    }
+
+    /**
+     * 每个线程各自的测试坐标游标。
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+
+        int next() {
+            return next++ & (POINTS - 1);
+        }
+    }
+
+    @Benchmark
+    public MatchResult toMatch(Cursor cursor) {
+        return api.toMatch(points[cursor.next()]);
+    }
+
+    @Benchmark
+    public CompareResult toCompare(Cursor cursor) {
+        int i = cursor.next();
+        return api.toCompare(codes[i], points[i]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public MatchResult toMatchAllThreads(Cursor cursor) {
+        return api.toMatch(points[cursor.next()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public CompareResult toCompareAllThreads(Cursor cursor) {
+        int i = cursor.next();
+        return api.toCompare(codes[i], points[i]);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.benchmark;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * 合成的省、市、区县三级区域数据生成器，输出格式与region_polygon.json相同，基准测试无需原始数据文件。
+ * <p>
+ * 覆盖范围内先生成一张带随机扰动的格点网，每条格点边再插入若干带垂直扰动的中间点；
+ * 区县由相邻的若干格点单元组成，城市由相邻的若干区县组成，省份由相邻的若干城市组成。
+ * 同一条格点边的中间点只由边的位置决定，相邻区域共享完全相同的边界顶点，子区域恰好铺满上级区域，
+ * 与真实行政区划数据一样存在大量共享边界，各层级多边形的顶点数也与真实数据处于同一量级。
+ */
+public final class SyntheticRegions {
+
+    /**
+     * 覆盖范围，与国内行政区划数据大致相同。
+     */
+    static final double MIN_LNG = 73.5, MAX_LNG = 135.0, MIN_LAT = 18.0, MAX_LAT = 53.5;
+
+    /**
+     * 每个方向的省份数、每个省份每个方向的城市数、每个城市每个方向的区县数、每个区县每个方向的格点单元数。
+     */
+    private final int provinces, cities, areas, cells;
+
+    /**
+     * 每条格点边插入的中间点数量。
+     */
+    private final int subdivisions;
+
+    /**
+     * 随机种子，相同参数和种子生成相同的数据。
+     */
+    private final long seed;
+
+    /**
+     * 扰动后的格点坐标。
+     */
+    private final double[][] latticeLng, latticeLat;
+
+    /**
+     * 使用默认规模创建生成器：36个省份、324个城市、2916个区县，省份边界约1300个顶点，与真实数据规模相近。
+     */
+    public SyntheticRegions() {
+        this(6, 3, 3, 4, 8, 20240101L);
+    }
+
+    /**
+     * 创建生成器。
+     *
+     * @param provinces 每个方向的省份数。
+     * @param cities 每个省份每个方向的城市数。
+     * @param areas 每个城市每个方向的区县数。
+     * @param cells 每个区县每个方向的格点单元数。
+     * @param subdivisions 每条格点边插入的中间点数量。
+     * @param seed 随机种子。
+     */
+    public SyntheticRegions(int provinces, int cities, int areas, int cells, int subdivisions, long seed) {
+        this.provinces = provinces;
+        this.cities = cities;
+        this.areas = areas;
+        this.cells = cells;
+        this.subdivisions = subdivisions;
+        this.seed = seed;
+        int n = provinces * cities * areas * cells;
+        double stepLng = (MAX_LNG - MIN_LNG) / n, stepLat = (MAX_LAT - MIN_LAT) / n;
+        Random random = new Random(seed);
+        latticeLng = new double[n + 1][n + 1];
+        latticeLat = new double[n + 1][n + 1];
+        for (int i = 0; i <= n; i++) {
+            for (int j = 0; j <= n; j++) {
+                // 覆盖范围四周的格点不扰动，保证最外层边界为矩形
+                boolean border = i == 0 || j == 0 || i == n || j == n;
+                latticeLng[i][j] = MIN_LNG + i * stepLng + (border ? 0 : (random.nextDouble() - 0.5) * 0.4 * stepLng);
+                latticeLat[i][j] = MIN_LAT + j * stepLat + (border ? 0 : (random.nextDouble() - 0.5) * 0.4 * stepLat);
+            }
+        }
+    }
+
+    /**
+     * 将合成数据写入文件。
+     *
+     * @param file 输出文件路径。
+     * @throws IOException 如果写入失败。
+     */
+    public void write(Path file) throws IOException {
+        try (Writer out = new OutputStreamWriter(Files.newOutputStream(file), StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(out)) {
+            json.beginArray();
+            int areaCells = cells, cityCells = areas * cells, provinceCells = cities * areas * cells;
+            for (int p = 0; p < provinces * provinces; p++) {
+                int pi = p % provinces, pj = p / provinces;
+                String pCode = String.format("%02d0000", 11 + p);
+                record(json, pCode, "CHN", pCode, "", "", 1,
+                        pi * provinceCells, pj * provinceCells, provinceCells);
+                for (int c = 0; c < cities * cities; c++) {
+                    int ci = pi * cities + c % cities, cj = pj * cities + c / cities;
+                    String cCode = pCode.substring(0, 2) + String.format("%02d00", c + 1);
+                    record(json, cCode, pCode, pCode, cCode, "", 2,
+                            ci * cityCells, cj * cityCells, cityCells);
+                    for (int a = 0; a < areas * areas; a++) {
+                        int ai = ci * areas + a % areas, aj = cj * areas + a / areas;
+                        String aCode = cCode.substring(0, 4) + String.format("%02d", a + 1);
+                        record(json, aCode, cCode, pCode, cCode, aCode, 3,
+                                ai * areaCells, aj * areaCells, areaCells);
+                    }
+                }
+            }
+            json.endArray();
+        }
+    }
+
+    private void record(JsonWriter json, String code, String parentCode, String pCode, String cCode, String aCode,
+                        int level, int i0, int j0, int size) throws IOException {
+        json.beginObject()
+                .name("code").value(code)
+                .name("parent_code").value(parentCode)
+                .name("p_code").value(pCode)
+                .name("c_code").value(cCode)
+                .name("a_code").value(aCode)
+                .name("level").value(level)
+                .name("polygon").value(outline(i0, j0, size))
+                .endObject();
+    }
+
+    /**
+     * 按逆时针方向输出格点块的外边界，依次经过下、右、上、左四条边。
+     */
+    private String outline(int i0, int j0, int size) {
+        StringBuilder text = new StringBuilder();
+        for (int i = i0; i < i0 + size; i++) edge(text, i, j0, i + 1, j0);
+        for (int j = j0; j < j0 + size; j++) edge(text, i0 + size, j, i0 + size, j + 1);
+        for (int i = i0 + size; i > i0; i--) edge(text, i, j0 + size, i - 1, j0 + size);
+        for (int j = j0 + size; j > j0; j--) edge(text, i0, j, i0, j - 1);
+        return text.toString();
+    }
+
+    /**
+     * 输出一条格点边的起点和中间点，不含终点。中间点只由边的位置决定，与遍历方向无关。
+     */
+    private void edge(StringBuilder text, int i0, int j0, int i1, int j1) {
+        boolean reversed = i1 < i0 || j1 < j0;
+        int ai = reversed ? i1 : i0, aj = reversed ? j1 : j0, bi = reversed ? i0 : i1, bj = reversed ? j0 : j1;
+        double x0 = latticeLng[ai][aj], y0 = latticeLat[ai][aj], x1 = latticeLng[bi][bj], y1 = latticeLat[bi][bj];
+        Random random = new Random(seed ^ ((long) ai * 1_000_003L + aj) * 31 + (bi == ai ? 1 : 2));
+        double[] xs = new double[subdivisions], ys = new double[subdivisions];
+        for (int k = 0; k < subdivisions; k++) {
+            double t = (k + 1.0) / (subdivisions + 1);
+            double wiggle = (random.nextDouble() - 0.5) * 0.15 / (subdivisions + 1);
+            xs[k] = x0 + (x1 - x0) * t - (y1 - y0) * wiggle;
+            ys[k] = y0 + (y1 - y0) * t + (x1 - x0) * wiggle;
+        }
+        append(text, latticeLng[i0][j0], latticeLat[i0][j0]);
+        for (int k = 0; k < subdivisions; k++) {
+            int m = reversed ? subdivisions - 1 - k : k;
+            append(text, xs[m], ys[m]);
+        }
+    }
+
+    private static void append(StringBuilder text, double lng, double lat) {
+        if (text.length() > 0) text.append(';');
+        text.append(lng).append(',').append(lat);
+    }
+
+    /**
+     * 生成合成数据文件。
+     *
+     * @param args 输出文件路径。
+     * @throws IOException 如果写入失败。
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: SyntheticRegions <output.json>");
+            System.exit(1);
+        }
+        new SyntheticRegions().write(Paths.get(args[0]));
+        System.out.println("Synthetic regions written to " + args[0]);
+    }
+}
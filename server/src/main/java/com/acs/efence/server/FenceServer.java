@@ -0,0 +1,342 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.server;
+
+import com.acs.efence.AcsApi;
+import com.acs.efence.AcsEFInterface;
+import com.acs.efence.BatchDispatcher;
+import com.acs.efence.index.RegionTable;
+import com.acs.efence.model.Point;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于JDK内置HttpServer的本地查询服务，供非JVM服务通过HTTP查询行政区划，不需要各自加载一份数据。
+ * <p>
+ * 全部请求共用一个电子围栏API实例，可以是 {@link com.acs.efence.ReloadableAPI}。接口如下，响应均为JSON：
+ * <ul>
+ *     <li>{@code GET /match?lng=113.91&lat=27.68}：返回 {@link com.acs.efence.model.MatchResult}，未命中时为null；</li>
+ *     <li>{@code GET /compare?code=430121&lng=113.91&lat=27.68}：返回 {@link com.acs.efence.model.CompareResult}；</li>
+ *     <li>{@code POST /match}，请求体 {@code {"lngs":[...],"lats":[...]}}：返回 {@code {"codes":[...]}}，
+ *     为各坐标所在最细层级区域的代码，未命中时为null；</li>
+ *     <li>{@code POST /compare}，请求体 {@code {"lngs":[...],"lats":[...],"codes":[...]}}：返回 {@code {"verified":[...]}}。</li>
+ * </ul>
+ * 连接使用HTTP/1.1长连接，响应均带Content-Length。请求由固定数量的工作线程处理，等待处理的请求超过队列容量时，
+ * 由接收连接的线程直接处理，暂停接收新的连接和请求，压力传递给客户端。
+ * 并发的单点请求经 {@link BatchDispatcher} 合并为批量查询执行，批量请求直接在工作线程中执行。
+ * 参数缺失、数值或JSON格式错误、批量参数长度不一致时返回400，未知路径返回404，方法不支持返回405，
+ * 请求过多无法处理时返回503，其他查询错误返回500。
+ * <p>
+ * 该类依赖JDK的 {@code com.sun.net.httpserver}，单独作为server模块发布，主项目不依赖该模块。
+ */
+public class FenceServer implements Closeable {
+
+    /**
+     * 默认端口。
+     */
+    public static final int DEFAULT_PORT = 8866;
+
+    /**
+     * 请求体的最大字节数。
+     */
+    private static final int MAX_BODY = 16 << 20;
+
+    private static final Gson GSON = new Gson();
+
+    /**
+     * 参数缺失的错误信息，与电子围栏API一致。
+     */
+    private static final String MISSING = "访问参数丢失";
+
+    /**
+     * 批量参数长度不一致的错误信息，与电子围栏API一致。
+     */
+    private static final String LENGTH_MISMATCH = "批量参数长度不一致";
+
+    /**
+     * 请求体过大的错误信息。
+     */
+    private static final String TOO_LARGE = "Request body too large.";
+
+    static {
+        // 内置HttpServer分两次写出响应头和响应体，未关闭Nagle算法时与客户端的延迟确认叠加，长连接上每个请求多等待约40毫秒。
+        // 该属性在进程中第一次创建HttpServer时读取，已显式设置时不覆盖
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * 电子围栏API。
+     */
+    private final AcsEFInterface api;
+
+    /**
+     * HTTP服务。
+     */
+    private final HttpServer server;
+
+    /**
+     * 处理请求的工作线程池。
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * 单点请求的合并执行器。
+     */
+    private final BatchDispatcher dispatcher;
+
+    /**
+     * 创建查询服务并绑定端口，调用 {@link #start()} 后开始接收请求。
+     *
+     * @param api 电子围栏API。
+     * @param address 监听地址，端口为0时使用任意空闲端口。
+     * @param workers 工作线程数量。
+     * @param queueCapacity 等待处理的请求队列容量。
+     * @throws RuntimeException 如果参数为null、数量不是正数或端口绑定失败，将抛出运行时异常。
+     */
+    public FenceServer(AcsEFInterface api, InetSocketAddress address, int workers, int queueCapacity) {
+        if (api == null || address == null) throw new RuntimeException(MISSING);
+        if (workers <= 0 || queueCapacity <= 0) throw new RuntimeException("Server sizes must be positive.");
+        this.api = api;
+        AtomicInteger count = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "acs-efence-http-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        // 每个处理请求的线程同时只等待一个单点请求。除工作线程外，工作线程池已满时接收连接的线程也会直接处理请求，
+        // 队列容量为工作线程数量加1即不会拒绝
+        this.dispatcher = new BatchDispatcher(api, Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+                BatchDispatcher.DEFAULT_BATCH, workers + 1);
+        try {
+            this.server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            dispatcher.close();
+            this.workers.shutdown();
+            throw new RuntimeException(e.getLocalizedMessage());
+        }
+        server.setExecutor(this.workers);
+        server.createContext("/", this::handle);
+    }
+
+    /**
+     * 开始接收请求。
+     *
+     * @return 当前对象。
+     */
+    public FenceServer start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * 获取实际监听的端口。
+     *
+     * @return 端口。
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * 停止接收请求，等待正在处理的请求最多1秒后关闭工作线程和合并执行器。
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        dispatcher.close();
+        workers.shutdown();
+    }
+
+    /**
+     * 处理一个请求，结果或错误信息以JSON写出。
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        int status = 200;
+        Object body;
+        try {
+            if (!path.equals("/match") && !path.equals("/compare")) {
+                status = 404;
+                body = message("Not found.");
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                body = single(path, query(exchange.getRequestURI().getRawQuery()));
+            } else if ("POST".equals(exchange.getRequestMethod())) {
+                body = batch(path, GSON.fromJson(new String(read(exchange.getRequestBody()), StandardCharsets.UTF_8), BatchRequest.class));
+            } else {
+                status = 405;
+                body = message("Method not allowed.");
+            }
+        } catch (RejectedExecutionException e) {
+            status = 503;
+            body = message(e.getLocalizedMessage());
+        } catch (JsonParseException | NumberFormatException e) {
+            status = 400;
+            body = message("Malformed request.");
+        } catch (RuntimeException e) {
+            status = badRequest(e) ? 400 : 500;
+            body = message(e.getLocalizedMessage());
+        }
+        byte[] bytes = GSON.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * 处理单点请求，提交到合并执行器并等待结果。
+     */
+    private Object single(String path, Map<String, String> query) {
+        Point point = new Point(number(query, "lng"), number(query, "lat"));
+        CompletableFuture<?> result = path.equals("/match") ? dispatcher.match(point) : dispatcher.compare(query.get("code"), point);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted.");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * 处理批量请求，在当前工作线程中执行批量查询。
+     */
+    private Object batch(String path, BatchRequest request) {
+        if (request == null || request.lngs == null || request.lats == null) throw new RuntimeException(MISSING);
+        AcsEFInterface api = this.api.current();
+        if (path.equals("/match")) {
+            int[] regions = new int[request.lngs.length];
+            api.toMatchBatch(request.lngs, request.lats, regions);
+            RegionTable table = api.getRegionTable();
+            String[] codes = new String[regions.length];
+            for (int i = 0; i < regions.length; i++) codes[i] = regions[i] == RegionTable.NONE ? null : table.code(regions[i]);
+            return Collections.singletonMap("codes", codes);
+        }
+        if (request.codes == null) throw new RuntimeException(MISSING);
+        boolean[] verified = new boolean[request.lngs.length];
+        api.toCompareBatch(request.lngs, request.lats, request.codes, verified);
+        return Collections.singletonMap("verified", verified);
+    }
+
+    /**
+     * 是否为请求参数错误：参数缺失、批量参数长度不一致或请求体过大，其他运行时异常视为服务端错误。
+     */
+    private static boolean badRequest(RuntimeException e) {
+        String message = e.getMessage();
+        return MISSING.equals(message) || LENGTH_MISMATCH.equals(message) || TOO_LARGE.equals(message);
+    }
+
+    private static Map<String, String> message(String message) {
+        return Collections.singletonMap("message", message);
+    }
+
+    private static double number(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) throw new RuntimeException(MISSING);
+        return Double.parseDouble(value);
+    }
+
+    /**
+     * 解析URL查询参数。
+     */
+    private static Map<String, String> query(String raw) {
+        Map<String, String> query = new HashMap<>();
+        if (raw == null) return query;
+        try {
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq > 0) query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return query;
+    }
+
+    /**
+     * 读取请求体，超过 {@link #MAX_BODY} 时抛出运行时异常。
+     */
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+            if (out.size() > MAX_BODY) throw new RuntimeException(TOO_LARGE);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 批量请求体。
+     */
+    private static final class BatchRequest {
+        double[] lngs;
+        double[] lats;
+        String[] codes;
+    }
+
+    /**
+     * 启动查询服务。
+     * <pre>
+     * java -cp acs-electronic-fence-server-1.0-RELEASE.jar:acs-electronic-fence-1.0-RELEASE.jar:gson-2.11.0.jar com.acs.efence.server.FenceServer SNAPSHOT /data/region_polygon.snapshot 8866 16
+     * </pre>
+     *
+     * @param args 数据模型（JSON、SNAPSHOT、MAPPED）、数据文件路径，可选的端口和工作线程数量。
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: FenceServer <JSON|SNAPSHOT|MAPPED> <dataPath> [port] [workers]");
+            System.exit(1);
+        }
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PORT;
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors() * 2;
+        AcsEFInterface api;
+        if (args[0].equals("SNAPSHOT")) api = AcsApi.snapshot(args[1]);
+        else if (args[0].equals("MAPPED")) api = AcsApi.mapped(args[1]);
+        else api = AcsApi.jsonAbsDataPath(args[1]);
+        FenceServer server = new FenceServer(api, new InetSocketAddress(port), workers, workers * 64).start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Listening on port " + server.getPort());
+    }
+}
@@ -49,5 +49,48 @@ public class AcsApi implements Serializable {
         return AcsEFInterface.class.newInstance().getEFApi("JSON", dataPath);
     }
 
-}
+    /**
+     * 创建并返回一个基于内存映射存储文件的 AcsEFInterface 实例。
+     * 存储文件可通过 {@link PolygonStore#write(AcsEFInterface, String)} 由已加载的JSON数据生成。
+     *
+     * @param storePath 多边形存储文件路径。
+     * @return AcsEFInterface 的新实例，顶点数据直接从内存映射文件中读取。
+     * @throws InstantiationException 如果类无法实例化。
+     * @throws IllegalAccessException 如果无权访问类的构造函数。
+     */
+    @SneakyThrows
+    public static AcsEFInterface mapped(String storePath) {
+        return AcsEFInterface.class.newInstance().getEFApi("MAPPED", storePath);
+    }
 
+    /**
+     * 创建并返回一个基于快照文件的 AcsEFInterface 实例。
+     * 快照文件可通过 {@link PolygonStore#main(String[])} 在构建阶段由JSON数据生成，加载时无需解析JSON和重建网格索引。
+     *
+     * @param snapshotPath 快照文件路径。
+     * @return AcsEFInterface 的新实例，数据从快照文件整块读入堆内存。
+     * @throws InstantiationException 如果类无法实例化。
+     * @throws IllegalAccessException 如果无权访问类的构造函数。
+     */
+    @SneakyThrows
+    public static AcsEFInterface snapshot(String snapshotPath) {
+        return AcsEFInterface.class.newInstance().getEFApi("SNAPSHOT", snapshotPath);
+    }
+
+    /**
+     * 创建并返回一个可重新加载数据的 AcsEFInterface 实例，数据更新后无需重启服务。
+     * 重新加载时在后台构建新的数据集，构建完成后原子替换，查询不加锁，正在执行的查询继续使用旧数据集。
+     *
+     * @param model 数据模型，取值同 {@link AcsEFInterface#getEFApi(String, String)}，如"JSON"、"SNAPSHOT"。
+     * @param dataPath 数据文件路径，可通过 {@link ReloadableAPI#watch(java.nio.file.Path)} 监视该文件的变化。
+     * @return 已加载第一个数据集的可重新加载实例。
+     * @throws InstantiationException 如果类无法实例化。
+     * @throws IllegalAccessException 如果无权访问类的构造函数。
+     */
+    @SneakyThrows
+    public static ReloadableAPI reloadable(String model, String dataPath) {
+        AcsEFInterface factory = AcsEFInterface.class.newInstance();
+        return new ReloadableAPI(() -> factory.getEFApi(model, dataPath));
+    }
+
+}
@@ -15,14 +15,31 @@ limitations under the License.
 */
 package com.acs.efence;
 
+import com.acs.efence.index.CellCache;
+import com.acs.efence.index.GridIndex;
+import com.acs.efence.index.MortonOrder;
+import com.acs.efence.index.RegionLocator;
+import com.acs.efence.index.RegionTable;
+import com.acs.efence.index.RingIndex;
+import com.acs.efence.index.SegmentIndex;
+import com.acs.efence.metrics.MetricsListener;
+import com.acs.efence.metrics.QueryStats;
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.CompareMode;
 import com.acs.efence.model.CompareResult;
 import com.acs.efence.model.MatchResult;
 import com.acs.efence.model.Point;
 import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 
 /**
@@ -38,6 +55,43 @@ public class AcsEFInterface implements Serializable {
      * 存储多边形节点的映射，键为节点标识，值为多边形节点。
      */
     protected Map<String, PolygonNode> POLYGON_NODES;
+    /**
+     * 顶层多边形节点的空间索引，为null时逐个遍历顶层节点。
+     */
+    protected RingIndex POLYGON_INDEX;
+    /**
+     * 全部多边形的网格索引，为null时不使用网格直接判断。
+     */
+    protected GridIndex POLYGON_GRID;
+    /**
+     * 区域代码表，批量接口以代码表中的编号输出匹配结果。
+     */
+    protected RegionTable REGION_TABLE;
+    /**
+     * 边界网格内的小网格结果缓存，为null时不使用缓存。数据集发布后仍可启用，查询线程读取时不需要额外同步。
+     */
+    protected volatile CellCache CELL_CACHE;
+    /**
+     * 查询和加载指标的监听器，为null时不收集指标。数据集发布后仍可设置，查询线程读取时不需要额外同步。
+     */
+    protected transient volatile MetricsListener METRICS;
+    /**
+     * 数据集各加载阶段的耗时（纳秒），按记录顺序排列。
+     */
+    protected Map<String, Long> LOAD_TIMINGS = new LinkedHashMap<>();
+    /**
+     * 最细层级区域边界的线段索引，首次查找最近区域时构建。
+     */
+    protected transient volatile SegmentIndex SEGMENT_INDEX;
+    /**
+     * 异步查询使用的合并执行器，未设置时使用所有实例共用的默认执行器。
+     */
+    protected transient volatile BatchDispatcher DISPATCHER;
+
+    /**
+     * 批量查询时按空间位置重新排列坐标的最小批量，更小的批量直接按原顺序查询。
+     */
+    private static final int SPATIAL_SORT_THRESHOLD = 256;
 
     /**
      * 根据模型名称获取相应的EF接口实现。
@@ -64,13 +118,15 @@ public class AcsEFInterface implements Serializable {
      *
      * @param model 模型的类型，用于确定使用的API实现。
      * @param dataPath 电子文件的数据路径，用于初始化API实现。
-     * @return 如果模型类型为"JSON"，则返回一个电子文件API实现对象；否则返回null。
+     * @return 如果模型类型为"JSON"，则返回一个电子文件API实现对象；如果为"MAPPED"，则返回基于内存映射存储文件的实现对象；如果为"SNAPSHOT"，则返回基于快照文件的实现对象；否则返回null。
      * @throws RuntimeException 如果模型类型为null，则抛出运行时异常。
      */
     AcsEFInterface getEFApi(String model, String dataPath) {
         // 检查模型类型是否为空，如果为空则抛出运行时异常
         if (model == null) throw new RuntimeException("Run model lose.");
         // 根据模型类型决定返回的API实现对象
+        if (model.equals("MAPPED")) return new ElectronicMappedAPI(dataPath);
+        if (model.equals("SNAPSHOT")) return new ElectronicSnapshotAPI(dataPath);
         return model.equals("JSON")?new ElectronicJsonAPI(dataPath):null;
     }
 
@@ -91,6 +147,447 @@ public class AcsEFInterface implements Serializable {
         return null;
     }
 
+    public MatchResult toMatch(Point point, CompareMode mode) {
+        return null;
+    }
+
+    public CompareResult toCompare(String code, Point point, CompareMode mode) {
+        return null;
+    }
+
+    public MatchResult nearestMatch(Point point, double maxDistance) {
+        return null;
+    }
+
+    public Double distanceToBoundary(String code, Point point) {
+        return null;
+    }
+
+    /**
+     * 异步匹配点所在的区域，请求由合并执行器与其他并发提交的请求合并为批量查询执行，结果与 {@link #toMatch(Point)} 相同。
+     * 调用方不需要为每次查询另行切换线程；队列已满时的处理方式见 {@link #setDispatcher(BatchDispatcher)}。
+     *
+     * @param point 待匹配的点。
+     * @return 匹配结果，点不在任何区域内时为null。
+     * @throws RuntimeException 如果点为null，将抛出运行时异常。
+     */
+    public CompletableFuture<MatchResult> toMatchAsync(Point point) {
+        BatchDispatcher dispatcher = DISPATCHER;
+        return dispatcher != null ? dispatcher.match(point) : BatchDispatcher.shared().match(this, point);
+    }
+
+    /**
+     * 异步匹配点所在的区域，并使用函数式接口转换匹配结果。转换在分派线程中执行，点不在任何区域内时传入null。
+     *
+     * @param point 待匹配的点。
+     * @param mapper 将匹配结果转换为指定类型的函数。
+     * @param <B> 转换后的类型。
+     * @return 转换后的结果。
+     * @throws RuntimeException 如果参数为null，将抛出运行时异常。
+     */
+    public <B> CompletableFuture<B> toMatchAsync(Point point, Function<? super MatchResult, ? extends B> mapper) {
+        if (mapper == null) throw new RuntimeException("访问参数丢失");
+        return toMatchAsync(point).thenApply(mapper);
+    }
+
+    /**
+     * 异步判断点是否在区域代码对应的电子围栏内，执行方式同 {@link #toMatchAsync(Point)}。
+     * 结果与 {@link #toCompare(String, Point)} 相同，区域代码不存在时判断结果为false。
+     *
+     * @param code 区域代码。
+     * @param point 待判断的点。
+     * @return 比较结果。
+     * @throws RuntimeException 如果参数为null，将抛出运行时异常。
+     */
+    public CompletableFuture<CompareResult> toCompareAsync(String code, Point point) {
+        BatchDispatcher dispatcher = DISPATCHER;
+        return dispatcher != null ? dispatcher.compare(code, point) : BatchDispatcher.shared().compare(this, code, point);
+    }
+
+    /**
+     * 异步判断点是否在电子围栏内，并使用函数式接口转换比较结果。转换在分派线程中执行。
+     *
+     * @param code 区域代码。
+     * @param point 待判断的点。
+     * @param mapper 将比较结果转换为指定类型的函数。
+     * @param <B> 转换后的类型。
+     * @return 转换后的结果。
+     * @throws RuntimeException 如果参数为null，将抛出运行时异常。
+     */
+    public <B> CompletableFuture<B> toCompareAsync(String code, Point point, Function<? super CompareResult, ? extends B> mapper) {
+        if (mapper == null) throw new RuntimeException("访问参数丢失");
+        return toCompareAsync(code, point).thenApply(mapper);
+    }
+
+    /**
+     * 获取当前生效的数据集。普通实现返回自身，可重新加载的实现返回当前发布的数据集，
+     * 需要在同一份数据上完成多步查询的组件（如 {@link ParallelMatcher}）在开始时调用一次。
+     *
+     * @return 当前生效的数据集。
+     */
+    public AcsEFInterface current() {
+        return this;
+    }
+
+    /**
+     * 序列化时以紧凑形式 {@link SerializedSnapshot} 代替对象图：写出一份压缩的快照，而不是逐个写出节点、多边形环和索引对象。
+     * 反序列化得到的是基于快照的 {@link ElectronicSnapshotAPI}，查询结果与原对象相同；
+     * 可重新加载的实现只序列化当前发布的数据集，指标监听器不随之序列化。
+     *
+     * @return 紧凑序列化形式；未加载数据时返回自身。
+     * @throws ObjectStreamException 序列化异常。
+     */
+    protected Object writeReplace() throws ObjectStreamException {
+        AcsEFInterface api = current();
+        return api.POLYGON_LISTS == null ? this : new SerializedSnapshot(api);
+    }
+
+    /**
+     * 启用小网格结果缓存。网格索引的边界网格中，重复出现在同一个小网格内的坐标不再重复执行射线法，
+     * 只有确认没有任何多边形的边经过的小网格才会缓存结果，判断结果与不使用缓存时完全相同。
+     *
+     * @param capacity 最大缓存的小网格数量。
+     * @param cellSize 小网格的边长（度），默认值见 {@link CellCache#DEFAULT_CELL_SIZE}。
+     * @return 当前对象。
+     */
+    public AcsEFInterface enableCellCache(int capacity, double cellSize) {
+        CELL_CACHE = new CellCache(POLYGON_LISTS, POLYGON_INDEX, capacity, cellSize);
+        return this;
+    }
+
+    /**
+     * 获取小网格结果缓存，可用于查看命中次数。
+     *
+     * @return 小网格结果缓存；未启用时返回null。
+     */
+    public CellCache getCellCache() {
+        return CELL_CACHE;
+    }
+
+    /**
+     * 设置查询和加载指标的监听器。设置后依次补报当前数据集已完成的各个加载阶段，
+     * 之后每次toMatch和toCompare查询结束时通知监听器；批量接口不逐个通知。
+     *
+     * @param listener 指标监听器，为null或 {@link MetricsListener#NOOP} 时关闭指标收集。
+     * @return 当前对象。
+     */
+    public AcsEFInterface setMetricsListener(MetricsListener listener) {
+        MetricsListener metrics = listener == MetricsListener.NOOP ? null : listener;
+        if (metrics != null) getLoadTimings().forEach(metrics::onLoad);
+        METRICS = metrics;
+        return this;
+    }
+
+    /**
+     * 设置异步查询使用的合并执行器，例如调整分派线程数量、批量上限、最长等待时间和队列已满时的处理方式：
+     * <pre>
+     * api.setDispatcher(new BatchDispatcher(api, 4, 512, 200, 100000, false));
+     * </pre>
+     * 未设置时使用所有实例共用的默认执行器：分派线程数量与处理器数量相同，每批最多 {@link BatchDispatcher#DEFAULT_BATCH} 个请求，
+     * 不额外等待，队列容量 {@link BatchDispatcher#DEFAULT_CAPACITY}，队列已满时阻塞提交线程。
+     * 默认执行器的线程不持有任何数据集，不需要关闭；自行设置的执行器由调用方关闭，替换时不会关闭原执行器。
+     *
+     * @param dispatcher 合并执行器，执行的查询应指向当前对象；为null时恢复使用默认执行器。
+     * @return 当前对象。
+     */
+    public AcsEFInterface setDispatcher(BatchDispatcher dispatcher) {
+        DISPATCHER = dispatcher;
+        return this;
+    }
+
+    /**
+     * 获取异步查询使用的合并执行器。
+     *
+     * @return 合并执行器；未设置时返回null，使用默认执行器。
+     */
+    public BatchDispatcher getDispatcher() {
+        return DISPATCHER;
+    }
+
+    /**
+     * 获取查询和加载指标的监听器。
+     *
+     * @return 指标监听器；未设置时返回 {@link MetricsListener#NOOP}。
+     */
+    public MetricsListener getMetricsListener() {
+        MetricsListener metrics = METRICS;
+        return metrics != null ? metrics : MetricsListener.NOOP;
+    }
+
+    /**
+     * 获取数据集各加载阶段的耗时，例如JSON解析、子节点索引、网格索引的构建。
+     *
+     * @return 阶段名称与耗时（纳秒）的只读映射，按记录顺序排列。
+     */
+    public Map<String, Long> getLoadTimings() {
+        return Collections.unmodifiableMap(LOAD_TIMINGS);
+    }
+
+    /**
+     * 记录一个加载阶段的耗时，已设置监听器时同时通知监听器。
+     *
+     * @param phase 阶段名称。
+     * @param nanos 阶段耗时（纳秒）。
+     */
+    protected void loadPhase(String phase, long nanos) {
+        LOAD_TIMINGS.put(phase, nanos);
+        MetricsListener metrics = METRICS;
+        if (metrics != null) metrics.onLoad(phase, nanos);
+    }
+
+    /**
+     * 获取区域代码表，批量匹配结果中的编号即为代码表中的编号。
+     *
+     * @return 区域代码表。
+     */
+    public RegionTable getRegionTable() {
+        if (REGION_TABLE == null) REGION_TABLE = RegionTable.of(POLYGON_LISTS);
+        return REGION_TABLE;
+    }
+
+    /**
+     * 批量匹配坐标所在的最细层级区域。
+     * 坐标以列式数组传入，结果写入调用方提供的数组，每个坐标不创建Point和MatchResult对象。
+     * 批量较大时先按空间位置排列坐标再依次查询，使连续的查询访问相同的网格和多边形。
+     *
+     * @param lngs 经度数组。
+     * @param lats 纬度数组，长度与经度数组相同。
+     * @param out 输出数组，长度不小于经度数组；out[i]为第i个坐标所在区域在 {@link #getRegionTable()} 中的编号，
+     *            不在任何区域内时为 {@link RegionTable#NONE}。
+     * @throws RuntimeException 如果参数为null或数组长度不足，将抛出运行时异常。
+     */
+    public void toMatchBatch(double[] lngs, double[] lats, int[] out) {
+        if (lngs == null || lats == null || out == null) throw new RuntimeException("访问参数丢失");
+        int n = checkBatch(lngs, lats, out.length);
+        matchRange(new RegionLocator(POLYGON_INDEX), lngs, lats, spatialOrder(lngs, lats, SPATIAL_SORT_THRESHOLD), 0, n, out);
+    }
+
+    /**
+     * 批量判断坐标是否在对应区域代码的电子围栏内，判断规则与 {@link #toCompare(String, Point)} 相同。
+     * 坐标以列式数组传入，结果写入调用方提供的数组，每个坐标不创建Point和CompareResult对象。
+     *
+     * @param lngs 经度数组。
+     * @param lats 纬度数组，长度与经度数组相同。
+     * @param codes 区域代码数组，长度与经度数组相同。
+     * @param out 输出数组，长度不小于经度数组；out[i]表示第i个坐标是否在codes[i]对应的区域内，区域代码不存在时为false。
+     * @throws RuntimeException 如果参数为null、数组长度不足或包含null区域代码，将抛出运行时异常。
+     */
+    public void toCompareBatch(double[] lngs, double[] lats, String[] codes, boolean[] out) {
+        if (lngs == null || lats == null || codes == null || out == null) throw new RuntimeException("访问参数丢失");
+        int n = checkBatch(lngs, lats, Math.min(codes.length, out.length));
+        compareRange(lngs, lats, codes, spatialOrder(lngs, lats, SPATIAL_SORT_THRESHOLD), 0, n, out);
+    }
+
+    /**
+     * 按访问顺序匹配其中一段坐标所在的区域，结果写入输出数组中坐标的原始位置。
+     *
+     * @param locator 区域查找器，同一时间只能由一个线程使用。
+     * @param order 访问顺序，为null时按原顺序访问。
+     * @param from 访问顺序中的起始位置（含）。
+     * @param to 访问顺序中的结束位置（不含）。
+     */
+    void matchRange(RegionLocator locator, double[] lngs, double[] lats, int[] order, int from, int to, int[] out) {
+        RegionTable table = getRegionTable();
+        for (int k = from; k < to; k++) {
+            int i = order == null ? k : order[k];
+            out[i] = table.indexOf(fenceHit(locator, lngs[i], lats[i]));
+        }
+    }
+
+    /**
+     * 按访问顺序判断其中一段坐标是否在对应的区域内，结果写入输出数组中坐标的原始位置。
+     *
+     * @param order 访问顺序，为null时按原顺序访问。
+     * @param from 访问顺序中的起始位置（含）。
+     * @param to 访问顺序中的结束位置（不含）。
+     */
+    void compareRange(double[] lngs, double[] lats, String[] codes, int[] order, int from, int to, boolean[] out) {
+        for (int k = from; k < to; k++) {
+            int i = order == null ? k : order[k];
+            if (codes[i] == null) throw new RuntimeException("访问参数丢失");
+            PolygonNode polygonNode = POLYGON_LISTS.get(codes[i]);
+            out[i] = polygonNode != null && fenceHitByCode(polygonNode, lngs[i], lats[i]);
+        }
+    }
+
+    /**
+     * 检查批量参数的长度。
+     *
+     * @return 坐标数量。
+     */
+    static int checkBatch(double[] lngs, double[] lats, int capacity) {
+        if (lats.length != lngs.length || capacity < lngs.length) throw new RuntimeException("批量参数长度不一致");
+        return lngs.length;
+    }
+
+    /**
+     * 计算批量查询的访问顺序。
+     *
+     * @param minSize 需要重新排列的最小批量。
+     * @return 按空间位置排列的下标数组，见 {@link MortonOrder#sort(double[], double[], BoundingBox)}；批量较小时返回null，按原顺序查询。
+     */
+    int[] spatialOrder(double[] lngs, double[] lats, int minSize) {
+        if (lngs.length < minSize || POLYGON_GRID == null) return null;
+        return MortonOrder.sort(lngs, lats, POLYGON_GRID.getExtent());
+    }
+
+    /**
+     * 从顶层节点开始查找给定坐标所在的最细层级节点，逻辑同 {@link #fenceHit(Point)}，但不创建Point对象。
+     *
+     * @param locator 区域查找器。
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 如果坐标落在任何一个多边形内，则返回对应的多边形节点；否则返回null。
+     */
+    protected PolygonNode fenceHit(RegionLocator locator, double lng, double lat) {
+        if (POLYGON_GRID != null) {
+            int component = POLYGON_GRID.lookup(lng, lat);
+            if (component == GridIndex.OUTSIDE) return null;
+            if (component != GridIndex.BOUNDARY) return POLYGON_GRID.hit(component);
+        }
+        CellCache cache = CELL_CACHE;
+        CellCache.Cell cell = cache != null ? cache.get(lng, lat) : null;
+        if (cell != null) return cell.hit();
+        if (POLYGON_INDEX == null) return locator.locate(POLYGON_NODES, lng, lat, null);
+        return locator.locate(lng, lat);
+    }
+
+    /**
+     * 从顶层节点开始查找给定点所在的最细层级节点。
+     * 点位于网格索引的内部网格时直接返回网格的预计算结果，其次使用小网格结果缓存，否则逐层使用空间索引查找。
+     *
+     * @param point 待检查的点。
+     * @return 如果点落在任何一个多边形内，则返回对应的多边形节点；否则返回null。
+     */
+    protected PolygonNode fenceHit(Point point) {
+        if (POLYGON_GRID != null) {
+            int component = POLYGON_GRID.lookup(point.getLng(), point.getLat());
+            if (component == GridIndex.OUTSIDE) return null;
+            if (component != GridIndex.BOUNDARY) return POLYGON_GRID.hit(component);
+        }
+        // 边界网格中没有边经过的小网格使用缓存的结果
+        CellCache cache = CELL_CACHE;
+        CellCache.Cell cell = cache != null ? cache.get(point.getLng(), point.getLat()) : null;
+        if (cell != null) return cell.hit();
+        return fenceHit(POLYGON_NODES, POLYGON_INDEX, point);
+    }
+
+    /**
+     * 从顶层节点开始查找给定点所在的节点，查找路径上的节点达到目标级别后不再向下查找。
+     * 点位于网格索引的内部网格或已缓存的小网格时，由预计算的最细层级节点向上找到目标级别的节点。
+     *
+     * @param point 待检查的点。
+     * @param mode 目标级别，为null时与 {@link #fenceHit(Point)} 相同。
+     * @return 查找路径上第一个达到目标级别的节点，路径上没有达到目标级别的节点时返回最细层级节点；点不在任何多边形内时返回null。
+     */
+    protected PolygonNode fenceHit(Point point, CompareMode mode) {
+        if (mode == null) return fenceHit(point);
+        return fenceHit(point, mode, null);
+    }
+
+    /**
+     * 查找给定点所在的节点，逻辑见 {@link #fenceHit(Point, CompareMode)}，提供执行情况时同时记录。
+     *
+     * @param point 待检查的点。
+     * @param mode 目标级别，为null时查找最细层级节点。
+     * @param stats 记录得到结果的方式和射线法工作量，为null时不记录。
+     * @return 与 {@link #fenceHit(Point, CompareMode)} 相同。
+     */
+    protected PolygonNode fenceHit(Point point, CompareMode mode, QueryStats stats) {
+        double lng = point.getLng(), lat = point.getLat();
+        if (POLYGON_GRID != null) {
+            int component = POLYGON_GRID.lookup(lng, lat);
+            if (component == GridIndex.OUTSIDE) {
+                if (stats != null) stats.path(QueryStats.Path.OUTSIDE);
+                return null;
+            }
+            if (component != GridIndex.BOUNDARY) {
+                if (stats != null) stats.path(QueryStats.Path.GRID);
+                return ancestor(POLYGON_GRID.hit(component), mode);
+            }
+        }
+        CellCache cache = CELL_CACHE;
+        CellCache.Cell cell = cache != null ? cache.get(lng, lat) : null;
+        if (cell != null) {
+            if (stats != null) stats.path(QueryStats.Path.CACHE);
+            return ancestor(cell.hit(), mode);
+        }
+        if (stats != null) stats.path(QueryStats.Path.RAY);
+        RegionLocator locator = new RegionLocator(POLYGON_INDEX, stats);
+        if (POLYGON_INDEX == null) return locator.locate(POLYGON_NODES, lng, lat, mode);
+        return locator.locate(POLYGON_INDEX, lng, lat, mode);
+    }
+
+    /**
+     * 查找给定点所在的最细层级节点，点不在任何区域内时查找边界距离该点最近的最细层级节点。
+     *
+     * @param point 待检查的点。
+     * @param maxDistance 最大距离（米）。
+     * @return 点所在的节点；点不在任何区域内时返回最大距离内边界最近的节点，没有时返回null。
+     */
+    protected PolygonNode nearestNode(Point point, double maxDistance) {
+        PolygonNode hit = fenceHit(point);
+        if (hit != null || !(maxDistance >= 0)) return hit;
+        return segmentIndex().nearest(point.getLng(), point.getLat(), maxDistance);
+    }
+
+    /**
+     * 获取最细层级区域边界的线段索引，首次调用时构建。
+     * 只包含没有子节点的区域，点在上级区域内但不在任何子区域内时由 {@link #fenceHit(Point)} 直接命中上级区域。
+     *
+     * @return 线段索引。
+     */
+    protected SegmentIndex segmentIndex() {
+        SegmentIndex index = SEGMENT_INDEX;
+        if (index != null) return index;
+        synchronized (this) {
+            if (SEGMENT_INDEX == null) {
+                List<PolygonNode> leaves = new ArrayList<>();
+                collectLeaves(POLYGON_NODES, leaves);
+                SEGMENT_INDEX = SegmentIndex.of(leaves);
+            }
+            return SEGMENT_INDEX;
+        }
+    }
+
+    private static void collectLeaves(Map<String, PolygonNode> nodes, List<PolygonNode> leaves) {
+        if (nodes == null) return;
+        for (PolygonNode node : nodes.values()) {
+            if (node.hasChildren()) collectLeaves(node.getChildren(), leaves);
+            else leaves.add(node);
+        }
+    }
+
+    /**
+     * 计算给定点到区域节点自身多边形边界的距离，节点的线段索引在首次调用时构建。
+     *
+     * @param polygonNode 区域节点。
+     * @param point 待检查的点。
+     * @return 距离（米）；节点没有多边形时返回 {@link Double#POSITIVE_INFINITY}。
+     */
+    protected static double boundaryDistance(PolygonNode polygonNode, Point point) {
+        SegmentIndex index = polygonNode.getSegmentIndex();
+        if (index == null) {
+            // 并发构建时各线程得到的索引相同，保留任何一个都可以
+            index = SegmentIndex.of(Collections.singletonList(polygonNode));
+            polygonNode.setSegmentIndex(index);
+        }
+        return index.distance(point.getLng(), point.getLat());
+    }
+
+    /**
+     * 沿父节点向上查找第一个达到目标级别的祖先节点，即从顶层向下查找时遇到的第一个达到目标级别的节点。
+     *
+     * @param node 起始节点，可以为null。
+     * @param mode 目标级别，为null时返回节点本身。
+     * @return 最上层的仍达到目标级别的祖先节点；父节点未达到目标级别时返回节点本身。
+     */
+    protected static PolygonNode ancestor(PolygonNode node, CompareMode mode) {
+        if (node == null || mode == null) return node;
+        while (node.getParent() != null && mode.reachedBy(node.getParent())) node = node.getParent();
+        return node;
+    }
+
     /**
      * 检查给定点是否落在任何一个多边形内。
      * 如果点落在某个多边形内，且该多边形有子多边形，则继续检查子多边形。
@@ -102,21 +599,48 @@ public class AcsEFInterface implements Serializable {
      * @return 如果点落在任何一个多边形内，则返回对应的多边形节点；否则返回null。
      */
     protected PolygonNode fenceHit(Map<String, PolygonNode> nodes, Point point) {
+        return fenceHit(nodes, null, point);
+    }
+
+    /**
+     * 检查给定点是否落在任何一个多边形内，逻辑同 {@link #fenceHit(Map, Point)}。
+     * 提供空间索引时只检查索引返回的候选多边形，子节点同样使用各自的空间索引逐层向下查找。
+     *
+     * @param nodes 多边形节点的映射，键为节点标识，值为多边形节点对象。
+     * @param index 同一层级节点的空间索引，为null时逐个遍历节点映射。
+     * @param point 待检查的点。
+     * @return 如果点落在任何一个多边形内，则返回对应的多边形节点；否则返回null。
+     */
+    protected PolygonNode fenceHit(Map<String, PolygonNode> nodes, RingIndex index, Point point) {
         // 如果节点映射为空，则直接返回null。
         if (nodes.isEmpty()) return null;
 
+        // 存在空间索引时，只检查外包矩形包含该点的候选多边形。
+        if (index != null) {
+            PolygonNode[] hit = new PolygonNode[1];
+            index.search(point.getLng(), point.getLat(), (node, ring) -> {
+                if (!isInPolygon(point, node.getRings().get(ring))) return false;
+                PolygonNode polygonNode = node.hasChildren() ? fenceHit(node.getChildren(), node.getChildIndex(), point) : null;
+                hit[0] = polygonNode != null ? polygonNode : node;
+                return true;
+            });
+            return hit[0];
+        }
+
         // 遍历多边形节点映射中的每个条目。
         for (Map.Entry<String, PolygonNode> entry : nodes.entrySet()) {
             PolygonNode node = entry.getValue();
-            List<List<Point>> polygons = node.getPolygonPoints();
+            // 点不在节点外包矩形内时，节点及其子节点都不可能命中，直接跳过。
+            if (!inBounds(node.getBounds(), point)) continue;
 
             // 遍历多边形节点中的每个多边形。
-            for (List<Point> poly : polygons) {
-                // 检查当前点是否落在当前多边形内。
-                if (isInPolygon(point, poly)) {
+            for (Ring ring : node.getRings()) {
+                // 先用多边形外包矩形快速排除，再检查当前点是否落在当前多边形内。
+                if (!inBounds(ring.getBounds(), point)) continue;
+                if (isInPolygon(point, ring)) {
                     // 如果当前多边形有子多边形，则递归检查子多边形。
                     if (node.hasChildren()) {
-                        PolygonNode polygonNode = fenceHit(node.getChildren(), point);
+                        PolygonNode polygonNode = fenceHit(node.getChildren(), node.getChildIndex(), point);
                         // 如果点落在子多边形内，则返回子多边形节点。
                         if (polygonNode != null) {
                             return polygonNode;
@@ -139,17 +663,68 @@ public class AcsEFInterface implements Serializable {
      * @param nodes 一个映射代码到多边形节点的映射表。
      * @param code 多边形节点的唯一标识代码。
      * @param point 需要判断是否在多边形内的点。
-     * @return 如果点在多边形内返回true，否则返回false。
+     * @return 如果点在多边形内返回true，否则返回false；代码对应的节点不存在时返回false。
      */
     protected Boolean fenceHitByCode(Map<String, PolygonNode> nodes, String code, Point point) {
         // 根据代码获取对应的多边形节点
         PolygonNode polygonNode = nodes.get(code);
+        return polygonNode != null && fenceHitByCode(polygonNode, point.getLng(), point.getLat());
+    }
+
+    /**
+     * 判断给定的坐标是否被多边形节点所包含。
+     *
+     * @param polygonNode 多边形节点。
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 如果坐标在多边形内返回true，否则返回false。
+     */
+    protected boolean fenceHitByCode(PolygonNode polygonNode, double lng, double lat) {
+        return fenceHitByCode(polygonNode, lng, lat, null);
+    }
+
+    /**
+     * 判断给定的坐标是否被多边形节点所包含，提供执行情况时同时记录。
+     *
+     * @param polygonNode 多边形节点。
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param stats 记录得到结果的方式和射线法工作量，为null时不记录。
+     * @return 如果坐标在多边形内返回true，否则返回false。
+     */
+    protected boolean fenceHitByCode(PolygonNode polygonNode, double lng, double lat, QueryStats stats) {
+        // 点不在节点外包矩形内时，不可能命中任何多边形
+        if (!inBounds(polygonNode.getBounds(), lng, lat)) {
+            if (stats != null) stats.path(QueryStats.Path.OUTSIDE);
+            return false;
+        }
+        // 点位于网格索引的内部网格时直接使用预计算结果
+        if (POLYGON_GRID != null) {
+            int component = POLYGON_GRID.lookup(lng, lat);
+            if (component == GridIndex.OUTSIDE) {
+                if (stats != null) stats.path(QueryStats.Path.OUTSIDE);
+                return false;
+            }
+            if (component != GridIndex.BOUNDARY) {
+                if (stats != null) stats.path(QueryStats.Path.GRID);
+                return POLYGON_GRID.contains(component, polygonNode.getCode());
+            }
+        }
+        CellCache cache = CELL_CACHE;
+        CellCache.Cell cell = cache != null ? cache.get(lng, lat) : null;
+        if (cell != null) {
+            if (stats != null) stats.path(QueryStats.Path.CACHE);
+            return cell.contains(polygonNode.getCode());
+        }
+        if (stats != null) stats.path(QueryStats.Path.RAY);
 
-        // 遍历多边形节点中的所有多边形点列表
-        for (List<Point> pointList : polygonNode.getPolygonPoints()) {
-            // 判断当前多边形点列表组成的多边形是否包含给定的点
-            boolean polygon = isInPolygon(point, pointList);
-            if (polygon) {
+        // 遍历多边形节点中的所有多边形环
+        for (Ring ring : polygonNode.getRings()) {
+            // 先用多边形外包矩形快速排除
+            if (!inBounds(ring.getBounds(), lng, lat)) continue;
+            if (stats != null) stats.test(polygonNode, ring, lng, lat);
+            // 判断当前多边形环是否包含给定的点
+            if (ring.contains(lng, lat)) {
                 // 如果点在多边形内，返回true
                 return true;
             }
@@ -159,89 +734,37 @@ public class AcsEFInterface implements Serializable {
     }
 
     /**
-     * 判断一个点是否在多边形内。
-     * 使用射线穿过法来判断，从点向任意方向引一条射线，统计射线与多边形边界的交点数。
-     * 如果交点数为奇数，则点在多边形内部；如果交点数为偶数，则点在多边形外部。
+     * 判断点是否落在外包矩形内，未计算外包矩形时视为可能命中。
      *
+     * @param bounds 外包矩形，可以为null。
      * @param point 待判断的点。
-     * @param pts 多边形的顶点列表。
-     * @return 如果点在多边形内部返回true，否则返回false。
+     * @return 如果外包矩形为null或点在矩形内返回true，否则返回false。
      */
-    private static boolean isInPolygon(Point point, List<Point> pts) {
-        /* 多边形的顶点数量 */
-        int N = pts.size();
-        /* 初始时假设点在多边形的边界上或是一个顶点 */
-        boolean boundOrVertex = true;
-        /* 交点计数器 */
-        int intersectCount = 0;
-        /* 浮点数比较的精度阈值 */
-        double precision = 2e-10;
-        /* 当前考察的两个多边形顶点 */
-        Point p1, p2;
-        /* 当前点 */
-        Point p = point;
-
-        /* 从第一个顶点开始 */
-        p1 = pts.get(0);
-        for (int i = 1; i <= N; ++i) {
-            /* 如果当前点与p1重合，则直接返回边界或顶点的判断结果 */
-            if (p.equals(p1)) {
-                return boundOrVertex;
-            }
-
-            /* 获取下一个顶点 */
-            p2 = pts.get(i % N);
-            /* 如果当前点在p1和p2的垂直投影之外，则跳过当前边，考虑下一条边 */
-            if (p.getLng() < Math.min(p1.getLng(), p2.getLng()) || p.getLng() > Math.max(p1.getLng(), p2.getLng())) {
-                p1 = p2;
-                continue;
-            }
+    private static boolean inBounds(BoundingBox bounds, Point point) {
+        return inBounds(bounds, point.getLng(), point.getLat());
+    }
 
-            /* 射线与边的相交判断 */
-            /* 射线穿过算法 */
-            if (p.getLng() > Math.min(p1.getLng(), p2.getLng()) && p.getLng() < Math.max(p1.getLng(), p2.getLng())) {
-                if (p.getLat() <= Math.max(p1.getLat(), p2.getLat())) {
-                    /* 如果p1和p2的经度相同，且当前点在它们的纬度范围内，则当前点在边界上 */
-                    if (p1.getLng() == p2.getLng() && p.getLat() >= Math.min(p1.getLat(), p2.getLat())) {
-                        return boundOrVertex;
-                    }
+    /**
+     * 判断坐标是否落在外包矩形内，未计算外包矩形时视为可能命中。
+     *
+     * @param bounds 外包矩形，可以为null。
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 如果外包矩形为null或坐标在矩形内返回true，否则返回false。
+     */
+    private static boolean inBounds(BoundingBox bounds, double lng, double lat) {
+        return bounds == null || bounds.contains(lng, lat);
+    }
 
-                    /* 如果p1和p2的纬度相同，且当前点在它们的经度范围内，则交点数加一 */
-                    if (p1.getLat() == p2.getLat()) {
-                        if (p1.getLat() == p.getLat()) {
-                            return boundOrVertex;
-                        } else {
-                            ++intersectCount;
-                        }
-                    } else {
-                        /* 计算交点的纬度 */
-                        double xinters = (p.getLng() - p1.getLng()) * (p2.getLat() - p1.getLat()) / (p2.getLng() - p1.getLng()) + p1.getLat();
-                        /* 如果当前点的纬度与交点的纬度相差小于精度，则当前点在边界上 */
-                        if (Math.abs(p.getLat() - xinters) < precision) {
-                            return boundOrVertex;
-                        }
-                        /* 如果当前点的纬度小于交点的纬度，则交点数加一 */
-                        if (p.getLat() < xinters) {
-                            ++intersectCount;
-                        }
-                    }
-                }
-            } else {
-                /* 如果当前点在p1和p2的垂直投影之内，则交点数加一 */
-                if (p.getLng() == p2.getLng() && p.getLat() <= p2.getLat()) {
-                    Point p3 = pts.get((i + 1) % N);
-                    if (p.getLng() >= Math.min(p1.getLng(), p3.getLng()) && p.getLng() <= Math.max(p1.getLng(), p3.getLng())) {
-                        ++intersectCount;
-                    } else {
-                        intersectCount += 2;
-                    }
-                }
-            }
-            /* 更新当前边 */
-            p1 = p2;
-        }
-        /* 如果交点数为奇数，则点在多边形内部；否则在外部 */
-        return intersectCount % 2 != 0;
+    /**
+     * 判断一个点是否在多边形环内，判断规则见 {@link Ring#contains(double, double)}。
+     *
+     * @param point 待判断的点。
+     * @param ring 多边形环。
+     * @return 如果点在多边形内部返回true，否则返回false。
+     */
+    private static boolean isInPolygon(Point point, Ring ring) {
+        return ring.contains(point.getLng(), point.getLat());
     }
 
 
@@ -0,0 +1,397 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.index.RegionLocator;
+import com.acs.efence.index.RegionTable;
+import com.acs.efence.model.CompareResult;
+import com.acs.efence.model.MatchResult;
+import com.acs.efence.model.Point;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单点查询的合并执行器。
+ * <p>
+ * 多个线程各自提交的单点匹配和比较请求先放入有界队列，分派线程取出第一个请求后，收集此时队列中已有的请求，
+ * 并在最长等待时间内继续收集新到达的请求，直到达到批量上限或等待时间结束，
+ * 按批量查询的方式依次执行，再逐个完成请求，每批只取得一次当前数据集、创建一次区域查找器和结果数组。
+ * 每批的坐标按提交顺序访问，不按空间位置排列：批次较小，排列的固定开销高于访问局部性带来的收益。
+ * 最长等待时间为0时不额外等待，请求稀少时每批只有一个请求。
+ * <p>
+ * 队列已满时按配置拒绝新的请求，或阻塞提交线程直到队列有空位，调用方据此减缓提交速度。
+ * 请求在分派线程中完成，结果上的非异步后续操作（如thenApply）也在分派线程中执行，耗时的操作应使用thenApplyAsync等方法。
+ * 这些后续操作在分派线程中再次提交请求时不会阻塞：队列已满时请求直接在当前线程执行，
+ * 否则所有分派线程都可能阻塞在已满的队列上而无人取出请求。
+ * 同一批请求使用同一份数据，结果与单点查询相同，区域代码不存在时比较结果为false；批量查询不经过指标监听器。
+ * <p>
+ * 未设置执行器的电子围栏API共用一个默认执行器（见 {@link #shared()}），请求各自记录所属的API，
+ * 每批按API分组，分别取得当前数据集后执行；默认执行器的线程是守护线程，不持有任何数据集，不需要关闭。
+ */
+public class BatchDispatcher implements Closeable {
+
+    /**
+     * 默认的每批最大请求数量。
+     */
+    public static final int DEFAULT_BATCH = 256;
+
+    /**
+     * 默认的队列容量。
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * 分派线程等待请求的最长时间，超时后检查是否已关闭。
+     */
+    private static final long POLL_MILLIS = 100;
+
+    /**
+     * 电子围栏API，默认执行器为null，由每个请求指定。
+     */
+    private final AcsEFInterface api;
+
+    /**
+     * 等待执行的请求。
+     */
+    private final BlockingQueue<Request<?>> queue;
+
+    /**
+     * 每批的最大请求数量。
+     */
+    private final int maxBatch;
+
+    /**
+     * 收集一批请求的最长等待时间（纳秒），从取出第一个请求时开始计算。
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * 队列已满时是否阻塞提交线程，否则拒绝请求。
+     */
+    private final boolean blockWhenFull;
+
+    /**
+     * 分派线程。
+     */
+    private final Thread[] threads;
+
+    /**
+     * 是否已关闭。
+     */
+    private volatile boolean closed;
+
+    /**
+     * 创建不额外等待、队列已满时拒绝请求的合并执行器并启动分派线程。
+     *
+     * @param api 电子围栏API，可以是 {@link ReloadableAPI}，每批开始时取得当前发布的数据集。
+     * @param threads 分派线程数量，即同时执行的批次数量。
+     * @param maxBatch 每批的最大请求数量。
+     * @param capacity 队列容量，等待执行的请求达到该数量时拒绝新的请求。
+     * @throws RuntimeException 如果电子围栏API为null或数量不是正数，将抛出运行时异常。
+     */
+    public BatchDispatcher(AcsEFInterface api, int threads, int maxBatch, int capacity) {
+        this(api, threads, maxBatch, 0, capacity, false);
+    }
+
+    /**
+     * 创建合并执行器并启动分派线程。
+     *
+     * @param api 电子围栏API，可以是 {@link ReloadableAPI}，每批开始时取得当前发布的数据集。
+     * @param threads 分派线程数量，即同时执行的批次数量。
+     * @param maxBatch 每批的最大请求数量。
+     * @param maxDelayMicros 收集一批请求的最长等待时间（微秒），为0时只收集队列中已有的请求。
+     * @param capacity 队列容量。
+     * @param blockWhenFull 队列已满时阻塞提交线程直到有空位，为false时拒绝请求。
+     * @throws RuntimeException 如果电子围栏API为null、数量不是正数或等待时间为负数，将抛出运行时异常。
+     */
+    public BatchDispatcher(AcsEFInterface api, int threads, int maxBatch, long maxDelayMicros, int capacity, boolean blockWhenFull) {
+        this(checked(api), threads, maxBatch, maxDelayMicros, capacity, blockWhenFull, "acs-efence-dispatch-");
+    }
+
+    private BatchDispatcher(AcsEFInterface api, int threads, int maxBatch, long maxDelayMicros, int capacity, boolean blockWhenFull,
+                            String threadName) {
+        if (threads <= 0 || maxBatch <= 0 || capacity <= 0) throw new RuntimeException("Dispatcher sizes must be positive.");
+        if (maxDelayMicros < 0) throw new RuntimeException("Dispatcher delay must not be negative.");
+        this.api = api;
+        this.maxBatch = maxBatch;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.blockWhenFull = blockWhenFull;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.threads = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::dispatchLoop, threadName + i);
+            thread.setDaemon(true);
+            this.threads[i] = thread;
+            thread.start();
+        }
+    }
+
+    private static AcsEFInterface checked(AcsEFInterface api) {
+        if (api == null) throw new RuntimeException("访问参数丢失");
+        return api;
+    }
+
+    /**
+     * 所有未设置执行器的电子围栏API共用的默认执行器，首次使用时创建：分派线程数量与处理器数量相同，
+     * 每批最多 {@link #DEFAULT_BATCH} 个请求，不额外等待，队列容量 {@link #DEFAULT_CAPACITY}，队列已满时阻塞提交线程。
+     *
+     * @return 默认执行器，只能通过 {@link #match(AcsEFInterface, Point)} 和 {@link #compare(AcsEFInterface, String, Point)} 提交请求。
+     */
+    static BatchDispatcher shared() {
+        return Shared.INSTANCE;
+    }
+
+    /**
+     * 默认执行器的延迟初始化。
+     */
+    private static final class Shared {
+        static final BatchDispatcher INSTANCE = new BatchDispatcher(null, Runtime.getRuntime().availableProcessors(),
+                DEFAULT_BATCH, 0, DEFAULT_CAPACITY, true, "acs-efence-shared-dispatch-");
+    }
+
+    /**
+     * 提交单点匹配请求，结果与 {@link AcsEFInterface#toMatch(Point)} 相同。
+     *
+     * @param point 待匹配的点。
+     * @return 匹配结果，点不在任何区域内时为null。
+     * @throws RuntimeException 如果点为null，将抛出运行时异常。
+     * @throws RejectedExecutionException 如果队列已满且未配置阻塞、阻塞时线程被中断或执行器已关闭。
+     */
+    public CompletableFuture<MatchResult> match(Point point) {
+        return match(api, point);
+    }
+
+    /**
+     * 提交指定电子围栏API的单点匹配请求。
+     */
+    CompletableFuture<MatchResult> match(AcsEFInterface api, Point point) {
+        if (api == null || point == null) throw new RuntimeException("访问参数丢失");
+        return submit(new Request<>(api, null, point));
+    }
+
+    /**
+     * 提交单点比较请求，结果与 {@link AcsEFInterface#toCompare(String, Point)} 相同。
+     *
+     * @param code 区域代码。
+     * @param point 待判断的点。
+     * @return 比较结果。
+     * @throws RuntimeException 如果参数为null，将抛出运行时异常。
+     * @throws RejectedExecutionException 如果队列已满且未配置阻塞、阻塞时线程被中断或执行器已关闭。
+     */
+    public CompletableFuture<CompareResult> compare(String code, Point point) {
+        return compare(api, code, point);
+    }
+
+    /**
+     * 提交指定电子围栏API的单点比较请求。
+     */
+    CompletableFuture<CompareResult> compare(AcsEFInterface api, String code, Point point) {
+        if (api == null || code == null || point == null) throw new RuntimeException("访问参数丢失");
+        return submit(new Request<>(api, code, point));
+    }
+
+    private <T> CompletableFuture<T> submit(Request<T> request) {
+        if (closed) throw new RejectedExecutionException("Dispatcher closed.");
+        if (!queue.offer(request)) {
+            if (!blockWhenFull) throw new RejectedExecutionException("Dispatcher queue is full.");
+            if (isDispatchThread()) {
+                // 分派线程中的后续操作再次提交时不能等待自己取出请求
+                execute(Collections.singletonList(request));
+                return request;
+            }
+            try {
+                queue.put(request);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for queue space.");
+            }
+        }
+        // 与关闭同时进行时，请求可能在关闭清理队列之后才放入
+        if (closed && queue.remove(request)) request.completeExceptionally(new RejectedExecutionException("Dispatcher closed."));
+        return request;
+    }
+
+    /**
+     * 当前线程是否为本执行器的分派线程。
+     */
+    private boolean isDispatchThread() {
+        Thread current = Thread.currentThread();
+        for (Thread thread : threads) if (thread == current) return true;
+        return false;
+    }
+
+    /**
+     * 等待执行的请求数量。
+     *
+     * @return 队列中的请求数量。
+     */
+    public int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * 停止接收新的请求并结束分派线程，队列中尚未执行的请求以 {@link RejectedExecutionException} 结束。
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Thread thread : threads) thread.interrupt();
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        Request<?> request;
+        while ((request = queue.poll()) != null) {
+            request.completeExceptionally(new RejectedExecutionException("Dispatcher closed."));
+        }
+    }
+
+    /**
+     * 不断取出请求并执行，直到执行器关闭。
+     */
+    private void dispatchLoop() {
+        List<Request<?>> batch = new ArrayList<>(maxBatch);
+        while (!closed) {
+            try {
+                Request<?> first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                collect(batch);
+            } catch (InterruptedException e) {
+                // 关闭时中断，已取出的请求照常执行，之后由循环条件结束
+            }
+            if (batch.isEmpty()) continue;
+            execute(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * 在最长等待时间内继续收集新到达的请求，直到达到批量上限。
+     */
+    private void collect(List<Request<?>> batch) throws InterruptedException {
+        if (maxDelayNanos == 0) return;
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < maxBatch) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return;
+            Request<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) return;
+            batch.add(next);
+            queue.drainTo(batch, maxBatch - batch.size());
+        }
+    }
+
+    /**
+     * 按请求所属的电子围栏API分组执行，通常整批属于同一个API；执行失败时该组的请求以异常结束。
+     */
+    private void execute(List<Request<?>> batch) {
+        AcsEFInterface owner = batch.get(0).api;
+        boolean mixed = false;
+        for (Request<?> request : batch) {
+            if (request.api != owner) {
+                mixed = true;
+                break;
+            }
+        }
+        if (!mixed) {
+            executeGroup(owner, batch);
+            return;
+        }
+        Map<AcsEFInterface, List<Request<?>>> groups = new IdentityHashMap<>();
+        for (Request<?> request : batch) groups.computeIfAbsent(request.api, api -> new ArrayList<>()).add(request);
+        for (Map.Entry<AcsEFInterface, List<Request<?>>> group : groups.entrySet()) executeGroup(group.getKey(), group.getValue());
+    }
+
+    private void executeGroup(AcsEFInterface owner, List<Request<?>> batch) {
+        try {
+            execute(owner.current(), batch);
+        } catch (RuntimeException e) {
+            for (Request<?> request : batch) request.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 将同一个数据集的一批请求按类型分为匹配和比较两组，各执行一次批量查询。
+     */
+    @SuppressWarnings("unchecked")
+    private void execute(AcsEFInterface api, List<Request<?>> batch) {
+        int matches = 0;
+        for (Request<?> request : batch) if (request.code == null) matches++;
+        int compares = batch.size() - matches;
+        double[] matchLngs = new double[matches], matchLats = new double[matches];
+        double[] compareLngs = new double[compares], compareLats = new double[compares];
+        String[] codes = new String[compares];
+        for (int i = 0, m = 0, c = 0; i < batch.size(); i++) {
+            Request<?> request = batch.get(i);
+            if (request.code == null) {
+                matchLngs[m] = request.point.getLng();
+                matchLats[m++] = request.point.getLat();
+            } else {
+                compareLngs[c] = request.point.getLng();
+                compareLats[c] = request.point.getLat();
+                codes[c++] = request.code;
+            }
+        }
+        int[] regions = new int[matches];
+        boolean[] verified = new boolean[compares];
+        if (matches > 0) api.matchRange(new RegionLocator(api.POLYGON_INDEX), matchLngs, matchLats, null, 0, matches, regions);
+        if (compares > 0) api.compareRange(compareLngs, compareLats, codes, null, 0, compares, verified);
+        RegionTable table = matches > 0 ? api.getRegionTable() : null;
+        for (int i = 0, m = 0, c = 0; i < batch.size(); i++) {
+            Request<?> request = batch.get(i);
+            if (request.code == null) {
+                int region = regions[m++];
+                ((Request<MatchResult>) request).complete(
+                        region == RegionTable.NONE ? null : ElectronicJsonAPI.toMatchResult(table.node(region)));
+            } else {
+                ((Request<CompareResult>) request).complete(
+                        ElectronicJsonAPI.toCompareResult(request.code, request.point, verified[c++]));
+            }
+        }
+    }
+
+    /**
+     * 等待执行的单点请求，区域代码为null时为匹配请求，否则为比较请求。
+     */
+    private static final class Request<T> extends CompletableFuture<T> {
+
+        private final AcsEFInterface api;
+        private final String code;
+        private final Point point;
+
+        Request(AcsEFInterface api, String code, Point point) {
+            this.api = api;
+            this.code = code;
+            this.point = point;
+        }
+    }
+}
@@ -15,15 +15,22 @@ limitations under the License.
 */
 package com.acs.efence;
 
+import com.acs.efence.index.GridIndex;
+import com.acs.efence.index.RegionTable;
+import com.acs.efence.index.RingIndex;
+import com.acs.efence.metrics.MetricsListener;
+import com.acs.efence.metrics.QueryStats;
 import com.acs.efence.model.*;
 
 import java.io.Serializable;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * 电子围栏JSON API，继承自AcsEFInterface，实现Serializable接口。
@@ -35,8 +42,7 @@ public class ElectronicJsonAPI extends AcsEFInterface implements Serializable {
      * 默认构造函数，使用指定的JSON路径初始化电子围栏数据。
      */
     public ElectronicJsonAPI() {
-        super.POLYGON_LISTS = this.initMemRegionData(ElectronicJsonLoader.load("input\\region_polygon.json"));
-        super.POLYGON_NODES = this.initMemData(ElectronicJsonLoader.load("input\\region_polygon.json"));
+        this("input\\region_polygon.json");
     }
 
     /**
@@ -45,113 +51,326 @@ public class ElectronicJsonAPI extends AcsEFInterface implements Serializable {
      * @param jsonPath 包含电子围栏数据的JSON文件路径。
      */
     public ElectronicJsonAPI(String jsonPath) {
-        super.POLYGON_LISTS = this.initMemRegionData(ElectronicJsonLoader.load(jsonPath));
-        super.POLYGON_NODES = this.initMemData(ElectronicJsonLoader.load(jsonPath));
+        long start = System.nanoTime();
+        this.initMemData(jsonPath);
+        loadPhase("parse", System.nanoTime() - start);
+        this.initIndex();
     }
 
     /**
-     * 初始化区域数据内存映射。
+     * 使用已构建好的区域数据创建电子围栏API，并初始化空间索引。
      *
-     * @param data 区域数据列表。
-     * @return 包含区域数据的映射表。
+     * @param polygonLists 按区域代码索引的区域节点映射。
+     * @param polygonNodes 顶层区域节点映射，子节点通过节点的children逐层关联。
      */
-    private Map<String, PolygonNode> initMemRegionData(List<Polygon> data) {
-        // 根据区域代码分组聚合区域数据
-        Map<String, List<Polygon>> sd = data.stream().collect(Collectors.groupingBy(Polygon::getCode, Collectors.toList()));
+    protected ElectronicJsonAPI(Map<String, PolygonNode> polygonLists, Map<String, PolygonNode> polygonNodes) {
+        this(polygonLists, polygonNodes, null);
+    }
 
-        ConcurrentHashMap<String, PolygonNode> concatMap = new ConcurrentHashMap<>();
-        sd.forEach((k, v) -> {
-            Polygon regionPolygon = v.get(0);
-            PolygonNode children = new PolygonNode()
-                    .setCode(regionPolygon.getCode())
-                    .setP_code(regionPolygon.getP_code())
-                    .setC_code(regionPolygon.getC_code())
-                    .setA_code(regionPolygon.getA_code())
-                    .setLevel(regionPolygon.getLevel())
-                    .setPolygons(v.stream().map(Polygon::getPolygon).collect(Collectors.toList()));
-
-            // 处理多边形点数据
-            List<List<Point>> points = children.getPolygons().stream().map(s -> {
-                String[] lnglat = s.split(";");
-                return Arrays.stream(lnglat).map(t -> {
-                    String[] key = t.split(",");
-                    return new Point(Double.parseDouble(key[0]), Double.parseDouble(key[1]));
-                }).collect(Collectors.toList());
-            }).collect(Collectors.toList());
-            children.setPolygonPoints(points);
-
-            concatMap.put(regionPolygon.getCode(), children);
+    /**
+     * 使用已构建好的区域数据和网格索引创建电子围栏API，网格索引为null时重新构建。
+     *
+     * @param polygonLists 按区域代码索引的区域节点映射。
+     * @param polygonNodes 顶层区域节点映射，子节点通过节点的children逐层关联。
+     * @param polygonGrid 预先构建的网格索引，可以为null。
+     */
+    protected ElectronicJsonAPI(Map<String, PolygonNode> polygonLists, Map<String, PolygonNode> polygonNodes, GridIndex polygonGrid) {
+        super.POLYGON_LISTS = polygonLists;
+        super.POLYGON_NODES = polygonNodes;
+        super.POLYGON_GRID = polygonGrid;
+        this.initIndex();
+    }
+
+    /**
+     * 初始化空间索引，包括各层级节点的R树索引、区域代码表和全部多边形的网格索引，已有网格索引时不再重复构建。
+     */
+    private void initIndex() {
+        long start = System.nanoTime();
+        initChildIndex(POLYGON_NODES);
+        super.POLYGON_INDEX = RingIndex.of(POLYGON_NODES);
+        loadPhase("ringIndex", System.nanoTime() - start);
+        start = System.nanoTime();
+        super.REGION_TABLE = RegionTable.of(POLYGON_LISTS);
+        loadPhase("regionTable", System.nanoTime() - start);
+        if (super.POLYGON_GRID != null) return;
+        start = System.nanoTime();
+        super.POLYGON_GRID = new GridIndex(POLYGON_LISTS.values(), this::gridMatch, this::gridContains, GridIndex.DEFAULT_CELLS);
+        loadPhase("gridIndex", System.nanoTime() - start);
+    }
+
+    /**
+     * 网格索引使用的匹配函数，从顶层节点开始查找点所在的最细层级节点。
+     */
+    private PolygonNode gridMatch(Point point) {
+        return super.fenceHit(POLYGON_NODES, POLYGON_INDEX, point);
+    }
+
+    /**
+     * 网格索引使用的判断函数，判断点是否在指定区域节点内。
+     */
+    private boolean gridContains(PolygonNode node, Point point) {
+        return super.fenceHitByCode(POLYGON_LISTS, node.getCode(), point);
+    }
+
+    /**
+     * 在当前数据的基础上应用一组区域变化，返回包含变化的新电子围栏API，当前对象保持不变，可在查询进行时调用。
+     * <p>
+     * 新旧数据共享未变化的部分：未受影响的顶层区域及其全部子区域、全部多边形环都直接复用；
+     * 变化区域所在的顶层区域（变化前和变化后）按新的层级关系复制节点并重建子节点索引，
+     * 网格索引只重新计算变化区域覆盖的网格，小网格缓存使用相同配置重新创建。
+     * 查询结果与使用修改后的完整数据重新加载相同；例外是之前因上级代码不存在而不在层级树中的区域，
+     * 在其上级区域被新增后不会自动挂到层级树上，需要完整重新加载。
+     *
+     * @param delta 区域变化。
+     * @return 包含变化的新电子围栏API。
+     * @throws RuntimeException 如果变化为null或多边形格式错误，将抛出运行时异常，当前数据不受影响。
+     */
+    public ElectronicJsonAPI patch(RegionDelta delta) {
+        if (delta == null) throw new RuntimeException("访问参数丢失");
+        long start = System.nanoTime();
+        Map<String, List<Polygon>> changes = delta.getChanges();
+
+        // 先解析全部新记录，解析失败时不产生任何变化
+        Map<String, PolygonNode> created = new HashMap<>();
+        Map<String, String> createdParents = new HashMap<>();
+        changes.forEach((code, records) -> {
+            if (records == null) return;
+            Polygon first = records.get(0);
+            List<Ring> rings = new ArrayList<>(records.size());
+            records.forEach(record -> rings.add(Ring.parse(record.getPolygon())));
+            created.put(code, new PolygonNode()
+                    .setCode(code)
+                    .setP_code(first.getP_code())
+                    .setC_code(first.getC_code())
+                    .setA_code(first.getA_code())
+                    .setLevel(first.getLevel())
+                    .setRings(rings));
+            createdParents.put(code, first.getParent_code());
         });
-        return concatMap;
+
+        // 变化前的区域范围和变化前后所在的顶层区域
+        List<BoundingBox> touched = new ArrayList<>();
+        Set<String> roots = new HashSet<>();
+        for (String code : changes.keySet()) {
+            PolygonNode old = POLYGON_LISTS.get(code);
+            if (old == null) continue;
+            touched.add(old.getBounds());
+            PolygonNode root = rootOf(old);
+            if (root != null) roots.add(root.getCode());
+        }
+        for (String code : created.keySet()) {
+            String root = rootOf(code, changes, createdParents);
+            if (root != null) roots.add(root);
+        }
+
+        // 复制受影响的顶层区域中未变化的节点，与新节点一起按上级代码分组后重新关联
+        Map<String, List<PolygonNode>> parentMap = new HashMap<>();
+        Map<String, PolygonNode> copies = new HashMap<>();
+        for (String root : roots) {
+            PolygonNode node = POLYGON_NODES.get(root);
+            if (node != null) copySubtree(node, "CHN", changes, parentMap, copies);
+        }
+        created.forEach((code, node) -> parentMap.computeIfAbsent(createdParents.get(code), key -> new ArrayList<>()).add(node));
+        ConcurrentHashMap<String, PolygonNode> linked = initMap(parentMap, "CHN");
+        if (linked != null) initChildIndex(linked);
+        // 未能关联到层级树上的节点只能按区域代码访问，单独计算外包矩形
+        copies.values().stream().filter(node -> node.getBounds() == null).forEach(ElectronicJsonAPI::initBounds);
+        created.values().stream().filter(node -> node.getBounds() == null).forEach(ElectronicJsonAPI::initBounds);
+        created.values().forEach(node -> touched.add(node.getBounds()));
+
+        ConcurrentHashMap<String, PolygonNode> polygonLists = new ConcurrentHashMap<>(POLYGON_LISTS);
+        changes.keySet().forEach(polygonLists::remove);
+        polygonLists.putAll(copies);
+        polygonLists.putAll(created);
+        ConcurrentHashMap<String, PolygonNode> polygonNodes = new ConcurrentHashMap<>(POLYGON_NODES);
+        roots.forEach(polygonNodes::remove);
+        if (linked != null) polygonNodes.putAll(linked);
+        ElectronicJsonAPI patched = new ElectronicJsonAPI(polygonLists, polygonNodes, this, touched);
+        patched.loadPhase("patch", System.nanoTime() - start);
+        return patched;
     }
 
     /**
-     * 初始化父级区域数据内存映射。
+     * 创建应用区域变化后的电子围栏API。传入的节点已完成关联，只重建顶层索引和区域代码表，并在原网格索引的基础上局部更新。
+     * 小网格缓存的配置和指标监听器与变化前相同。
      *
-     * @param data 区域数据列表。
-     * @return 包含父级区域数据的映射表。
+     * @param polygonLists 变化后按区域代码索引的区域节点映射。
+     * @param polygonNodes 变化后的顶层区域节点映射。
+     * @param base 变化前的电子围栏API。
+     * @param touched 变化区域在变化前和变化后的外包矩形。
      */
-    private Map<String, PolygonNode> initMemData(List<Polygon> data) {
-        Map<String, List<Polygon>> s = data.stream().collect(Collectors.groupingBy(Polygon::getParent_code, Collectors.toList()));
-        return initMap(s, "CHN");
+    private ElectronicJsonAPI(Map<String, PolygonNode> polygonLists, Map<String, PolygonNode> polygonNodes,
+                              ElectronicJsonAPI base, List<BoundingBox> touched) {
+        super.POLYGON_LISTS = polygonLists;
+        super.POLYGON_NODES = polygonNodes;
+        super.METRICS = base.METRICS;
+        long start = System.nanoTime();
+        super.POLYGON_INDEX = RingIndex.of(polygonNodes);
+        loadPhase("ringIndex", System.nanoTime() - start);
+        start = System.nanoTime();
+        super.REGION_TABLE = RegionTable.of(polygonLists);
+        loadPhase("regionTable", System.nanoTime() - start);
+        start = System.nanoTime();
+        if (base.POLYGON_GRID != null) {
+            super.POLYGON_GRID = base.POLYGON_GRID.patch(touched, polygonLists.values(), polygonLists::get, this::gridMatch, this::gridContains);
+        }
+        if (super.POLYGON_GRID == null) {
+            super.POLYGON_GRID = new GridIndex(polygonLists.values(), this::gridMatch, this::gridContains, GridIndex.DEFAULT_CELLS);
+        }
+        loadPhase("gridIndex", System.nanoTime() - start);
+        if (base.CELL_CACHE != null) enableCellCache(base.CELL_CACHE.getCapacity(), base.CELL_CACHE.getCellSize());
     }
 
     /**
-     * 递归初始化区域数据内存映射。
+     * 查找层级树中节点所在的顶层节点。
      *
-     * @param pMap 区域数据的分组映射。
+     * @return 顶层节点；节点不在层级树中时返回null。
+     */
+    private PolygonNode rootOf(PolygonNode node) {
+        while (node.getParent() != null) node = node.getParent();
+        return POLYGON_NODES.get(node.getCode()) == node ? node : null;
+    }
+
+    /**
+     * 按变化后的上级代码查找新记录所在的顶层区域代码。
+     *
+     * @return 顶层区域代码；变化后不在层级树中时返回null。
+     */
+    private String rootOf(String code, Map<String, List<Polygon>> changes, Map<String, String> createdParents) {
+        // 上级代码出现环时，最多经过变化区域数量次即可发现
+        for (int steps = 0; steps <= createdParents.size(); steps++) {
+            String parent = createdParents.get(code);
+            if ("CHN".equals(parent)) return code;
+            if (parent == null) return null;
+            if (createdParents.containsKey(parent)) {
+                code = parent;
+                continue;
+            }
+            if (changes.containsKey(parent)) return null;
+            PolygonNode old = POLYGON_LISTS.get(parent);
+            PolygonNode root = old == null ? null : rootOf(old);
+            return root == null ? null : root.getCode();
+        }
+        return null;
+    }
+
+    /**
+     * 复制子树中未发生变化的节点，按上级代码分组。复制的节点共享多边形环，子节点和索引在重新关联时设置。
+     */
+    private static void copySubtree(PolygonNode node, String parentCode, Map<String, List<Polygon>> changes,
+                                    Map<String, List<PolygonNode>> parentMap, Map<String, PolygonNode> copies) {
+        if (!changes.containsKey(node.getCode())) {
+            PolygonNode copy = new PolygonNode()
+                    .setCode(node.getCode())
+                    .setP_code(node.getP_code())
+                    .setC_code(node.getC_code())
+                    .setA_code(node.getA_code())
+                    .setLevel(node.getLevel())
+                    .setRings(node.getRings());
+            parentMap.computeIfAbsent(parentCode, key -> new ArrayList<>()).add(copy);
+            copies.put(copy.getCode(), copy);
+        }
+        if (node.hasChildren()) {
+            node.getChildren().values().forEach(child -> copySubtree(child, node.getCode(), changes, parentMap, copies));
+        }
+    }
+
+    /**
+     * 递归为每个节点的子节点构建R树索引，并设置子节点的父节点。
+     *
+     * @param nodes 同一层级的节点映射。
+     */
+    private static void initChildIndex(Map<String, PolygonNode> nodes) {
+        if (nodes == null) return;
+        nodes.values().forEach(node -> {
+            initChildIndex(node.getChildren());
+            node.setChildIndex(RingIndex.of(node.getChildren()));
+            if (node.hasChildren()) node.getChildren().values().forEach(child -> child.setParent(node));
+        });
+    }
+
+    /**
+     * 初始化区域数据内存映射。
+     * 逐条读取JSON记录，每条记录的多边形只解析一次，同一区域代码的多边形合并到同一个节点中。
+     * 节点同时放入按代码索引的映射和以"CHN"为根的层级树中，两者共享同一个节点实例，
+     * 同一区域代码的记录按第一条记录的父级代码挂到层级树上。
+     *
+     * @param jsonPath 包含电子围栏数据的JSON文件路径。
+     */
+    private void initMemData(String jsonPath) {
+        ConcurrentHashMap<String, PolygonNode> concatMap = new ConcurrentHashMap<>();
+        Map<String, List<PolygonNode>> parentMap = new HashMap<>();
+        ElectronicJsonLoader.stream(jsonPath, (regionPolygon, ring) -> {
+            PolygonNode children = concatMap.get(regionPolygon.getCode());
+            if (children == null) {
+                children = new PolygonNode()
+                        .setCode(regionPolygon.getCode())
+                        .setP_code(regionPolygon.getP_code())
+                        .setC_code(regionPolygon.getC_code())
+                        .setA_code(regionPolygon.getA_code())
+                        .setLevel(regionPolygon.getLevel())
+                        .setRings(new ArrayList<>(1));
+                concatMap.put(regionPolygon.getCode(), children);
+                parentMap.computeIfAbsent(regionPolygon.getParent_code(), key -> new ArrayList<>()).add(children);
+            }
+            children.getRings().add(ring);
+        });
+        super.POLYGON_LISTS = concatMap;
+        super.POLYGON_NODES = initMap(parentMap, "CHN");
+        // 层级树中不可达的节点只能按区域代码访问，单独计算外包矩形
+        concatMap.values().stream().filter(node -> node.getBounds() == null).forEach(ElectronicJsonAPI::initBounds);
+    }
+
+    /**
+     * 递归关联指定父级区域下的子节点，并在子节点完成后计算节点外包矩形。
+     *
+     * @param pMap 按父级区域代码分组的节点。
      * @param parent 父级区域代码。
-     * @return 包含指定父级区域数据的映射表。
+     * @return 包含指定父级区域子节点的映射表。
      */
-    private ConcurrentHashMap<String, PolygonNode> initMap(Map<String, List<Polygon>> pMap, String parent) {
-        List<Polygon> polygons = pMap.get(parent);
-        if (polygons == null) return null;
-        Map<String, List<Polygon>> listMap = polygons.stream().collect(Collectors.groupingBy(Polygon::getCode, Collectors.toList()));
+    private static ConcurrentHashMap<String, PolygonNode> initMap(Map<String, List<PolygonNode>> pMap, String parent) {
+        List<PolygonNode> nodes = pMap.get(parent);
+        if (nodes == null) return null;
 
         ConcurrentHashMap<String, PolygonNode> concatMap = new ConcurrentHashMap<>();
-        listMap.forEach((k, v) -> {
-            Polygon regionPolygon = v.get(0);
-            PolygonNode children = new PolygonNode()
-                    .setCode(regionPolygon.getCode())
-                    .setP_code(regionPolygon.getP_code())
-                    .setC_code(regionPolygon.getC_code())
-                    .setA_code(regionPolygon.getA_code())
-                    .setLevel(regionPolygon.getLevel())
-                    .setPolygons(v.stream().map(Polygon::getPolygon).collect(Collectors.toList()));
-
-            // 处理多边形点数据
-            List<List<Point>> points = children.getPolygons().stream().map(s -> {
-                String[] lnglat = s.split(";");
-                return Arrays.stream(lnglat).map(t -> {
-                    String[] key = t.split(",");
-                    return new Point(Double.parseDouble(key[0]), Double.parseDouble(key[1]));
-                }).collect(Collectors.toList());
-            }).collect(Collectors.toList());
-            children.setPolygonPoints(points)
-                    .setChildren(initMap(pMap, regionPolygon.getCode()));
-
-            concatMap.put(regionPolygon.getCode(), children);
+        nodes.forEach(children -> {
+            children.setChildren(initMap(pMap, children.getCode()));
+            initBounds(children);
+            concatMap.put(children.getCode(), children);
         });
         return concatMap;
     }
 
+    /**
+     * 计算覆盖节点自身所有多边形环与全部子节点的节点外包矩形。
+     * 子节点需先于父节点完成计算。
+     *
+     * @param node 待计算的多边形节点。
+     */
+    private static void initBounds(PolygonNode node) {
+        BoundingBox bounds = BoundingBox.empty();
+        node.getRings().forEach(ring -> bounds.union(ring.getBounds()));
+        if (node.hasChildren()) {
+            node.getChildren().values().forEach(child -> bounds.union(child.getBounds()));
+        }
+        node.setBounds(bounds);
+    }
+
     /**
      * 判断点是否在指定的电子围栏内。
      *
      * @param code 区域代码。
      * @param point 待判断的点。
-     * @return 包含判断结果和消息的比较结果对象。
+     * @return 包含判断结果和消息的比较结果对象；区域代码不存在时判断结果为false，与批量和异步接口一致。
      */
     @Override
     public CompareResult toCompare(String code, Point point) {
         if (code == null || point == null) throw new RuntimeException("访问参数丢失");
-        CompareResult compareResult = new CompareResult();
-        Boolean hit = super.fenceHitByCode(POLYGON_LISTS, code, point);
-        compareResult.setPoint(point)
-                .setCompareCode(code)
-                .setVerified(hit)
-                .setMessage(hit ? "Hit the electronic fence." : "Outside the electronic fence area.");
-        return compareResult;
+        MetricsListener metrics = METRICS;
+        PolygonNode polygonNode = POLYGON_LISTS.get(code);
+        boolean hit = polygonNode != null && (metrics == null ? super.fenceHitByCode(polygonNode, point.getLng(), point.getLat())
+                : tracedCompare(metrics, polygonNode, point));
+        return toCompareResult(code, point, hit);
     }
 
     /**
@@ -178,7 +397,107 @@ public class ElectronicJsonAPI extends AcsEFInterface implements Serializable {
     @Override
     public MatchResult toMatch(Point point) {
         if (point == null) throw new RuntimeException("访问参数丢失");
-        PolygonNode polygonNode = super.fenceHit(POLYGON_NODES, point);
+        MetricsListener metrics = METRICS;
+        if (metrics == null) return toMatchResult(super.fenceHit(point));
+        return toMatchResult(tracedMatch(metrics, point, null));
+    }
+
+    /**
+     * 匹配点所在的指定级别区域，不再查找更细层级的区域。
+     * 例如只需要省份时，命中省份多边形后不再检查城市和区县的多边形；返回结果中更细层级的代码为空。
+     *
+     * @param point 待匹配的点。
+     * @param mode 目标级别。
+     * @return 包含匹配结果的匹配结果对象；点不在任何区域内时返回null。
+     */
+    @Override
+    public MatchResult toMatch(Point point, CompareMode mode) {
+        if (point == null || mode == null) throw new RuntimeException("访问参数丢失");
+        MetricsListener metrics = METRICS;
+        if (metrics == null) return toMatchResult(super.fenceHit(point, mode));
+        return toMatchResult(tracedMatch(metrics, point, mode));
+    }
+
+    /**
+     * 查找点所在的节点，并将执行情况通知指标监听器。
+     */
+    private PolygonNode tracedMatch(MetricsListener metrics, Point point, CompareMode mode) {
+        QueryStats stats = new QueryStats(point);
+        PolygonNode polygonNode = super.fenceHit(point, mode, stats);
+        metrics.onMatch(stats.finish(polygonNode != null ? polygonNode.getCode() : null));
+        return polygonNode;
+    }
+
+    /**
+     * 判断点是否在区域代码对应的指定级别上级区域内。
+     * 例如传入区县代码和 {@link CompareMode#PROVINCE} 时判断点是否在该区县所属的省份内；
+     * 区域代码本身的级别不低于目标级别时直接判断该区域。
+     *
+     * @param code 区域代码。
+     * @param point 待判断的点。
+     * @param mode 目标级别。
+     * @return 比较结果对象，比较代码为实际判断的上级区域代码；区域代码不存在时判断结果为false。
+     */
+    @Override
+    public CompareResult toCompare(String code, Point point, CompareMode mode) {
+        if (code == null || point == null || mode == null) throw new RuntimeException("访问参数丢失");
+        PolygonNode polygonNode = ancestor(POLYGON_LISTS.get(code), mode);
+        MetricsListener metrics = METRICS;
+        boolean hit = polygonNode != null && (metrics == null ? super.fenceHitByCode(polygonNode, point.getLng(), point.getLat())
+                : tracedCompare(metrics, polygonNode, point));
+        return new CompareResult()
+                .setPoint(point)
+                .setCompareCode(polygonNode != null ? polygonNode.getCode() : code)
+                .setVerified(hit)
+                .setMessage(hit ? "Hit the electronic fence." : "Outside the electronic fence area.");
+    }
+
+    /**
+     * 判断点是否在区域节点内，并将执行情况通知指标监听器。
+     */
+    private boolean tracedCompare(MetricsListener metrics, PolygonNode polygonNode, Point point) {
+        QueryStats stats = new QueryStats(point);
+        boolean hit = super.fenceHitByCode(polygonNode, point.getLng(), point.getLat(), stats);
+        metrics.onCompare(stats.finish(polygonNode.getCode()));
+        return hit;
+    }
+
+    /**
+     * 匹配点所在的区域，点不在任何区域内时（如近海、边境附近的GPS漂移）返回边界距离该点最近的区域。
+     * 最近区域使用最细层级区域边界的线段索引查找，首次调用时构建索引。
+     *
+     * @param point 待匹配的点。
+     * @param maxDistance 最大距离（米），为0时与 {@link #toMatch(Point)} 相同。
+     * @return 包含匹配结果的匹配结果对象；点不在任何区域内且最大距离内没有区域时返回null。
+     */
+    @Override
+    public MatchResult nearestMatch(Point point, double maxDistance) {
+        if (point == null) throw new RuntimeException("访问参数丢失");
+        return toMatchResult(nearestNode(point, maxDistance));
+    }
+
+    /**
+     * 计算点到区域边界的距离，点在区域内时为到边界的最近距离，在区域外时为到区域的距离。
+     * 可与 {@link #toCompare(String, Point)} 结合判断点在区域内外及距离边界的远近。
+     *
+     * @param code 区域代码。
+     * @param point 待计算的点。
+     * @return 距离（米），使用等距圆柱投影近似计算；区域代码不存在时返回null。
+     */
+    @Override
+    public Double distanceToBoundary(String code, Point point) {
+        if (code == null || point == null) throw new RuntimeException("访问参数丢失");
+        PolygonNode polygonNode = POLYGON_LISTS.get(code);
+        return polygonNode == null ? null : boundaryDistance(polygonNode, point);
+    }
+
+    /**
+     * 将区域节点转换为匹配结果。
+     *
+     * @param polygonNode 区域节点，可以为null。
+     * @return 匹配结果；节点为null时返回null。
+     */
+    static MatchResult toMatchResult(PolygonNode polygonNode) {
         if (polygonNode == null) return null;
         return new MatchResult()
                 .setProvinceCode(polygonNode.getP_code())
@@ -186,6 +505,21 @@ public class ElectronicJsonAPI extends AcsEFInterface implements Serializable {
                 .setAreaCode(polygonNode.getA_code());
     }
 
+    /**
+     * 生成比较结果。
+     *
+     * @param code 区域代码。
+     * @param point 待判断的点。
+     * @param hit 点是否在区域内。
+     * @return 比较结果。
+     */
+    static CompareResult toCompareResult(String code, Point point, boolean hit) {
+        return new CompareResult().setPoint(point)
+                .setCompareCode(code)
+                .setVerified(hit)
+                .setMessage(hit ? "Hit the electronic fence." : "Outside the electronic fence area.");
+    }
+
     /**
      * 使用函数式接口处理匹配点所在区域的结果。
      *
@@ -16,6 +16,7 @@ limitations under the License.
 package com.acs.efence;
 
 import com.acs.efence.model.Polygon;
+import com.acs.efence.model.Ring;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
@@ -24,27 +25,35 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
 
 /**
  * 电子文件JSON加载器类，用于从指定的JSON文件中加载多边形数据。
  */
 public class ElectronicJsonLoader {
 
+    /**
+     * 每批并行解析的坐标字符串总长度。
+     */
+    private static final long BATCH_CHARS = 1 << 23;
+
     /**
      * 从指定的JSON路径加载多边形数据。
      *
-     * @param JSON_PATH JSON文件的路径，相对于classpath。
+     * @param JSON_PATH JSON文件的路径，相对于classpath；classpath中不存在时按文件系统路径读取。
      * @return 包含多个多边形的列表。
      * @throws RuntimeException 如果发生IO异常，将抛出运行时异常。
      */
-    static List<Polygon> load(String JSON_PATH) {
-        // 获取当前类的类加载器
-        ClassLoader classLoader = ElectronicJsonLoader.class.getClassLoader();
+    public static List<Polygon> load(String JSON_PATH) {
         // 创建Gson实例，用于JSON和Java对象之间的转换
         Gson gson = new Gson();
-        try (InputStream inputStream = classLoader.getResourceAsStream(JSON_PATH)) {
+        try (InputStream inputStream = open(JSON_PATH)) {
             // 创建InputStreamReader，用于读取输入流，并指定字符编码为UTF-8
             InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
             // 创建JsonReader，用于解析JSON数据
@@ -57,5 +66,67 @@ public class ElectronicJsonLoader {
         }
     }
 
+    /**
+     * 逐条读取指定JSON路径中的多边形数据，并将坐标字符串解析为多边形环。
+     * 记录按批读取，每批的坐标字符串在ForkJoinPool中并行解析，解析完成后即丢弃（启用了 {@link Ring#RETAIN_TEXT} 时由多边形环保留），
+     * 加载过程中只保留一批原始字符串，不会把整个文件的字符串同时留在内存中。
+     * 回调按记录在文件中的顺序执行，回调时记录的polygon字段已置为null。
+     *
+     * @param JSON_PATH JSON文件的路径，相对于classpath；classpath中不存在时按文件系统路径读取。
+     * @param consumer 接收每条记录及其多边形环的回调。
+     * @throws RuntimeException 如果发生IO异常，将抛出运行时异常。
+     */
+    public static void stream(String JSON_PATH, BiConsumer<Polygon, Ring> consumer) {
+        Gson gson = new Gson();
+        try (InputStream inputStream = open(JSON_PATH)) {
+            JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            List<Polygon> batch = new ArrayList<>();
+            long batchChars = 0;
+            jsonReader.beginArray();
+            while (jsonReader.hasNext()) {
+                Polygon polygon = gson.fromJson(jsonReader, Polygon.class);
+                batch.add(polygon);
+                batchChars += polygon.getPolygon().length();
+                if (batchChars >= BATCH_CHARS) {
+                    parse(batch, consumer);
+                    batchChars = 0;
+                }
+            }
+            jsonReader.endArray();
+            parse(batch, consumer);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * 并行解析一批记录的多边形环，按原顺序交给回调处理后清空批次。
+     */
+    private static void parse(List<Polygon> batch, BiConsumer<Polygon, Ring> consumer) {
+        Ring[] rings = new Ring[batch.size()];
+        IntStream.range(0, rings.length).parallel().forEach(i -> rings[i] = Ring.parse(batch.get(i).getPolygon()));
+        for (int i = 0; i < rings.length; i++) {
+            consumer.accept(batch.get(i).setPolygon(null), rings[i]);
+        }
+        batch.clear();
+    }
+
+    /**
+     * 打开JSON数据文件，优先从classpath中查找，找不到时按文件系统路径打开。
+     *
+     * @param JSON_PATH JSON文件的路径。
+     * @return 数据文件的输入流。
+     * @throws IOException 如果文件不存在或无法读取。
+     */
+    static InputStream open(String JSON_PATH) throws IOException {
+        // 获取当前类的类加载器
+        ClassLoader classLoader = ElectronicJsonLoader.class.getClassLoader();
+        InputStream inputStream = classLoader.getResourceAsStream(JSON_PATH);
+        if (inputStream != null) return inputStream;
+        Path file = Paths.get(JSON_PATH);
+        if (!Files.isRegularFile(file)) throw new IOException("Data file not found: " + JSON_PATH);
+        return Files.newInputStream(file);
+    }
+
 }
 
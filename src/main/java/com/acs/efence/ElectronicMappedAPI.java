@@ -0,0 +1,42 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import java.io.Serializable;
+
+/**
+ * 基于内存映射存储文件的电子围栏API，继承自ElectronicJsonAPI，判断和匹配逻辑完全相同。
+ * 存储文件由 {@link PolygonStore#write(AcsEFInterface, String)} 生成，
+ * 顶点数据不进入堆内存，同一主机上的多个JVM共享操作系统的一份页缓存。
+ * 打开时只读入层级、外包矩形和网格索引，顶点页面在对应的环第一次参与判断时才被读取。
+ * 校验CRC32需要读取全部页面，因此打开时不校验，需要校验时使用 {@link ElectronicSnapshotAPI}。
+ */
+public class ElectronicMappedAPI extends ElectronicJsonAPI implements Serializable {
+
+    /**
+     * 使用指定的存储文件初始化电子围栏数据。
+     *
+     * @param storePath 多边形存储文件路径。
+     */
+    public ElectronicMappedAPI(String storePath) {
+        this(PolygonStore.map(storePath));
+    }
+
+    private ElectronicMappedAPI(PolygonStore.Contents contents) {
+        super(contents.polygonLists, contents.polygonNodes, contents.grid);
+        loadPhase("mapped", contents.nanos);
+    }
+}
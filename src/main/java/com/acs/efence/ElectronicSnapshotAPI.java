@@ -0,0 +1,46 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import java.io.Serializable;
+
+/**
+ * 基于快照文件的电子围栏API，继承自ElectronicJsonAPI，判断和匹配逻辑完全相同。
+ * 快照文件由 {@link PolygonStore#main(String[])} 或 {@link PolygonStore#write(AcsEFInterface, String)} 生成，
+ * 包含区域层级、全部顶点和网格索引，加载时一次性读入并校验CRC32，省去JSON解析和网格索引的构建。
+ */
+public class ElectronicSnapshotAPI extends ElectronicJsonAPI implements Serializable {
+
+    /**
+     * 使用指定的快照文件初始化电子围栏数据。
+     *
+     * @param snapshotPath 快照文件路径。
+     * @throws RuntimeException 如果快照文件版本不匹配或校验失败，将抛出运行时异常。
+     */
+    public ElectronicSnapshotAPI(String snapshotPath) {
+        this(PolygonStore.load(snapshotPath));
+    }
+
+    /**
+     * 使用已读取的快照内容初始化电子围栏数据，用于反序列化 {@link SerializedSnapshot}。
+     *
+     * @param contents 快照中的区域节点映射与网格索引。
+     */
+    ElectronicSnapshotAPI(PolygonStore.Contents contents) {
+        super(contents.polygonLists, contents.polygonNodes, contents.grid);
+        loadPhase("snapshot", contents.nanos);
+    }
+}
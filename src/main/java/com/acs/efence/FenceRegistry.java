@@ -0,0 +1,206 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.index.BucketGrid;
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.CompareResult;
+import com.acs.efence.model.Point;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 自定义电子围栏注册表，用于门店、停车场、配送范围等业务围栏，与行政区划数据相互独立。
+ * <p>
+ * 围栏之间没有层级关系，可以相互重叠，一个坐标可以同时位于多个围栏内。
+ * 围栏存放在 {@link BucketGrid} 中，查询只访问坐标所在的一个桶，耗时与围栏总数无关；
+ * 每个多边形环的判断规则与行政区划的射线法判断相同，位于边界上的点视为在围栏内。
+ * <p>
+ * 注册和注销可以与查询并发执行，查询不加锁。
+ */
+public class FenceRegistry {
+
+    /**
+     * 按围栏代码索引的全部围栏。
+     */
+    private final ConcurrentHashMap<String, PolygonNode> fences = new ConcurrentHashMap<>();
+
+    /**
+     * 围栏的空间索引。
+     */
+    private final BucketGrid grid;
+
+    /**
+     * 使用默认网格边长创建注册表。
+     */
+    public FenceRegistry() {
+        this(BucketGrid.DEFAULT_CELL_SIZE);
+    }
+
+    /**
+     * 创建注册表。
+     *
+     * @param cellSize 空间索引的网格边长（度），与常见的围栏大小相近时查询最快。
+     */
+    public FenceRegistry(double cellSize) {
+        this.grid = new BucketGrid(cellSize);
+    }
+
+    /**
+     * 注册围栏，已存在相同代码的围栏时替换。
+     *
+     * @param code 围栏代码。
+     * @param polygons 围栏的多边形列表，格式与区域数据相同，为"经度,纬度;经度,纬度"。
+     * @return 当前对象。
+     * @throws RuntimeException 如果参数为null或多边形列表为空，将抛出运行时异常。
+     */
+    public FenceRegistry register(String code, List<String> polygons) {
+        if (code == null || polygons == null || polygons.isEmpty()) throw new RuntimeException("访问参数丢失");
+        return register(new PolygonNode().setCode(code).setPolygons(polygons));
+    }
+
+    /**
+     * 使用坐标点列表注册围栏，已存在相同代码的围栏时替换。
+     *
+     * @param code 围栏代码。
+     * @param polygonPoints 围栏的多边形坐标点列表。
+     * @return 当前对象。
+     * @throws RuntimeException 如果参数为null或多边形列表为空，将抛出运行时异常。
+     */
+    public FenceRegistry registerPoints(String code, List<List<Point>> polygonPoints) {
+        if (code == null || polygonPoints == null || polygonPoints.isEmpty()) throw new RuntimeException("访问参数丢失");
+        return register(new PolygonNode().setCode(code).setPolygonPoints(polygonPoints));
+    }
+
+    /**
+     * 计算外包矩形后放入注册表。替换时先加入新围栏再移除旧围栏，并发查询不会出现两者都查不到的情况。
+     */
+    private synchronized FenceRegistry register(PolygonNode fence) {
+        BoundingBox bounds = BoundingBox.empty();
+        fence.getRings().forEach(ring -> bounds.union(ring.getBounds()));
+        fence.setBounds(bounds);
+        grid.add(fence);
+        PolygonNode previous = fences.put(fence.getCode(), fence);
+        if (previous != null) grid.remove(previous);
+        return this;
+    }
+
+    /**
+     * 注销围栏。
+     *
+     * @param code 围栏代码。
+     * @return 如果围栏存在并已注销返回true，否则返回false。
+     */
+    public synchronized boolean unregister(String code) {
+        if (code == null) throw new RuntimeException("访问参数丢失");
+        PolygonNode previous = fences.remove(code);
+        if (previous == null) return false;
+        grid.remove(previous);
+        return true;
+    }
+
+    /**
+     * 获取已注册的围栏数量。
+     *
+     * @return 围栏数量。
+     */
+    public int size() {
+        return fences.size();
+    }
+
+    /**
+     * 获取全部已注册的围栏代码。
+     *
+     * @return 围栏代码的只读集合，随注册和注销变化。
+     */
+    public Set<String> getCodes() {
+        return Collections.unmodifiableSet(fences.keySet());
+    }
+
+    /**
+     * 查找包含给定点的全部围栏。
+     *
+     * @param point 待匹配的点。
+     * @return 包含该点的围栏代码，按代码排序；不在任何围栏内时返回空列表。
+     */
+    public List<String> toMatch(Point point) {
+        if (point == null) throw new RuntimeException("访问参数丢失");
+        double lng = point.getLng(), lat = point.getLat();
+        List<String> codes = new ArrayList<>(2);
+        grid.forEach(lng, lat, fence -> {
+            if (contains(fence, lng, lat) && !codes.contains(fence.getCode())) codes.add(fence.getCode());
+        });
+        Collections.sort(codes);
+        return codes;
+    }
+
+    /**
+     * 使用函数式接口处理包含给定点的全部围栏。
+     *
+     * @param point 待匹配的点。
+     * @param mapper 将围栏代码列表转换为指定类型的函数。
+     * @param <B> 转换后的类型。
+     * @return 转换后的结果。
+     */
+    public <B> B toMatch(Point point, Function<? super List<String>, ? extends B> mapper) {
+        return mapper.apply(toMatch(point));
+    }
+
+    /**
+     * 判断点是否在指定的围栏内。
+     *
+     * @param code 围栏代码。
+     * @param point 待判断的点。
+     * @return 包含判断结果和消息的比较结果对象；围栏不存在时判断结果为false。
+     */
+    public CompareResult toCompare(String code, Point point) {
+        if (code == null || point == null) throw new RuntimeException("访问参数丢失");
+        PolygonNode fence = fences.get(code);
+        boolean hit = fence != null && fence.getBounds().contains(point) && contains(fence, point.getLng(), point.getLat());
+        return new CompareResult()
+                .setPoint(point)
+                .setCompareCode(code)
+                .setVerified(hit)
+                .setMessage(hit ? "Hit the electronic fence." : "Outside the electronic fence area.");
+    }
+
+    /**
+     * 使用函数式接口处理判断点是否在围栏内的结果。
+     *
+     * @param code 围栏代码。
+     * @param point 待判断的点。
+     * @param mapper 将比较结果转换为指定类型的函数。
+     * @param <B> 转换后的类型。
+     * @return 转换后的结果。
+     */
+    public <B> B toCompare(String code, Point point, Function<? super CompareResult, ? extends B> mapper) {
+        return mapper.apply(toCompare(code, point));
+    }
+
+    private static boolean contains(PolygonNode fence, double lng, double lat) {
+        for (Ring ring : fence.getRings()) {
+            if (ring.getBounds().contains(lng, lat) && ring.contains(lng, lat)) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.index.RegionLocator;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * 多线程批量匹配引擎。
+ * <p>
+ * 先把全部坐标按空间位置排列，再在ForkJoinPool中把排列后的访问顺序逐级二分，直到每段不超过指定的坐标数量。
+ * 每段坐标在空间上相邻，一个工作线程只会访问一小片区域的网格和多边形。
+ * 每个坐标的结果写入输出数组中坐标的原始位置，结果与 {@link AcsEFInterface#toMatchBatch(double[], double[], int[])}
+ * 以及 {@link AcsEFInterface#toCompareBatch(double[], double[], String[], boolean[])} 完全相同，与线程数和拆分方式无关。
+ */
+public class ParallelMatcher {
+
+    /**
+     * 默认每段的坐标数量。
+     */
+    public static final int DEFAULT_SEGMENT = 4096;
+
+    /**
+     * 电子围栏API。
+     */
+    private final AcsEFInterface api;
+
+    /**
+     * 执行任务的线程池。
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * 每段的最大坐标数量，不再继续拆分。
+     */
+    private final int segment;
+
+    /**
+     * 使用公共ForkJoinPool创建批量匹配引擎。
+     *
+     * @param api 电子围栏API。
+     */
+    public ParallelMatcher(AcsEFInterface api) {
+        this(api, ForkJoinPool.commonPool(), DEFAULT_SEGMENT);
+    }
+
+    /**
+     * 使用指定的ForkJoinPool创建批量匹配引擎。
+     *
+     * @param api 电子围栏API。
+     * @param pool 执行任务的线程池，并行度即使用的线程数。
+     * @param segment 每段的最大坐标数量。
+     * @throws RuntimeException 如果参数为null或每段数量不是正数，将抛出运行时异常。
+     */
+    public ParallelMatcher(AcsEFInterface api, ForkJoinPool pool, int segment) {
+        if (api == null || pool == null) throw new RuntimeException("访问参数丢失");
+        if (segment <= 0) throw new RuntimeException("Segment size must be positive.");
+        this.api = api;
+        this.pool = pool;
+        this.segment = segment;
+    }
+
+    /**
+     * 并行匹配坐标所在的最细层级区域，结果定义见 {@link AcsEFInterface#toMatchBatch(double[], double[], int[])}。
+     *
+     * @param lngs 经度数组。
+     * @param lats 纬度数组，长度与经度数组相同。
+     * @param out 输出数组，out[i]为第i个坐标所在区域在 {@link AcsEFInterface#getRegionTable()} 中的编号。
+     * @throws RuntimeException 如果参数为null或数组长度不足，将抛出运行时异常。
+     */
+    public void match(double[] lngs, double[] lats, int[] out) {
+        if (lngs == null || lats == null || out == null) throw new RuntimeException("访问参数丢失");
+        int n = AcsEFInterface.checkBatch(lngs, lats, out.length);
+        AcsEFInterface api = this.api.current();
+        // 在拆分之前初始化区域代码表，工作线程只读
+        api.getRegionTable();
+        int[] order = api.spatialOrder(lngs, lats, 0);
+        pool.invoke(new Task((from, to) -> api.matchRange(new RegionLocator(api.POLYGON_INDEX), lngs, lats, order, from, to, out), 0, n));
+    }
+
+    /**
+     * 并行判断坐标是否在对应区域代码的电子围栏内，结果定义见 {@link AcsEFInterface#toCompareBatch(double[], double[], String[], boolean[])}。
+     *
+     * @param lngs 经度数组。
+     * @param lats 纬度数组，长度与经度数组相同。
+     * @param codes 区域代码数组，长度与经度数组相同。
+     * @param out 输出数组，out[i]表示第i个坐标是否在codes[i]对应的区域内。
+     * @throws RuntimeException 如果参数为null、数组长度不足或包含null区域代码，将抛出运行时异常。
+     */
+    public void compare(double[] lngs, double[] lats, String[] codes, boolean[] out) {
+        if (lngs == null || lats == null || codes == null || out == null) throw new RuntimeException("访问参数丢失");
+        int n = AcsEFInterface.checkBatch(lngs, lats, Math.min(codes.length, out.length));
+        AcsEFInterface api = this.api.current();
+        int[] order = api.spatialOrder(lngs, lats, 0);
+        pool.invoke(new Task((from, to) -> api.compareRange(lngs, lats, codes, order, from, to, out), 0, n));
+    }
+
+    /**
+     * 处理访问顺序中一段坐标的操作。
+     */
+    private interface Segment {
+        /**
+         * 处理访问顺序中 [from, to) 范围内的坐标。
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * 按访问顺序二分拆分的任务，拆分到不超过 {@link #segment} 个坐标后处理。
+     */
+    private final class Task extends RecursiveAction {
+
+        private final Segment work;
+        private final int from, to;
+
+        Task(Segment work, int from, int to) {
+            this.work = work;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= segment) {
+                work.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Task(work, from, mid), new Task(work, mid, to));
+        }
+    }
+}
@@ -0,0 +1,666 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.index.GridIndex;
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.MappedRing;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 多边形快照文件的读写工具类。
+ * <p>
+ * 快照文件按小端字节序依次存放文件头、区域代码字符串、节点表、多边形环表、全部顶点的经度数组和纬度数组，以及网格索引。
+ * 文件头中记录格式版本和整个文件（不含校验值字段本身）的CRC32校验值。快照有两种打开方式：
+ * <ul>
+ *     <li>{@link #load(String)}：整块读入堆内存并校验，顶点复制到 {@link Ring} 的基本类型数组中；</li>
+ *     <li>{@link #map(String)}：内存映射只读打开，顶点直接由 {@link MappedRing} 在映射区域中读取，
+ *     同一主机上的多个JVM共享一份页缓存。打开时只把区域代码、节点表、环表（外包矩形）和网格索引读入堆内存，
+ *     顶点区在环第一次参与判断时才被读取（竖带边索引同时建立），未被查询的环所在的页面不会被读入。
+ *     校验CRC32需要读取全部顶点，映射方式因此不校验，需要校验时使用 {@link #load(String)}。</li>
+ * </ul>
+ *
+ * <pre>
+ * 文件头（96字节）：magic, version, nodeCount, ringCount, vertexCount, stringsOffset, nodesOffset,
+ *                  ringsOffset, lngsOffset, latsOffset, gridOffset, fileLength, checksum
+ * 字符串区：每个节点依次为 code, p_code, c_code, a_code，格式为 长度(int, null为-1) + UTF-8字节
+ * 节点表（每个48字节）：parent, level, firstRing, ringCount, minLng, minLat, maxLng, maxLat
+ * 环表（每个40字节）：vertexOffset, vertexCount, minLng, minLat, maxLng, maxLat
+ * 顶点区：经度数组 double[vertexCount]，纬度数组 double[vertexCount]
+ * 网格区：minLng, minLat, maxLng, maxLat, cellSize, columns, rows, componentCount, codeCount,
+ *        cells int[columns * rows], hits int[componentCount], codeStarts int[componentCount + 1], codes int[codeCount]
+ * </pre>
+ */
+public final class PolygonStore {
+
+    /**
+     * 文件标识 "AEFS"。
+     */
+    static final int MAGIC = 0x41454653;
+
+    /**
+     * 文件格式版本。
+     */
+    static final int VERSION = 3;
+
+    /**
+     * 顶层节点的父节点编号。
+     */
+    static final int ROOT = -1;
+
+    /**
+     * 不在层级树中、只能按区域代码访问的节点的父节点编号。
+     */
+    static final int DETACHED = -2;
+
+    private static final int HEADER_BYTES = 96;
+    private static final int CHECKSUM_OFFSET = 80;
+    private static final int NODE_BYTES = 48;
+    private static final int RING_BYTES = 40;
+    private static final int GRID_HEADER_BYTES = 56;
+    private static final int PACK_HEADER_BYTES = 12;
+
+    /**
+     * 传输格式中定点坐标的比例，1个单位为1e-7度。
+     */
+    private static final double FIXED_POINT_SCALE = 1e7;
+
+    private PolygonStore() {
+    }
+
+    /**
+     * 命令行入口，将JSON数据编译为快照文件。
+     * <pre>
+     * java -cp acs-electronic-fence.jar com.acs.efence.PolygonStore input/region_polygon.json region_polygon.snapshot
+     * </pre>
+     *
+     * @param args JSON数据路径（classpath或文件系统路径）和快照文件路径。
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: PolygonStore <region_polygon.json> <output.snapshot>");
+            System.exit(1);
+        }
+        long start = System.currentTimeMillis();
+        write(new ElectronicJsonAPI(args[0]), args[1]);
+        System.out.println("Snapshot written to " + args[1] + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * 将已加载的电子围栏数据写入快照文件。
+     *
+     * @param source 已加载数据的电子围栏API。
+     * @param path 快照文件路径。
+     * @throws RuntimeException 如果发生IO异常，将抛出运行时异常。
+     */
+    public static void write(AcsEFInterface source, String path) {
+        ByteBuffer snapshot = encode(source);
+        try (FileChannel channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (snapshot.hasRemaining()) channel.write(snapshot);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * 将已加载的电子围栏数据编码为快照，内容与快照文件完全相同。
+     *
+     * @param source 已加载数据的电子围栏API。
+     * @return 小端字节序的快照内容，位置为0，上限为快照长度。
+     * @throws RuntimeException 如果快照超过2GB，将抛出运行时异常。
+     */
+    static ByteBuffer encode(AcsEFInterface source) {
+        AcsEFInterface api = source.current();
+        // 层级树中的节点按先序遍历编号，父节点总在子节点之前
+        List<PolygonNode> nodes = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        collect(api.POLYGON_NODES, ROOT, nodes, parents);
+        Map<String, Integer> codeIndex = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) codeIndex.putIfAbsent(nodes.get(i).getCode(), i);
+        for (PolygonNode node : api.POLYGON_LISTS.values()) {
+            if (codeIndex.containsKey(node.getCode())) continue;
+            codeIndex.put(node.getCode(), nodes.size());
+            nodes.add(node);
+            parents.add(DETACHED);
+        }
+
+        List<byte[]> strings = new ArrayList<>();
+        int stringBytes = 0, ringCount = 0;
+        long vertexCount = 0;
+        for (PolygonNode node : nodes) {
+            for (String value : new String[]{node.getCode(), node.getP_code(), node.getC_code(), node.getA_code()}) {
+                byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+                strings.add(bytes);
+                stringBytes += Integer.BYTES + (bytes == null ? 0 : bytes.length);
+            }
+            ringCount += node.getRings().size();
+            for (Ring ring : node.getRings()) vertexCount += ring.size();
+        }
+
+        long stringsOffset = HEADER_BYTES;
+        long nodesOffset = align(stringsOffset + stringBytes);
+        long ringsOffset = nodesOffset + (long) nodes.size() * NODE_BYTES;
+        long lngsOffset = ringsOffset + (long) ringCount * RING_BYTES;
+        long latsOffset = lngsOffset + vertexCount * Double.BYTES;
+        long gridOffset = latsOffset + vertexCount * Double.BYTES;
+        long fileLength = gridOffset + (api.POLYGON_GRID != null ? gridBytes(api.POLYGON_GRID) : 0);
+        if (fileLength > Integer.MAX_VALUE) throw new RuntimeException("Polygon snapshot too large: " + fileLength + " bytes");
+        ByteBuffer buffer = allocate((int) fileLength);
+
+        ((Buffer) buffer).position((int) stringsOffset);
+        for (byte[] bytes : strings) {
+            buffer.putInt(bytes == null ? -1 : bytes.length);
+            if (bytes != null) buffer.put(bytes);
+        }
+
+        ByteBuffer nodeTable = slice(buffer, nodesOffset, nodes.size() * NODE_BYTES);
+        ByteBuffer ringTable = slice(buffer, ringsOffset, ringCount * RING_BYTES);
+        DoubleBuffer lngs = doubles(buffer, lngsOffset, (int) vertexCount);
+        DoubleBuffer lats = doubles(buffer, latsOffset, (int) vertexCount);
+        int firstRing = 0, vertexOffset = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            PolygonNode node = nodes.get(i);
+            nodeTable.putInt(parents.get(i))
+                    .putInt(node.getLevel() == null ? Integer.MIN_VALUE : node.getLevel())
+                    .putInt(firstRing)
+                    .putInt(node.getRings().size());
+            putBounds(nodeTable, node.getBounds());
+            for (Ring ring : node.getRings()) {
+                ringTable.putInt(vertexOffset).putInt(ring.size());
+                putBounds(ringTable, ring.getBounds());
+                for (int v = 0; v < ring.size(); v++) {
+                    lngs.put(ring.lng(v));
+                    lats.put(ring.lat(v));
+                }
+                vertexOffset += ring.size();
+            }
+            firstRing += node.getRings().size();
+        }
+
+        if (api.POLYGON_GRID != null) {
+            writeGrid(slice(buffer, gridOffset, (int) (fileLength - gridOffset)), api.POLYGON_GRID, nodes, codeIndex);
+        } else {
+            gridOffset = 0;
+        }
+
+        ((Buffer) buffer).position(0);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes.size()).putInt(ringCount).putLong(vertexCount)
+                .putLong(stringsOffset).putLong(nodesOffset).putLong(ringsOffset).putLong(lngsOffset)
+                .putLong(latsOffset).putLong(gridOffset).putLong(fileLength);
+        buffer.putLong(CHECKSUM_OFFSET, checksum(buffer.array(), (int) fileLength));
+        ((Buffer) buffer).position(0);
+        return buffer;
+    }
+
+    /**
+     * 将快照文件整块读入堆内存，校验后构建区域节点层级。
+     *
+     * @param path 快照文件路径。
+     * @return 快照中的区域节点映射与网格索引。
+     * @throws RuntimeException 如果文件格式不正确、校验失败或发生IO异常，将抛出运行时异常。
+     */
+    static Contents load(String path) {
+        long start = System.nanoTime();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new RuntimeException("Polygon snapshot too large: " + path);
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            ((Buffer) buffer).flip();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getLocalizedMessage());
+        }
+        return decode(buffer, path, start);
+    }
+
+    /**
+     * 校验堆内存中的快照内容并构建区域节点层级，顶点复制到 {@link Ring} 的基本类型数组中。
+     *
+     * @param buffer 快照内容，需以数组为底层存储，从位置0开始。
+     * @param source 快照来源，用于异常信息。
+     * @param start 开始读取时的 {@link System#nanoTime()}，用于记录耗时。
+     * @return 快照中的区域节点映射与网格索引。
+     * @throws RuntimeException 如果格式不正确或校验失败，将抛出运行时异常。
+     */
+    static Contents decode(ByteBuffer buffer, String source, long start) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        checkHeader(buffer, source);
+        if (checksum(buffer.array(), buffer.limit()) != buffer.getLong(CHECKSUM_OFFSET)) {
+            throw new RuntimeException("Polygon snapshot checksum mismatch: " + source);
+        }
+        Contents contents = read(buffer, true);
+        contents.nanos = System.nanoTime() - start;
+        return contents;
+    }
+
+    /**
+     * 将快照压缩为传输格式，用于序列化。
+     * <p>
+     * 顶点坐标都能用1e-7度的定点整数精确表示时（数据中的坐标一般不超过7位小数），经度和纬度数组分别改为定点整数的差分；
+     * 网格的每个单元改为与上一行同一列单元的差值，连通区域内部大部分变为0。变换后的内容再用Deflate压缩。
+     * 两种变换都是无损的，还原后的快照与原快照逐字节相同，并由快照中的CRC32校验。
+     *
+     * @param snapshot {@link #encode(AcsEFInterface)} 生成的快照。
+     * @return 传输格式：快照长度、变换后长度、变换标志，之后为压缩数据。
+     */
+    static byte[] pack(ByteBuffer snapshot) {
+        int length = snapshot.remaining();
+        int vertexCount = (int) snapshot.getLong(16);
+        int lngsOffset = (int) snapshot.getLong(48), gridStart = lngsOffset + 2 * vertexCount * Double.BYTES;
+        int gridOffset = (int) snapshot.getLong(64);
+        DoubleBuffer vertices = doubles(snapshot, lngsOffset, 2 * vertexCount);
+        boolean fixed = true;
+        for (int i = 0; i < 2 * vertexCount && fixed; i++) fixed = isFixedPoint(vertices.get(i));
+
+        int vertexBytes = 2 * vertexCount * (fixed ? Integer.BYTES : Double.BYTES);
+        ByteBuffer body = allocate(length - (gridStart - lngsOffset) + vertexBytes);
+        body.put(slice(snapshot, 0, lngsOffset));
+        if (fixed) {
+            // 经度数组和纬度数组分别差分，差值按int溢出回绕，还原时同样回绕得到原值
+            for (int i = 0, previous = 0; i < 2 * vertexCount; i++) {
+                if (i == vertexCount) previous = 0;
+                int value = (int) Math.round(vertices.get(i) * FIXED_POINT_SCALE);
+                body.putInt(value - previous);
+                previous = value;
+            }
+        } else {
+            body.put(slice(snapshot, lngsOffset, gridStart - lngsOffset));
+        }
+        if (gridOffset > 0) {
+            int columns = snapshot.getInt(gridOffset + 40), count = columns * snapshot.getInt(gridOffset + 44);
+            body.put(slice(snapshot, gridOffset, GRID_HEADER_BYTES));
+            IntBuffer cells = ints(snapshot, gridOffset + GRID_HEADER_BYTES, count);
+            for (int i = 0; i < count; i++) body.putInt(cells.get(i) - (i >= columns ? cells.get(i - columns) : 0));
+            int rest = gridOffset + GRID_HEADER_BYTES + count * Integer.BYTES;
+            body.put(slice(snapshot, rest, length - rest));
+        }
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body.array(), 0, body.position());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.position() / 4);
+            ByteBuffer header = allocate(PACK_HEADER_BYTES).putInt(length).putInt(body.position()).putInt(fixed ? 1 : 0);
+            out.write(header.array(), 0, PACK_HEADER_BYTES);
+            byte[] chunk = new byte[1 << 16];
+            while (!deflater.finished()) out.write(chunk, 0, deflater.deflate(chunk));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * 将传输格式还原为快照，之后由 {@link #decode(ByteBuffer, String, long)} 校验并读取。
+     *
+     * @param packed {@link #pack(ByteBuffer)} 生成的传输格式。
+     * @return 还原的快照，以数组为底层存储。
+     * @throws RuntimeException 如果压缩数据损坏或长度不一致，将抛出运行时异常。
+     */
+    static ByteBuffer unpack(byte[] packed) {
+        ByteBuffer header = ByteBuffer.wrap(packed).order(ByteOrder.LITTLE_ENDIAN);
+        if (packed.length < PACK_HEADER_BYTES) throw new RuntimeException("Packed polygon snapshot truncated.");
+        int length = header.getInt(0), bodyLength = header.getInt(4);
+        boolean fixed = header.getInt(8) == 1;
+        byte[] bodyBytes = new byte[bodyLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(packed, PACK_HEADER_BYTES, packed.length - PACK_HEADER_BYTES);
+            int size = 0;
+            while (size < bodyLength) {
+                int read = inflater.inflate(bodyBytes, size, bodyLength - size);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) break;
+                size += read;
+            }
+            if (size != bodyLength) throw new RuntimeException("Packed polygon snapshot truncated.");
+        } catch (DataFormatException e) {
+            throw new RuntimeException(e.getLocalizedMessage());
+        } finally {
+            inflater.end();
+        }
+
+        ByteBuffer body = ByteBuffer.wrap(bodyBytes).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer snapshot = allocate(length);
+        int vertexCount = (int) body.getLong(16);
+        int lngsOffset = (int) body.getLong(48), gridStart = lngsOffset + 2 * vertexCount * Double.BYTES;
+        int gridOffset = (int) body.getLong(64);
+        snapshot.put(slice(body, 0, lngsOffset));
+        ((Buffer) body).position(lngsOffset);
+        if (fixed) {
+            for (int i = 0, value = 0; i < 2 * vertexCount; i++) {
+                if (i == vertexCount) value = 0;
+                value += body.getInt();
+                snapshot.putDouble(value / FIXED_POINT_SCALE);
+            }
+        } else {
+            snapshot.put(slice(body, lngsOffset, gridStart - lngsOffset));
+            ((Buffer) body).position(gridStart);
+        }
+        if (gridOffset > 0) {
+            snapshot.put(slice(body, body.position(), GRID_HEADER_BYTES));
+            ((Buffer) body).position(body.position() + GRID_HEADER_BYTES);
+            int columns = snapshot.getInt(gridOffset + 40), count = columns * snapshot.getInt(gridOffset + 44);
+            int cellsOffset = gridOffset + GRID_HEADER_BYTES;
+            for (int i = 0; i < count; i++) {
+                snapshot.putInt(body.getInt() + (i >= columns ? snapshot.getInt(cellsOffset + (i - columns) * Integer.BYTES) : 0));
+            }
+            snapshot.put(slice(body, body.position(), bodyLength - body.position()));
+        }
+        ((Buffer) snapshot).position(0);
+        return snapshot;
+    }
+
+    /**
+     * 判断坐标能否无损地表示为1e-7度的定点整数。
+     */
+    private static boolean isFixedPoint(double value) {
+        if (!(Math.abs(value) * FIXED_POINT_SCALE <= Integer.MAX_VALUE)) return false;
+        double restored = Math.round(value * FIXED_POINT_SCALE) / FIXED_POINT_SCALE;
+        return Double.doubleToRawLongBits(restored) == Double.doubleToRawLongBits(value);
+    }
+
+    /**
+     * 以内存映射方式打开快照文件，构建区域节点层级，顶点数据保留在映射区域中。
+     *
+     * @param path 快照文件路径。
+     * @return 快照中的区域节点映射与网格索引。
+     * @throws RuntimeException 如果文件格式不正确或发生IO异常，将抛出运行时异常。
+     */
+    static Contents map(String path) {
+        long start = System.nanoTime();
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new RuntimeException("Polygon snapshot too large: " + path);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e.getLocalizedMessage());
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        checkHeader(buffer, path);
+        Contents contents = read(buffer, false);
+        contents.nanos = System.nanoTime() - start;
+        return contents;
+    }
+
+    /**
+     * 快照文件中读取出的区域数据。
+     */
+    static final class Contents {
+        /**
+         * 按区域代码索引的节点映射。
+         */
+        final Map<String, PolygonNode> polygonLists = new ConcurrentHashMap<>();
+        /**
+         * 顶层节点映射。
+         */
+        final Map<String, PolygonNode> polygonNodes = new ConcurrentHashMap<>();
+        /**
+         * 网格索引，快照中未保存时为null。
+         */
+        GridIndex grid;
+        /**
+         * 读取文件并构建区域节点层级的耗时（纳秒）。
+         */
+        long nanos;
+    }
+
+    /**
+     * 计算快照的CRC32校验值，覆盖文件头和全部内容，不含校验值字段本身。
+     *
+     * @param array 快照内容。
+     * @param length 快照长度。
+     * @return 校验值。
+     */
+    private static long checksum(byte[] array, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(array, 0, CHECKSUM_OFFSET);
+        crc.update(array, CHECKSUM_OFFSET + Long.BYTES, length - CHECKSUM_OFFSET - Long.BYTES);
+        return crc.getValue();
+    }
+
+    /**
+     * 检查文件头：标识、版本、文件长度，以及各区的位置和大小与文件长度一致，
+     * 之后读取各区时不会越界。映射方式不校验CRC32，文件头损坏时同样在这里拒绝。
+     */
+    private static void checkHeader(ByteBuffer buffer, String path) {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new RuntimeException("Not a polygon snapshot: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new RuntimeException("Unsupported polygon snapshot version " + buffer.getInt(4) + ", please rebuild: " + path);
+        }
+        if (buffer.getLong(72) != buffer.limit()) throw new RuntimeException("Polygon snapshot truncated: " + path);
+        long nodeCount = buffer.getInt(8), ringCount = buffer.getInt(12), vertexCount = buffer.getLong(16);
+        long nodesOffset = buffer.getLong(32), ringsOffset = buffer.getLong(40);
+        long lngsOffset = buffer.getLong(48), latsOffset = buffer.getLong(56), gridOffset = buffer.getLong(64);
+        boolean valid = nodeCount >= 0 && ringCount >= 0 && vertexCount >= 0 && vertexCount <= Integer.MAX_VALUE
+                && buffer.getLong(24) == HEADER_BYTES
+                && nodesOffset >= HEADER_BYTES && nodesOffset <= buffer.limit()
+                && ringsOffset == nodesOffset + nodeCount * NODE_BYTES
+                && lngsOffset == ringsOffset + ringCount * RING_BYTES
+                && latsOffset == lngsOffset + vertexCount * Double.BYTES
+                && latsOffset + vertexCount * Double.BYTES <= buffer.limit()
+                && (gridOffset == 0 ? latsOffset + vertexCount * Double.BYTES == buffer.limit()
+                                    : gridOffset == latsOffset + vertexCount * Double.BYTES && gridOffset + GRID_HEADER_BYTES <= buffer.limit());
+        if (!valid) throw new RuntimeException("Polygon snapshot header corrupted: " + path);
+    }
+
+    /**
+     * 解析快照内容。
+     *
+     * @param buffer 快照文件内容。
+     * @param heap 为true时复制顶点到堆内存，否则顶点直接引用缓冲区。
+     */
+    private static Contents read(ByteBuffer buffer, boolean heap) {
+        int nodeCount = buffer.getInt(8);
+        int vertexCount = (int) buffer.getLong(16);
+        long stringsOffset = buffer.getLong(24);
+        long nodesOffset = buffer.getLong(32);
+        long ringsOffset = buffer.getLong(40);
+        long gridOffset = buffer.getLong(64);
+        DoubleBuffer lngs = doubles(buffer, buffer.getLong(48), vertexCount);
+        DoubleBuffer lats = doubles(buffer, buffer.getLong(56), vertexCount);
+        double[] lngArray = null, latArray = null;
+        if (heap) {
+            lngArray = new double[vertexCount];
+            latArray = new double[vertexCount];
+            lngs.get(lngArray);
+            lats.get(latArray);
+        }
+
+        ByteBuffer strings = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        ((Buffer) strings).position((int) stringsOffset);
+        PolygonNode[] nodes = new PolygonNode[nodeCount];
+        Contents contents = new Contents();
+        for (int i = 0; i < nodeCount; i++) {
+            int base = (int) nodesOffset + i * NODE_BYTES;
+            int parent = buffer.getInt(base);
+            int level = buffer.getInt(base + 4);
+            int firstRing = buffer.getInt(base + 8);
+            int ringCount = buffer.getInt(base + 12);
+            List<Ring> rings = new ArrayList<>(ringCount);
+            for (int r = firstRing; r < firstRing + ringCount; r++) {
+                int ringBase = (int) ringsOffset + r * RING_BYTES;
+                int offset = buffer.getInt(ringBase), count = buffer.getInt(ringBase + 4);
+                rings.add(heap
+                        ? Ring.of(Arrays.copyOfRange(lngArray, offset, offset + count),
+                                  Arrays.copyOfRange(latArray, offset, offset + count))
+                        : new MappedRing(lngs, lats, offset, count, getBounds(buffer, ringBase + 8)));
+            }
+            PolygonNode node = new PolygonNode()
+                    .setCode(readString(strings))
+                    .setP_code(readString(strings))
+                    .setC_code(readString(strings))
+                    .setA_code(readString(strings))
+                    .setLevel(level == Integer.MIN_VALUE ? null : level)
+                    .setRings(rings)
+                    .setBounds(getBounds(buffer, base + 16));
+            nodes[i] = node;
+            contents.polygonLists.putIfAbsent(node.getCode(), node);
+            if (parent == ROOT) {
+                contents.polygonNodes.put(node.getCode(), node);
+            } else if (parent != DETACHED) {
+                PolygonNode parentNode = nodes[parent];
+                if (parentNode.getChildren() == null) parentNode.setChildren(new ConcurrentHashMap<>());
+                parentNode.getChildren().put(node.getCode(), node);
+            }
+        }
+        if (gridOffset > 0) contents.grid = readGrid(buffer, (int) gridOffset, nodes);
+        return contents;
+    }
+
+    /**
+     * 网格区的字节数。
+     */
+    private static long gridBytes(GridIndex grid) {
+        long codeCount = 0;
+        for (String[] componentCodes : grid.getCodes()) codeCount += componentCodes.length;
+        return GRID_HEADER_BYTES + (long) Integer.BYTES
+                * (grid.getCells().length + grid.getHits().length * 2L + 1 + codeCount);
+    }
+
+    private static void writeGrid(ByteBuffer table, GridIndex grid, List<PolygonNode> nodes, Map<String, Integer> codeIndex) {
+        Map<PolygonNode, Integer> nodeIndex = new IdentityHashMap<>();
+        for (int i = 0; i < nodes.size(); i++) nodeIndex.put(nodes.get(i), i);
+        PolygonNode[] hits = grid.getHits();
+        String[][] codes = grid.getCodes();
+        int codeCount = 0;
+        for (String[] componentCodes : codes) codeCount += componentCodes.length;
+
+        putBounds(table, grid.getExtent());
+        table.putDouble(grid.getCellSize()).putInt(grid.getColumns()).putInt(grid.getRows())
+                .putInt(hits.length).putInt(codeCount);
+        table.asIntBuffer().put(grid.getCells());
+        ((Buffer) table).position(table.position() + grid.getCells().length * Integer.BYTES);
+        for (PolygonNode hit : hits) table.putInt(hit == null ? -1 : nodeIndex.get(hit));
+        int start = 0;
+        for (String[] componentCodes : codes) {
+            table.putInt(start);
+            start += componentCodes.length;
+        }
+        table.putInt(start);
+        for (String[] componentCodes : codes) {
+            for (String code : componentCodes) table.putInt(codeIndex.get(code));
+        }
+    }
+
+    private static GridIndex readGrid(ByteBuffer buffer, int offset, PolygonNode[] nodes) {
+        BoundingBox extent = getBounds(buffer, offset);
+        double cellSize = buffer.getDouble(offset + 32);
+        int columns = buffer.getInt(offset + 40);
+        int rows = buffer.getInt(offset + 44);
+        int componentCount = buffer.getInt(offset + 48);
+        int codeCount = buffer.getInt(offset + 52);
+        IntBuffer ints = ints(buffer, offset + GRID_HEADER_BYTES,
+                columns * rows + componentCount + componentCount + 1 + codeCount);
+        int[] cells = new int[columns * rows];
+        ints.get(cells);
+        PolygonNode[] hits = new PolygonNode[componentCount];
+        for (int i = 0; i < componentCount; i++) {
+            int hit = ints.get();
+            hits[i] = hit < 0 ? null : nodes[hit];
+        }
+        int[] starts = new int[componentCount + 1];
+        ints.get(starts);
+        String[][] codes = new String[componentCount][];
+        for (int i = 0; i < componentCount; i++) {
+            codes[i] = new String[starts[i + 1] - starts[i]];
+            for (int j = 0; j < codes[i].length; j++) codes[i][j] = nodes[ints.get()].getCode();
+        }
+        return new GridIndex(extent, cellSize, columns, rows, cells, hits, codes);
+    }
+
+    private static void collect(Map<String, PolygonNode> level, int parent, List<PolygonNode> nodes, List<Integer> parents) {
+        if (level == null) return;
+        for (PolygonNode node : level.values()) {
+            int index = nodes.size();
+            nodes.add(node);
+            parents.add(parent);
+            collect(node.getChildren(), index, nodes, parents);
+        }
+    }
+
+    private static ByteBuffer allocate(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putBounds(ByteBuffer buffer, BoundingBox bounds) {
+        buffer.putDouble(bounds.getMinLng()).putDouble(bounds.getMinLat())
+                .putDouble(bounds.getMaxLng()).putDouble(bounds.getMaxLat());
+    }
+
+    private static BoundingBox getBounds(ByteBuffer buffer, int offset) {
+        return new BoundingBox()
+                .setMinLng(buffer.getDouble(offset))
+                .setMinLat(buffer.getDouble(offset + 8))
+                .setMaxLng(buffer.getDouble(offset + 16))
+                .setMaxLat(buffer.getDouble(offset + 24));
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, long offset, int bytes) {
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position((int) offset);
+        ((Buffer) view).limit((int) offset + bytes);
+        return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static DoubleBuffer doubles(ByteBuffer buffer, long offset, int count) {
+        return slice(buffer, offset, count * Double.BYTES).asDoubleBuffer();
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, long offset, int count) {
+        return slice(buffer, offset, count * Integer.BYTES).asIntBuffer();
+    }
+}
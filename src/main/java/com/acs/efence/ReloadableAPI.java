@@ -0,0 +1,405 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.index.CellCache;
+import com.acs.efence.index.RegionTable;
+import com.acs.efence.metrics.MetricsListener;
+import com.acs.efence.model.CompareMode;
+import com.acs.efence.model.CompareResult;
+import com.acs.efence.model.MatchResult;
+import com.acs.efence.model.Point;
+import com.acs.efence.model.RegionDelta;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 可重新加载数据的电子围栏API。
+ * <p>
+ * 每次加载都由加载函数创建一个完整的电子围栏API（数据、子节点索引、网格索引和小网格缓存），
+ * 构建完成后通过一次原子引用替换发布，查询路径上没有锁。
+ * 每次查询开始时读取一次当前发布的数据集，并在该数据集上完成整个查询，替换时正在执行的查询继续使用旧数据集，
+ * 旧数据集在不再被引用后由垃圾回收器回收。构建期间新旧两份数据同时存在，使用内存映射快照加载时顶点数据不占用堆内存。
+ * <p>
+ * 重新加载可以手动触发，也可以监视数据文件，文件变化后在后台线程中重新加载；加载失败时继续使用旧数据集。
+ */
+public class ReloadableAPI extends AcsEFInterface implements Closeable, Serializable {
+
+    /**
+     * 监视到文件变化后等待文件写入完成的时间（毫秒），期间的多次变化只触发一次重新加载。
+     */
+    private static final long WATCH_QUIET_MILLIS = 500;
+
+    /**
+     * 创建电子围栏API的加载函数。
+     */
+    private final transient Supplier<? extends AcsEFInterface> loader;
+
+    /**
+     * 当前发布的数据集。
+     */
+    private final AtomicReference<AcsEFInterface> published = new AtomicReference<>();
+
+    /**
+     * 串行执行重新加载的锁，只在加载线程之间使用。
+     */
+    private final Object reloadLock = new Object();
+
+    /**
+     * 执行后台重新加载的单线程线程池。
+     */
+    private final transient ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "acs-efence-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 是否已有等待执行的文件变化触发的重新加载。
+     */
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+
+    /**
+     * 小网格缓存的配置，重新加载后对新数据集启用相同的缓存；未启用时容量为0。
+     */
+    private volatile int cacheCapacity;
+    private volatile double cacheCellSize;
+
+    /**
+     * 指标监听器，重新加载后对新数据集设置相同的监听器；未设置时为null。
+     */
+    private transient volatile MetricsListener metrics;
+
+    /**
+     * 最近一次加载或应用区域变化失败的原因，成功后清除。
+     */
+    private volatile Throwable lastFailure;
+
+    /**
+     * 文件监视服务，未监视文件时为null。
+     */
+    private transient WatchService watchService;
+
+    /**
+     * 使用指定的加载函数创建电子围栏API，并立即加载第一个数据集。
+     *
+     * @param loader 加载函数，每次调用返回一个新的、已完成初始化的电子围栏API，例如 {@code () -> new ElectronicSnapshotAPI(path)}。
+     * @throws RuntimeException 如果加载函数为null或第一次加载失败，将抛出运行时异常。
+     */
+    public ReloadableAPI(Supplier<? extends AcsEFInterface> loader) {
+        if (loader == null) throw new RuntimeException("访问参数丢失");
+        this.loader = loader;
+        reload();
+    }
+
+    /**
+     * 在当前线程中重新加载数据，构建完成后替换当前数据集。多个线程同时调用时依次执行。
+     *
+     * @return 新发布的数据集。
+     * @throws RuntimeException 如果加载失败，将抛出运行时异常，当前数据集保持不变。
+     */
+    public AcsEFInterface reload() {
+        synchronized (reloadLock) {
+            try {
+                AcsEFInterface next = loader.get();
+                if (next == null) throw new RuntimeException("Reload returned no data.");
+                next.getRegionTable();
+                if (cacheCapacity > 0) next.enableCellCache(cacheCapacity, cacheCellSize);
+                if (metrics != null) next.setMetricsListener(metrics);
+                published.set(next);
+                lastFailure = null;
+                return next;
+            } catch (RuntimeException | Error e) {
+                lastFailure = e;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 在当前数据集上应用一组区域变化，并原子替换当前数据集，见 {@link ElectronicJsonAPI#patch(RegionDelta)}。
+     * 与重新加载依次执行；之后的完整重新加载会以数据文件为准，覆盖此前应用的变化。
+     *
+     * @param delta 区域变化。
+     * @return 新发布的数据集。
+     * @throws RuntimeException 如果变化无法应用，将抛出运行时异常并记录为 {@link #getLastFailure()}，当前数据集保持不变。
+     */
+    public AcsEFInterface apply(RegionDelta delta) {
+        synchronized (reloadLock) {
+            try {
+                AcsEFInterface base = published.get();
+                if (!(base instanceof ElectronicJsonAPI)) throw new RuntimeException("Incremental updates are not supported by " + base.getClass().getSimpleName());
+                AcsEFInterface next = ((ElectronicJsonAPI) base).patch(delta);
+                published.set(next);
+                lastFailure = null;
+                return next;
+            } catch (RuntimeException | Error e) {
+                lastFailure = e;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 在后台线程中重新加载数据，构建完成后替换当前数据集，构建期间查询继续使用当前数据集。
+     *
+     * @return 完成时返回新发布的数据集的Future；加载失败时异常完成，当前数据集保持不变。
+     */
+    public CompletableFuture<AcsEFInterface> reloadAsync() {
+        return CompletableFuture.supplyAsync(this::reload, executor);
+    }
+
+    /**
+     * 监视数据文件，文件被修改或替换后在后台线程中重新加载。
+     * 监视的是文件所在的目录，通过重命名替换文件也能触发重新加载；同一时间只能监视一个文件。
+     *
+     * @param file 数据文件路径。
+     * @return 当前对象。
+     * @throws RuntimeException 如果已在监视文件或无法注册监视服务，将抛出运行时异常。
+     */
+    public synchronized ReloadableAPI watch(Path file) {
+        if (file == null) throw new RuntimeException("访问参数丢失");
+        if (watchService != null) throw new RuntimeException("Already watching a data file.");
+        Path absolute = file.toAbsolutePath();
+        Path directory = absolute.getParent();
+        Path name = absolute.getFileName();
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = service;
+            Thread thread = new Thread(() -> watchLoop(service, name), "acs-efence-watch");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            throw new RuntimeException(e.getLocalizedMessage());
+        }
+        return this;
+    }
+
+    /**
+     * 等待目录变化事件，数据文件发生变化时安排一次重新加载，直到监视服务被关闭。
+     */
+    private void watchLoop(WatchService service, Path name) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (name.equals(event.context())) changed = true;
+                }
+                if (changed && reloadPending.compareAndSet(false, true)) {
+                    executor.execute(this::reloadAfterQuietPeriod);
+                }
+                if (!key.reset()) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // 监视服务已关闭
+        }
+    }
+
+    /**
+     * 等待文件写入完成后重新加载，失败原因记录在 {@link #getLastFailure()} 中。
+     */
+    private void reloadAfterQuietPeriod() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(WATCH_QUIET_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        reloadPending.set(false);
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // 继续使用旧数据集，等待下一次文件变化
+        }
+    }
+
+    /**
+     * 获取最近一次加载或应用区域变化失败的原因。
+     *
+     * @return 失败的异常；最近一次加载或应用区域变化成功时返回null。
+     */
+    public Throwable getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * 获取当前发布的数据集。之后的重新加载不会改变返回的数据集，在其上执行的多次查询使用同一份数据。
+     *
+     * @return 当前发布的数据集。
+     */
+    public AcsEFInterface getSnapshot() {
+        return published.get();
+    }
+
+    @Override
+    public AcsEFInterface current() {
+        return published.get();
+    }
+
+    /**
+     * 停止监视数据文件、后台重新加载线程和通过 {@link #setDispatcher(BatchDispatcher)} 指定的合并执行器，已发布的数据集仍可继续同步查询；
+     * 默认共享的合并执行器不随之关闭。
+     */
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e.getLocalizedMessage());
+            } finally {
+                watchService = null;
+            }
+        }
+        executor.shutdownNow();
+        BatchDispatcher dispatcher = DISPATCHER;
+        if (dispatcher != null) dispatcher.close();
+    }
+
+    @Override
+    public CompareResult toCompare(String code, Point point) {
+        return current().toCompare(code, point);
+    }
+
+    @Override
+    public <B> B toCompare(String code, Point point, Function<? super CompareResult, ? extends B> mapper) {
+        return current().toCompare(code, point, mapper);
+    }
+
+    @Override
+    public MatchResult toMatch(Point point) {
+        return current().toMatch(point);
+    }
+
+    @Override
+    public <B> B toMatch(Point point, Function<? super MatchResult, ? extends B> mapper) {
+        return current().toMatch(point, mapper);
+    }
+
+    @Override
+    public MatchResult toMatch(Point point, CompareMode mode) {
+        return current().toMatch(point, mode);
+    }
+
+    @Override
+    public CompareResult toCompare(String code, Point point, CompareMode mode) {
+        return current().toCompare(code, point, mode);
+    }
+
+    @Override
+    public MatchResult nearestMatch(Point point, double maxDistance) {
+        return current().nearestMatch(point, maxDistance);
+    }
+
+    @Override
+    public Double distanceToBoundary(String code, Point point) {
+        return current().distanceToBoundary(code, point);
+    }
+
+    /**
+     * 对当前数据集启用小网格结果缓存，之后重新加载的数据集也使用相同的配置。
+     *
+     * @param capacity 最大缓存的小网格数量。
+     * @param cellSize 小网格的边长（度）。
+     * @return 当前对象。
+     */
+    @Override
+    public AcsEFInterface enableCellCache(int capacity, double cellSize) {
+        synchronized (reloadLock) {
+            current().enableCellCache(capacity, cellSize);
+            cacheCellSize = cellSize;
+            cacheCapacity = capacity;
+        }
+        return this;
+    }
+
+    @Override
+    public CellCache getCellCache() {
+        return current().getCellCache();
+    }
+
+    /**
+     * 对当前数据集设置指标监听器，之后重新加载或增量更新的数据集也使用该监听器，并补报其加载阶段的耗时。
+     *
+     * @param listener 指标监听器，为null或 {@link MetricsListener#NOOP} 时关闭指标收集。
+     * @return 当前对象。
+     */
+    @Override
+    public AcsEFInterface setMetricsListener(MetricsListener listener) {
+        synchronized (reloadLock) {
+            metrics = listener == MetricsListener.NOOP ? null : listener;
+            current().setMetricsListener(metrics);
+        }
+        return this;
+    }
+
+    @Override
+    public MetricsListener getMetricsListener() {
+        return current().getMetricsListener();
+    }
+
+    /**
+     * 获取当前数据集各加载阶段的耗时。
+     *
+     * @return 阶段名称与耗时（纳秒）的只读映射。
+     */
+    @Override
+    public Map<String, Long> getLoadTimings() {
+        return current().getLoadTimings();
+    }
+
+    /**
+     * 获取当前数据集的区域代码表。重新加载的数据中区域代码发生增减时编号会变化，
+     * 需要用代码表解释批量匹配的结果时，应在 {@link #getSnapshot()} 返回的同一数据集上执行批量匹配并获取代码表。
+     *
+     * @return 当前数据集的区域代码表。
+     */
+    @Override
+    public RegionTable getRegionTable() {
+        return current().getRegionTable();
+    }
+
+    @Override
+    public void toMatchBatch(double[] lngs, double[] lats, int[] out) {
+        current().toMatchBatch(lngs, lats, out);
+    }
+
+    @Override
+    public void toCompareBatch(double[] lngs, double[] lats, String[] codes, boolean[] out) {
+        current().toCompareBatch(lngs, lats, codes, out);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * 电子围栏API的紧凑序列化形式，由 {@link AcsEFInterface} 的writeReplace生成，反序列化时还原为 {@link ElectronicSnapshotAPI}。
+ * <p>
+ * 默认的Java序列化会逐个写出嵌套的映射、节点、多边形环、R树和网格索引对象，体积大，反序列化时需要逐个创建对象。
+ * 这里改为只写出一个字节数组：与 {@link PolygonStore} 快照文件相同的内容，经 {@link PolygonStore#pack(java.nio.ByteBuffer)}
+ * 变换和压缩，适合作为Spark、Flink的广播变量。接收方还原快照并校验CRC32后按快照方式构建数据，R树等索引在本地重建。
+ */
+final class SerializedSnapshot implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 传输格式的快照。
+     */
+    private final byte[] packed;
+
+    /**
+     * 发送方小网格缓存的容量和网格边长，未启用时容量为0。
+     */
+    private final int cacheCapacity;
+    private final double cacheCellSize;
+
+    /**
+     * 将电子围栏API编码为传输格式的快照。
+     *
+     * @param api 已加载数据的电子围栏API。
+     */
+    SerializedSnapshot(AcsEFInterface api) {
+        this.packed = PolygonStore.pack(PolygonStore.encode(api));
+        this.cacheCapacity = api.CELL_CACHE != null ? api.CELL_CACHE.getCapacity() : 0;
+        this.cacheCellSize = api.CELL_CACHE != null ? api.CELL_CACHE.getCellSize() : 0;
+    }
+
+    /**
+     * 还原快照并构建电子围栏API，发送方启用了小网格缓存时使用相同的配置启用。
+     *
+     * @return 基于快照的电子围栏API。
+     * @throws InvalidObjectException 如果数据损坏或快照校验失败。
+     */
+    private Object readResolve() throws ObjectStreamException {
+        long start = System.nanoTime();
+        ElectronicSnapshotAPI api;
+        try {
+            api = new ElectronicSnapshotAPI(PolygonStore.decode(PolygonStore.unpack(packed), "serialized form", start));
+        } catch (RuntimeException e) {
+            throw new InvalidObjectException(e.getLocalizedMessage());
+        }
+        if (cacheCapacity > 0) api.enableCellCache(cacheCapacity, cacheCellSize);
+        return api;
+    }
+}
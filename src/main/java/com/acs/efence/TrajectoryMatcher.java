@@ -0,0 +1,208 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.index.GridIndex;
+import com.acs.efence.index.RegionLocator;
+import com.acs.efence.model.MatchResult;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+import com.acs.efence.model.TransitionEvent;
+import com.acs.efence.model.TransitionType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * 单个设备的轨迹匹配器，利用连续轨迹点之间的空间相关性减少查找次数。
+ * <p>
+ * 每个轨迹点依次按以下顺序查找所在区域，任一步得到结果即结束：
+ * <ol>
+ *     <li>网格索引：点位于内部网格时直接得到结果；</li>
+ *     <li>上一个点所在的区域：仍在该区域内时，再在它的子区域中查找；</li>
+ *     <li>上一个区域的兄弟区域：在父节点的子节点索引中查找，未命中时确认是否仍在父区域内（位于子区域之间的空隙），
+ *     不在父区域内时再逐级向上在祖先节点的子节点中查找；</li>
+ *     <li>从顶层开始完整查找，与 {@link AcsEFInterface#toMatch(com.acs.efence.model.Point)} 相同。</li>
+ * </ol>
+ * 第2、3步假设同一层级的区域互不重叠且子区域位于父区域之内，这对行政区划数据成立；
+ * 相邻区域共享的边界在射线法精度范围内同时属于两侧，此时可能返回上一个点所在的一侧，而完整查找按索引顺序返回其中之一。
+ * <p>
+ * 所在区域发生变化时，按从最细层级到共同上级的顺序产生离开事件，再按从共同上级到最细层级的顺序产生进入事件。
+ * 匹配器保存了上一个点的状态，不是线程安全的，每个设备使用各自的实例。
+ */
+public class TrajectoryMatcher {
+
+    /**
+     * 创建时传入的电子围栏API。
+     */
+    private final AcsEFInterface source;
+
+    /**
+     * 当前使用的数据集，数据重新加载后在下一个轨迹点切换。
+     */
+    private AcsEFInterface api;
+
+    /**
+     * 区域变化事件的接收者，可以为null。
+     */
+    private final Consumer<? super TransitionEvent> listener;
+
+    /**
+     * 区域查找器。
+     */
+    private RegionLocator locator;
+
+    /**
+     * 上一个轨迹点所在的最细层级节点。
+     */
+    private PolygonNode current;
+
+    /**
+     * 创建轨迹匹配器。
+     *
+     * @param api 电子围栏API。
+     * @param listener 区域变化事件的接收者，可以为null。
+     * @throws RuntimeException 如果电子围栏API为null，将抛出运行时异常。
+     */
+    public TrajectoryMatcher(AcsEFInterface api, Consumer<? super TransitionEvent> listener) {
+        if (api == null) throw new RuntimeException("访问参数丢失");
+        this.source = api;
+        this.api = api.current();
+        this.listener = listener;
+        this.locator = new RegionLocator(this.api.POLYGON_INDEX);
+    }
+
+    /**
+     * 处理一个新的轨迹点，区域发生变化时通知事件接收者。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param timestamp 轨迹点时间戳，原样写入区域变化事件。
+     * @return 轨迹点所在最细层级区域的匹配结果，与 {@link AcsEFInterface#toMatch(com.acs.efence.model.Point)} 相同；不在任何区域内时返回null。
+     */
+    public MatchResult update(double lng, double lat, long timestamp) {
+        AcsEFInterface snapshot = source.current();
+        if (snapshot != api) switchTo(snapshot);
+        PolygonNode next = locate(lng, lat);
+        if (next != current) {
+            if (listener != null) notify(current, next, lng, lat, timestamp);
+            current = next;
+        }
+        return ElectronicJsonAPI.toMatchResult(next);
+    }
+
+    /**
+     * 获取上一个轨迹点所在最细层级区域的匹配结果。
+     *
+     * @return 上一个轨迹点的匹配结果；尚未处理轨迹点或不在任何区域内时返回null。
+     */
+    public MatchResult getCurrent() {
+        return ElectronicJsonAPI.toMatchResult(current);
+    }
+
+    /**
+     * 获取上一个轨迹点所在最细层级区域的代码。
+     *
+     * @return 区域代码；尚未处理轨迹点或不在任何区域内时返回null。
+     */
+    public String getCurrentCode() {
+        return current == null ? null : current.getCode();
+    }
+
+    /**
+     * 清除上一个轨迹点的状态，下一个点将从顶层开始查找，且不会产生离开事件。
+     */
+    public void reset() {
+        current = null;
+    }
+
+    /**
+     * 切换到重新加载后的数据集，上一个轨迹点的区域按区域代码对应到新数据集中的节点，
+     * 区域未发生变化的轨迹点不会因为数据重新加载而产生事件。
+     */
+    private void switchTo(AcsEFInterface snapshot) {
+        api = snapshot;
+        locator = new RegionLocator(snapshot.POLYGON_INDEX);
+        if (current != null) current = snapshot.POLYGON_LISTS.get(current.getCode());
+    }
+
+    private PolygonNode locate(double lng, double lat) {
+        GridIndex grid = api.POLYGON_GRID;
+        if (grid != null) {
+            int component = grid.lookup(lng, lat);
+            if (component == GridIndex.OUTSIDE) return null;
+            if (component != GridIndex.BOUNDARY) return grid.hit(component);
+        }
+        PolygonNode last = current;
+        if (last != null) {
+            // 仍在上一个区域内，只需确认是否进入了它的子区域
+            if (contains(last, lng, lat)) {
+                PolygonNode child = last.hasChildren() ? locator.locate(last.getChildIndex(), lng, lat) : null;
+                return child != null ? child : last;
+            }
+            // 移动到了相邻的兄弟区域；兄弟区域都未命中时仍可能在父区域内，不在父区域内再向上一级查找
+            for (PolygonNode parent = last.getParent(); parent != null; parent = parent.getParent()) {
+                PolygonNode sibling = locator.locate(parent.getChildIndex(), lng, lat);
+                if (sibling != null) return sibling;
+                if (contains(parent, lng, lat)) return parent;
+            }
+        }
+        return api.fenceHit(locator, lng, lat);
+    }
+
+    private static boolean contains(PolygonNode node, double lng, double lat) {
+        if (node.getBounds() != null && !node.getBounds().contains(lng, lat)) return false;
+        for (Ring ring : node.getRings()) {
+            if (ring.getBounds().contains(lng, lat) && ring.contains(lng, lat)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 产生从区域from移动到区域to的离开和进入事件。
+     */
+    private void notify(PolygonNode from, PolygonNode to, double lng, double lat, long timestamp) {
+        PolygonNode common = commonAncestor(from, to);
+        for (PolygonNode node = from; node != common; node = node.getParent()) {
+            listener.accept(event(TransitionType.EXIT, node, lng, lat, timestamp));
+        }
+        Deque<PolygonNode> entered = new ArrayDeque<>();
+        for (PolygonNode node = to; node != common; node = node.getParent()) entered.push(node);
+        for (PolygonNode node : entered) {
+            listener.accept(event(TransitionType.ENTER, node, lng, lat, timestamp));
+        }
+    }
+
+    private static PolygonNode commonAncestor(PolygonNode a, PolygonNode b) {
+        for (PolygonNode x = a; x != null; x = x.getParent()) {
+            for (PolygonNode y = b; y != null; y = y.getParent()) {
+                if (x == y) return x;
+            }
+        }
+        return null;
+    }
+
+    private static TransitionEvent event(TransitionType type, PolygonNode node, double lng, double lat, long timestamp) {
+        return new TransitionEvent()
+                .setType(type)
+                .setCode(node.getCode())
+                .setLevel(node.getLevel())
+                .setLng(lng)
+                .setLat(lat)
+                .setTimestamp(timestamp);
+    }
+}
@@ -0,0 +1,316 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.PolygonNode;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 可动态增删的经纬度分桶网格索引。
+ * <p>
+ * 整个经纬度平面按固定边长划分为小网格，只为有节点经过的网格创建桶，每个节点放入其外包矩形覆盖的全部桶中。
+ * 查询时只需访问坐标所在的一个桶，耗时取决于该位置附近的节点数量，与节点总数无关。
+ * 覆盖的桶数超过上限的大范围节点放入边长逐级放大 {@link #LEVEL_FACTOR} 倍的上层网格，
+ * 直到覆盖的桶数不超过上限，查询时每一层同样只访问坐标所在的一个桶。上层网格在第一次需要时创建。
+ * <p>
+ * 每层的桶以网格编号为键存放在开放寻址的散列表中，查询不分配对象。每个桶是一个只读数组，增删节点时复制后整体替换，
+ * 查询不加锁，可与增删并发执行；增删操作之间互斥。
+ */
+public final class BucketGrid {
+
+    /**
+     * 默认的网格边长（度），约1公里，适合门店、停车场等小范围围栏。
+     */
+    public static final double DEFAULT_CELL_SIZE = 0.01;
+
+    /**
+     * 单个节点在一层网格中最多放入的桶数，超过时放入上一层网格。
+     */
+    public static final int MAX_BUCKETS_PER_NODE = 4096;
+
+    /**
+     * 相邻两层网格的边长之比。
+     */
+    public static final int LEVEL_FACTOR = 16;
+
+    /**
+     * 网格边长达到该值（度）时一个桶即可覆盖全部经度，作为最上层，任何节点都放入该层。
+     */
+    private static final double TOP_CELL_SIZE = 360;
+
+    private static final PolygonNode[] EMPTY = new PolygonNode[0];
+
+    /**
+     * 由细到粗的各层网格，第0层的边长即为创建时指定的边长，上层只在有节点需要时创建。
+     */
+    private volatile Level[] levels;
+
+    /**
+     * 一层网格。
+     */
+    private static final class Level {
+
+        /**
+         * 网格的边长（度）。
+         */
+        final double cellSize;
+
+        /**
+         * 按网格编号存放桶的开放寻址散列表，长度为2的幂。增删时原地修改，每次修改后重新写入该字段，
+         * 查询线程读取该字段后即可看到此前的全部修改；扩容时替换为新的数组。
+         */
+        volatile Bucket[] table = new Bucket[16];
+
+        /**
+         * 非空桶的数量。
+         */
+        volatile int size;
+
+        /**
+         * 已占用的槽位数量，包括节点已全部移除的空桶，空桶在扩容时丢弃。
+         */
+        int used;
+
+        Level(double cellSize) {
+            this.cellSize = cellSize;
+        }
+
+        /**
+         * 查找桶。
+         *
+         * @return 桶中的节点；桶不存在时返回null。
+         */
+        PolygonNode[] get(long key) {
+            Bucket[] t = table;
+            int mask = t.length - 1;
+            for (int i = index(key, mask); ; i = (i + 1) & mask) {
+                Bucket bucket = t[i];
+                if (bucket == null) return null;
+                if (bucket.key == key) return bucket.nodes;
+            }
+        }
+
+        /**
+         * 替换桶中的节点，只在增删操作中调用。
+         *
+         * @param nodes 新的节点数组，为空数组时清空该桶。
+         */
+        void put(long key, PolygonNode[] nodes) {
+            Bucket[] t = table;
+            int mask = t.length - 1;
+            int i = index(key, mask);
+            for (Bucket bucket; (bucket = t[i]) != null; i = (i + 1) & mask) {
+                if (bucket.key != key) continue;
+                size += (nodes.length > 0 ? 1 : 0) - (bucket.nodes.length > 0 ? 1 : 0);
+                t[i] = new Bucket(key, nodes);
+                table = t;
+                return;
+            }
+            if (nodes.length == 0) return;
+            if ((used + 1) * 2 > t.length) {
+                rehash();
+                put(key, nodes);
+                return;
+            }
+            t[i] = new Bucket(key, nodes);
+            used++;
+            size++;
+            table = t;
+        }
+
+        /**
+         * 丢弃空桶并按非空桶数量重建散列表。
+         */
+        private void rehash() {
+            int capacity = 16;
+            while (capacity < (size + 1) * 4) capacity <<= 1;
+            Bucket[] grown = new Bucket[capacity];
+            int mask = capacity - 1;
+            for (Bucket bucket : table) {
+                if (bucket == null || bucket.nodes.length == 0) continue;
+                int i = index(bucket.key, mask);
+                while (grown[i] != null) i = (i + 1) & mask;
+                grown[i] = bucket;
+            }
+            used = size;
+            table = grown;
+        }
+
+        long cell(double degrees) {
+            return (long) Math.floor(degrees / cellSize);
+        }
+
+        /**
+         * 外包矩形在本层覆盖的桶数是否超过上限，最上层不设上限。
+         */
+        boolean overflows(long c0, long c1, long r0, long r1) {
+            return cellSize < TOP_CELL_SIZE && (c1 - c0 + 1) * (r1 - r0 + 1) > MAX_BUCKETS_PER_NODE;
+        }
+    }
+
+    /**
+     * 散列表中的一个桶，创建后不再修改。
+     */
+    private static final class Bucket {
+
+        /**
+         * 网格编号。
+         */
+        final long key;
+
+        /**
+         * 外包矩形覆盖该网格的节点。
+         */
+        final PolygonNode[] nodes;
+
+        Bucket(long key, PolygonNode[] nodes) {
+            this.key = key;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * 创建分桶网格索引。
+     *
+     * @param cellSize 网格的边长（度），接近单个节点的大小时查询最快。
+     * @throws RuntimeException 如果网格边长不是正数，将抛出运行时异常。
+     */
+    public BucketGrid(double cellSize) {
+        if (!(cellSize > 0)) throw new RuntimeException("Cell size must be positive.");
+        this.levels = new Level[]{new Level(cellSize)};
+    }
+
+    /**
+     * 加入节点，节点需已计算外包矩形。
+     *
+     * @param node 节点。
+     */
+    public synchronized void add(PolygonNode node) {
+        BoundingBox bounds = node.getBounds();
+        for (int k = 0; ; k++) {
+            Level level = level(k);
+            long c0 = level.cell(bounds.getMinLng()), c1 = level.cell(bounds.getMaxLng());
+            long r0 = level.cell(bounds.getMinLat()), r1 = level.cell(bounds.getMaxLat());
+            if (level.overflows(c0, c1, r0, r1)) continue;
+            for (long c = c0; c <= c1; c++) {
+                for (long r = r0; r <= r1; r++) {
+                    long key = key(c, r);
+                    level.put(key, append(level.get(key), node));
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * 移除节点，按对象引用匹配，节点的外包矩形需与加入时相同。
+     *
+     * @param node 节点。
+     */
+    public synchronized void remove(PolygonNode node) {
+        BoundingBox bounds = node.getBounds();
+        for (Level level : levels) {
+            long c0 = level.cell(bounds.getMinLng()), c1 = level.cell(bounds.getMaxLng());
+            long r0 = level.cell(bounds.getMinLat()), r1 = level.cell(bounds.getMaxLat());
+            if (level.overflows(c0, c1, r0, r1)) continue;
+            for (long c = c0; c <= c1; c++) {
+                for (long r = r0; r <= r1; r++) {
+                    long key = key(c, r);
+                    PolygonNode[] bucket = level.get(key);
+                    if (bucket != null) level.put(key, without(bucket, node));
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * 依次处理外包矩形包含给定坐标的节点。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param action 候选节点的处理函数。
+     */
+    public void forEach(double lng, double lat, Consumer<? super PolygonNode> action) {
+        for (Level level : levels) {
+            if (level.size == 0) continue;
+            PolygonNode[] bucket = level.get(key(level.cell(lng), level.cell(lat)));
+            if (bucket == null) continue;
+            for (PolygonNode node : bucket) {
+                if (node.getBounds().contains(lng, lat)) action.accept(node);
+            }
+        }
+    }
+
+    /**
+     * 获取已创建的桶数量，包括各层网格的桶。
+     *
+     * @return 桶数量。
+     */
+    public int bucketCount() {
+        int count = 0;
+        for (Level level : levels) count += level.size;
+        return count;
+    }
+
+    /**
+     * 获取第k层网格，不存在时创建，只在增删操作中调用。
+     */
+    private Level level(int k) {
+        Level[] current = levels;
+        if (k < current.length) return current[k];
+        Level[] grown = Arrays.copyOf(current, k + 1);
+        grown[k] = new Level(current[k - 1].cellSize * LEVEL_FACTOR);
+        levels = grown;
+        return grown[k];
+    }
+
+    private static long key(long column, long row) {
+        return column << 32 ^ (row & 0xffffffffL);
+    }
+
+    private static int index(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & mask;
+    }
+
+    /**
+     * 返回加入指定节点后的桶。
+     */    private static PolygonNode[] append(PolygonNode[] bucket, PolygonNode node) {
+        if (bucket == null) return new PolygonNode[]{node};
+        PolygonNode[] copy = Arrays.copyOf(bucket, bucket.length + 1);
+        copy[bucket.length] = node;
+        return copy;
+    }
+
+    /**
+     * 返回去掉指定节点后的桶，节点全部移除时返回空数组。
+     */
+    private static PolygonNode[] without(PolygonNode[] bucket, PolygonNode node) {
+        for (int i = 0; i < bucket.length; i++) {
+            if (bucket[i] != node) continue;
+            if (bucket.length == 1) return EMPTY;
+            PolygonNode[] copy = new PolygonNode[bucket.length - 1];
+            System.arraycopy(bucket, 0, copy, 0, i);
+            System.arraycopy(bucket, i + 1, copy, i, bucket.length - i - 1);
+            return copy;
+        }
+        return bucket;
+    }
+}
@@ -0,0 +1,347 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按经纬度小网格缓存围栏判断结果的有界并发缓存。
+ * <p>
+ * 坐标按 {@link #cellSize} 量化为小网格编号。第一次查询某个小网格时检查所有多边形的边，
+ * 只有没有任何一条边经过（含容差）的小网格才缓存结果：网格内每个点相对每个多边形的位置都相同，
+ * 因此缓存的匹配结果和包含该网格的区域代码对网格内任意一点都精确成立。
+ * 有边经过的小网格只缓存"边界"这一分类，查询时回退到射线法，结果永远不会来自缓存的近似。
+ * <p>
+ * 缓存条目数量超过容量时按CLOCK算法淘汰：每个条目有一个访问标记，淘汰指针循环扫描，
+ * 清除被访问过的条目的标记，淘汰第一个未被访问过的条目。
+ * <p>
+ * 条目存放在以小网格编号为键的开放寻址（线性探测）表中，键为基本类型long，查询不装箱、不加锁。
+ * 条目不可变且自身保存网格编号，读到的任何条目都对它的网格精确成立；
+ * 写入和淘汰时加锁，与之并发的查询最多错过一个正在移动的条目，按未命中重新计算，结果不受影响。
+ */
+public final class CellCache {
+
+    /**
+     * 默认的小网格边长（度），约100米。
+     */
+    public static final double DEFAULT_CELL_SIZE = 0.001;
+
+    /**
+     * 全部区域多边形的空间索引，不分层级。
+     */
+    private final RingIndex rings;
+
+    /**
+     * 顶层节点的空间索引，用于计算匹配结果。
+     */
+    private final RingIndex root;
+
+    /**
+     * 小网格的边长（度）。
+     */
+    private final double cellSize;
+
+    /**
+     * 最大缓存条目数量。
+     */
+    private final int capacity;
+
+    /**
+     * 以小网格编号为键的开放寻址表，长度为2的幂且不小于容量的两倍，空槽位为null。
+     */
+    private final Cell[] table;
+
+    /**
+     * 开放寻址表的下标掩码。
+     */
+    private final int mask;
+
+    /**
+     * CLOCK淘汰使用的环形槽位，保存每个槽位中的条目，未占用时为null。
+     */
+    private final Cell[] slots;
+
+    /**
+     * 淘汰指针。
+     */
+    private int hand;
+
+    /**
+     * 当前缓存的条目数量。
+     */
+    private int size;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder boundaryHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 一个小网格的缓存条目。
+     */
+    public static final class Cell {
+
+        /**
+         * 小网格编号，高32位为列号，低32位为行号。
+         */
+        private final long key;
+
+        /**
+         * 网格内的点所在的最细层级节点，不在任何区域内时为null。
+         */
+        private final PolygonNode hit;
+
+        /**
+         * 包含该网格的全部区域代码，已排序。
+         */
+        private final String[] codes;
+
+        /**
+         * 是否有边经过，需要使用射线法判断。
+         */
+        private final boolean boundary;
+
+        /**
+         * CLOCK算法的访问标记。
+         */
+        private volatile boolean referenced;
+
+        private Cell(long key, PolygonNode hit, String[] codes, boolean boundary) {
+            this.key = key;
+            this.hit = hit;
+            this.codes = codes;
+            this.boundary = boundary;
+        }
+
+        /**
+         * 获取网格内的点所在的最细层级节点。
+         *
+         * @return 最细层级节点；不在任何区域内时返回null。
+         */
+        public PolygonNode hit() {
+            return hit;
+        }
+
+        /**
+         * 判断网格是否位于指定区域代码的围栏内。
+         *
+         * @param code 区域代码。
+         * @return 如果网格在该区域内返回true，否则返回false。
+         */
+        public boolean contains(String code) {
+            return Arrays.binarySearch(codes, code) >= 0;
+        }
+    }
+
+    /**
+     * 创建小网格缓存。
+     *
+     * @param regions 按区域代码索引的全部区域节点。
+     * @param root 顶层节点的空间索引。
+     * @param capacity 最大缓存条目数量。
+     * @param cellSize 小网格的边长（度），越小越贴近边界但需要的条目越多。
+     * @throws RuntimeException 如果容量或网格边长不是正数，将抛出运行时异常。
+     */
+    public CellCache(Map<String, PolygonNode> regions, RingIndex root, int capacity, double cellSize) {
+        if (capacity <= 0 || !(cellSize > 0)) throw new RuntimeException("Cache capacity and cell size must be positive.");
+        this.rings = RingIndex.of(regions);
+        this.root = root;
+        this.capacity = capacity;
+        this.cellSize = cellSize;
+        this.table = new Cell[Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1];
+        this.mask = table.length - 1;
+        this.slots = new Cell[capacity];
+    }
+
+    /**
+     * 获取坐标所在小网格的缓存条目，未缓存时计算并放入缓存。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 缓存条目；小网格有边经过时返回null，调用方需使用射线法判断。
+     */
+    public Cell get(double lng, double lat) {
+        long column = (long) Math.floor(lng / cellSize), row = (long) Math.floor(lat / cellSize);
+        long key = column << 32 | (row & 0xFFFFFFFFL);
+        Cell cell = find(key);
+        if (cell != null) {
+            // 命中边界分类的条目只省去了分类，调用方仍需执行射线法，不计入命中
+            if (cell.boundary) boundaryHits.increment();
+            else hits.increment();
+            if (!cell.referenced) cell.referenced = true;
+        } else {
+            misses.increment();
+            cell = put(classify(key, column, row, lng, lat));
+        }
+        return cell.boundary ? null : cell;
+    }
+
+    /**
+     * 在开放寻址表中查找小网格的条目，表中始终有空槽位，探测一定会结束。
+     */
+    private Cell find(long key) {
+        final Cell[] cells = table;
+        for (int i = index(key); ; i = (i + 1) & mask) {
+            Cell cell = cells[i];
+            if (cell == null) return null;
+            if (cell.key == key) return cell;
+        }
+    }
+
+    /**
+     * 小网格编号的初始探测位置。
+     */
+    private int index(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ h >>> 32) & mask;
+    }
+
+    /**
+     * 缓存命中次数，即直接由缓存得到结果、跳过射线法的次数，不包括命中边界分类的次数。
+     *
+     * @return 命中次数。
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 命中边界分类的次数：小网格已缓存但有边经过，调用方仍需使用射线法判断。
+     *
+     * @return 命中边界分类的次数。
+     */
+    public long getBoundaryHits() {
+        return boundaryHits.sum();
+    }
+
+    /**
+     * 缓存未命中次数。
+     *
+     * @return 未命中次数。
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 获取最大缓存条目数量。
+     *
+     * @return 最大缓存条目数量。
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * 获取小网格的边长。
+     *
+     * @return 小网格的边长（度）。
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * 当前缓存的条目数量。
+     *
+     * @return 条目数量。
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * 清空缓存，命中计数保持不变。
+     */
+    public synchronized void clear() {
+        Arrays.fill(table, null);
+        Arrays.fill(slots, null);
+        hand = 0;
+        size = 0;
+    }
+
+    /**
+     * 检查小网格是否有边经过，没有时以网格内的查询点计算匹配结果和全部包含该点的区域代码。
+     * 每个候选多边形环只检查与网格经度范围相交的边，见 {@link Ring#crosses(double, double, double, double)}。
+     */
+    private Cell classify(long key, long column, long row, double lng, double lat) {
+        double x0 = column * cellSize - GridIndex.EDGE_TOLERANCE, x1 = (column + 1) * cellSize + GridIndex.EDGE_TOLERANCE;
+        double y0 = row * cellSize - GridIndex.EDGE_TOLERANCE, y1 = (row + 1) * cellSize + GridIndex.EDGE_TOLERANCE;
+        if (rings != null && rings.searchIds(x0, y0, x1, y1,
+                id -> rings.node(id).getRings().get(rings.ring(id)).crosses(x0, y0, x1, y1))) {
+            return new Cell(key, null, null, true);
+        }
+        TreeSet<String> codes = new TreeSet<>();
+        if (rings != null) {
+            rings.searchIds(lng, lat, id -> {
+                if (rings.node(id).getRings().get(rings.ring(id)).contains(lng, lat)) codes.add(rings.node(id).getCode());
+                return false;
+            });
+        }
+        return new Cell(key, new RegionLocator(root).locate(lng, lat), codes.toArray(new String[0]), false);
+    }
+
+    /**
+     * 放入缓存条目，缓存已满时按CLOCK算法淘汰一个条目。
+     *
+     * @return 表中已有同一网格的条目时返回已有条目，否则返回放入的条目。
+     */
+    private synchronized Cell put(Cell cell) {
+        Cell existing = find(cell.key);
+        if (existing != null) return existing;
+        while (slots[hand] != null) {
+            Cell resident = slots[hand];
+            if (resident.referenced) {
+                resident.referenced = false;
+            } else {
+                remove(resident.key);
+                break;
+            }
+            hand = (hand + 1) % capacity;
+        }
+        int i = index(cell.key);
+        while (table[i] != null) i = (i + 1) & mask;
+        table[i] = cell;
+        size++;
+        slots[hand] = cell;
+        hand = (hand + 1) % capacity;
+        return cell;
+    }
+
+    /**
+     * 从开放寻址表中删除条目，之后探测序列中的条目向前移动填补空位，不使用删除标记。
+     * 条目先复制到空位再清除原位置，并发的查询不会读到不完整的条目。
+     */
+    private void remove(long key) {
+        int i = index(key);
+        while (table[i] != null && table[i].key != key) i = (i + 1) & mask;
+        if (table[i] == null) return;
+        size--;
+        for (int j = (i + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            int home = index(table[j].key);
+            // 初始位置在循环区间(i, j]内的条目不能移动到i
+            if (i <= j ? (home > i && home <= j) : (home > i || home <= j)) continue;
+            table[i] = table[j];
+            i = j;
+        }
+        table[i] = null;
+    }
+}
@@ -0,0 +1,330 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.Point;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * 经纬度均匀网格索引。
+ * <p>
+ * 构建时把所有多边形的边栅格化到网格上，与任何一条边相交的网格记为边界网格；
+ * 其余网格内部不存在多边形的边，网格中每个点的围栏判断结果都相同。
+ * 相邻的非边界网格组成连通区域，每个连通区域只需用区域内任意一点计算一次匹配结果和包含该点的全部区域代码。
+ * 查询时内部网格一次数组访问即可得到结果，只有边界网格需要回退到射线法逐个判断。
+ */
+@Getter
+public final class GridIndex implements Serializable {
+
+    /**
+     * 默认的网格数量上限。
+     */
+    public static final int DEFAULT_CELLS = 1 << 20;
+
+    /**
+     * 边界网格，需要使用射线法判断。
+     */
+    public static final int BOUNDARY = -1;
+
+    /**
+     * 坐标位于所有多边形的外包范围之外。
+     */
+    public static final int OUTSIDE = -2;
+
+    /**
+     * 栅格化边时的扩展容差，远大于射线法的浮点数比较精度和网格坐标换算误差。
+     */
+    static final double EDGE_TOLERANCE = 1e-7;
+
+    /**
+     * 构建阶段尚未编号的网格。
+     */
+    private static final int UNSET = Integer.MIN_VALUE;
+
+    /**
+     * 网格覆盖范围，即全部多边形的外包矩形。
+     */
+    private final BoundingBox extent;
+
+    /**
+     * 网格的边长（度）。
+     */
+    private final double cellSize;
+
+    /**
+     * 网格的列数和行数。
+     */
+    private final int columns, rows;
+
+    /**
+     * 每个网格所属的连通区域编号，边界网格为 {@link #BOUNDARY}。
+     */
+    private final int[] cells;
+
+    /**
+     * 每个连通区域的匹配结果，不在任何多边形内时为null。
+     */
+    private final PolygonNode[] hits;
+
+    /**
+     * 每个连通区域所在的全部区域代码，已排序。
+     */
+    private final String[][] codes;
+
+    /**
+     * 构建网格索引。
+     *
+     * @param regions 全部区域节点，需已计算外包矩形。
+     * @param matcher 匹配函数，返回点所在的最细层级节点。
+     * @param contains 判断点是否在指定区域节点内的函数。
+     * @param maxCells 网格数量上限。
+     */
+    public GridIndex(Collection<PolygonNode> regions,
+                     Function<Point, PolygonNode> matcher,
+                     BiPredicate<PolygonNode, Point> contains,
+                     int maxCells) {
+        BoundingBox bounds = BoundingBox.empty();
+        regions.forEach(region -> bounds.union(region.getBounds()));
+        this.extent = bounds;
+        double width = Math.max(bounds.getMaxLng() - bounds.getMinLng(), EDGE_TOLERANCE);
+        double height = Math.max(bounds.getMaxLat() - bounds.getMinLat(), EDGE_TOLERANCE);
+        this.cellSize = Math.sqrt(width * height / maxCells);
+        this.columns = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cells = new int[columns * rows];
+        Arrays.fill(cells, UNSET);
+
+        // 栅格化全部多边形的边，标记边界网格
+        for (PolygonNode region : regions) {
+            for (Ring ring : region.getRings()) markRing(cells, ring);
+        }
+
+        // 按连通区域为非边界网格编号，并计算每个连通区域的结果
+        List<PolygonNode> hitList = new ArrayList<>();
+        List<String[]> codeList = new ArrayList<>();
+        int[] queue = new int[cells.length];
+        for (int seed = 0; seed < cells.length; seed++) {
+            if (cells[seed] == UNSET) label(cells, seed, queue, regions, matcher, contains, hitList, codeList);
+        }
+        this.hits = hitList.toArray(new PolygonNode[0]);
+        this.codes = codeList.toArray(new String[0][]);
+    }
+
+    /**
+     * 使用已计算好的网格数据创建网格索引，用于从快照文件中恢复。
+     *
+     * @param extent 网格覆盖范围。
+     * @param cellSize 网格的边长（度）。
+     * @param columns 网格列数。
+     * @param rows 网格行数。
+     * @param cells 每个网格所属的连通区域编号，边界网格为 {@link #BOUNDARY}。
+     * @param hits 每个连通区域的匹配结果。
+     * @param codes 每个连通区域所在的全部区域代码，需已排序。
+     */
+    public GridIndex(BoundingBox extent, double cellSize, int columns, int rows,
+                     int[] cells, PolygonNode[] hits, String[][] codes) {
+        this.extent = extent;
+        this.cellSize = cellSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.cells = cells;
+        this.hits = hits;
+        this.codes = codes;
+    }
+
+    /**
+     * 查询坐标所在网格的连通区域编号。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 连通区域编号；边界网格返回 {@link #BOUNDARY}，超出覆盖范围返回 {@link #OUTSIDE}。
+     */
+    public int lookup(double lng, double lat) {
+        if (!extent.contains(lng, lat)) return OUTSIDE;
+        return cells[row(lat) * columns + column(lng)];
+    }
+
+    /**
+     * 获取连通区域的匹配结果。
+     *
+     * @param component 连通区域编号。
+     * @return 区域内的点所在的最细层级节点；不在任何多边形内时返回null。
+     */
+    public PolygonNode hit(int component) {
+        return hits[component];
+    }
+
+    /**
+     * 判断连通区域是否位于指定区域代码的围栏内。
+     *
+     * @param component 连通区域编号。
+     * @param code 区域代码。
+     * @return 如果连通区域在该区域内返回true，否则返回false。
+     */
+    public boolean contains(int component, String code) {
+        return Arrays.binarySearch(codes[component], code) >= 0;
+    }
+
+    /**
+     * 在区域数据发生局部变化后得到新的网格索引，原索引保持不变，可继续被并发查询使用。
+     * 变化区域覆盖的网格重新栅格化并重新划分连通区域，其余网格的连通区域编号和区域代码集合保持不变，
+     * 其匹配结果按区域代码对应到新数据中的节点。
+     * 变化前后的多边形都不覆盖的网格中，每个点的匹配结果和所在的全部区域代码都不会改变，因此结果与完整重建相同。
+     *
+     * @param touched 发生变化的区域在变化前和变化后的外包矩形。
+     * @param regions 变化后的全部区域节点，需已计算外包矩形。
+     * @param byCode 按区域代码查找变化后的区域节点的函数。
+     * @param matcher 变化后的匹配函数，返回点所在的最细层级节点。
+     * @param contains 变化后判断点是否在指定区域节点内的函数。
+     * @return 新的网格索引；变化后的区域超出网格覆盖范围时返回null，需要完整重建。
+     */
+    public GridIndex patch(Collection<BoundingBox> touched,
+                           Collection<PolygonNode> regions,
+                           Function<String, PolygonNode> byCode,
+                           Function<Point, PolygonNode> matcher,
+                           BiPredicate<PolygonNode, Point> contains) {
+        for (BoundingBox box : touched) {
+            if (box.getMinLng() < extent.getMinLng() || box.getMaxLng() > extent.getMaxLng()
+                    || box.getMinLat() < extent.getMinLat() || box.getMaxLat() > extent.getMaxLat()) return null;
+        }
+        // 变化范围覆盖的网格矩形，每项依次为起止列号和起止行号
+        List<int[]> ranges = new ArrayList<>(touched.size());
+        for (BoundingBox box : touched) {
+            ranges.add(new int[]{column(box.getMinLng() - EDGE_TOLERANCE), column(box.getMaxLng() + EDGE_TOLERANCE),
+                    row(box.getMinLat() - EDGE_TOLERANCE), row(box.getMaxLat() + EDGE_TOLERANCE)});
+        }
+        int[] cells = this.cells.clone();
+        for (int[] range : ranges) {
+            for (int r = range[2]; r <= range[3]; r++) Arrays.fill(cells, r * columns + range[0], r * columns + range[1] + 1, UNSET);
+        }
+
+        // 重新栅格化经过这些网格的边；未变化的边在这些网格之外经过的网格原本就是边界网格
+        for (PolygonNode region : regions) {
+            for (Ring ring : region.getRings()) {
+                if (ranges.stream().anyMatch(range -> overlaps(ring.getBounds(), range))) markRing(cells, ring);
+            }
+        }
+
+        List<PolygonNode> hitList = new ArrayList<>(hits.length);
+        for (PolygonNode hit : hits) hitList.add(hit == null ? null : byCode.apply(hit.getCode()));
+        List<String[]> codeList = new ArrayList<>(Arrays.asList(codes));
+        int[] queue = new int[cells.length];
+        for (int[] range : ranges) {
+            for (int r = range[2]; r <= range[3]; r++) {
+                for (int c = range[0]; c <= range[1]; c++) {
+                    int seed = r * columns + c;
+                    if (cells[seed] == UNSET) label(cells, seed, queue, regions, matcher, contains, hitList, codeList);
+                }
+            }
+        }
+        return new GridIndex(extent, cellSize, columns, rows, cells,
+                hitList.toArray(new PolygonNode[0]), codeList.toArray(new String[0][]));
+    }
+
+    /**
+     * 从种子网格开始为相连的未编号网格分配一个新的连通区域编号，并用种子网格的中心点计算该连通区域的结果。
+     */
+    private void label(int[] cells, int seed, int[] queue,
+                       Collection<PolygonNode> regions,
+                       Function<Point, PolygonNode> matcher,
+                       BiPredicate<PolygonNode, Point> contains,
+                       List<PolygonNode> hitList, List<String[]> codeList) {
+        int component = hitList.size();
+        Point point = new Point(extent.getMinLng() + (seed % columns + 0.5) * cellSize,
+                extent.getMinLat() + (seed / columns + 0.5) * cellSize);
+        hitList.add(matcher.apply(point));
+        codeList.add(regions.stream()
+                .filter(region -> region.getBounds().contains(point) && contains.test(region, point))
+                .map(PolygonNode::getCode)
+                .sorted()
+                .toArray(String[]::new));
+
+        int head = 0, tail = 0;
+        queue[tail++] = seed;
+        cells[seed] = component;
+        while (head < tail) {
+            int cell = queue[head++];
+            int column = cell % columns, row = cell / columns;
+            if (column > 0 && cells[cell - 1] == UNSET) cells[queue[tail++] = cell - 1] = component;
+            if (column < columns - 1 && cells[cell + 1] == UNSET) cells[queue[tail++] = cell + 1] = component;
+            if (row > 0 && cells[cell - columns] == UNSET) cells[queue[tail++] = cell - columns] = component;
+            if (row < rows - 1 && cells[cell + columns] == UNSET) cells[queue[tail++] = cell + columns] = component;
+        }
+    }
+
+    /**
+     * 将多边形环所有边经过的网格标记为边界网格。
+     */
+    private void markRing(int[] cells, Ring ring) {
+        int n = ring.size();
+        for (int i = 0; i < n; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            markEdge(cells, ring.lng(i), ring.lat(i), ring.lng(j), ring.lat(j));
+        }
+    }
+
+    /**
+     * 判断外包矩形是否与网格矩形相交，网格矩形向外扩展栅格化时使用的容差。
+     */
+    private boolean overlaps(BoundingBox box, int[] range) {
+        double x0 = extent.getMinLng() + range[0] * cellSize, x1 = extent.getMinLng() + (range[1] + 1) * cellSize;
+        double y0 = extent.getMinLat() + range[2] * cellSize, y1 = extent.getMinLat() + (range[3] + 1) * cellSize;
+        return box.getMinLng() <= x1 + EDGE_TOLERANCE && box.getMaxLng() >= x0 - EDGE_TOLERANCE
+                && box.getMinLat() <= y1 + EDGE_TOLERANCE && box.getMaxLat() >= y0 - EDGE_TOLERANCE;
+    }
+
+    /**
+     * 将一条边经过的网格标记为边界网格。逐列计算边在该列内的纬度范围，并向外扩展容差。
+     */
+    private void markEdge(int[] cells, double x0, double y0, double x1, double y1) {
+        if (x0 > x1) {
+            double t = x0; x0 = x1; x1 = t;
+            t = y0; y0 = y1; y1 = t;
+        }
+        int c0 = column(x0 - EDGE_TOLERANCE), c1 = column(x1 + EDGE_TOLERANCE);
+        for (int c = c0; c <= c1; c++) {
+            double columnStart = extent.getMinLng() + c * cellSize;
+            double a = Math.max(x0, columnStart - EDGE_TOLERANCE);
+            double b = Math.min(x1, columnStart + cellSize + EDGE_TOLERANCE);
+            if (a > b) a = b = Math.min(Math.max(columnStart, x0), x1);
+            double ya = x1 == x0 ? y0 : y0 + (y1 - y0) * ((a - x0) / (x1 - x0));
+            double yb = x1 == x0 ? y1 : y0 + (y1 - y0) * ((b - x0) / (x1 - x0));
+            int r0 = row(Math.min(ya, yb) - EDGE_TOLERANCE), r1 = row(Math.max(ya, yb) + EDGE_TOLERANCE);
+            for (int r = r0; r <= r1; r++) cells[r * columns + c] = BOUNDARY;
+        }
+    }
+
+    private int column(double lng) {
+        int column = (int) Math.floor((lng - extent.getMinLng()) / cellSize);
+        return Math.min(Math.max(column, 0), columns - 1);
+    }
+
+    private int row(double lat) {
+        int row = (int) Math.floor((lat - extent.getMinLat()) / cellSize);
+        return Math.min(Math.max(row, 0), rows - 1);
+    }
+}
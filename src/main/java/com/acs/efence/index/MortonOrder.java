@@ -0,0 +1,84 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.BoundingBox;
+
+/**
+ * 按Z序曲线（Morton码）排列坐标的工具类。
+ * <p>
+ * 把经纬度在给定范围内各量化为8位整数后交错排列成16位Morton码，再按Morton码做一次计数排序，
+ * 排列后相邻的坐标在空间上也相近，批量查询时连续访问的网格和多边形更可能已在CPU缓存中。
+ * 计数排序只需两次顺序遍历，排列的开销与坐标数量成线性关系。
+ */
+public final class MortonOrder {
+
+    /**
+     * 每个坐标轴量化的位数。
+     */
+    private static final int BITS = 8;
+
+    /**
+     * Morton码的取值数量。
+     */
+    private static final int BUCKETS = 1 << (2 * BITS);
+
+    private MortonOrder() {
+    }
+
+    /**
+     * 计算按空间位置排列的访问顺序。
+     *
+     * @param lngs 经度数组。
+     * @param lats 纬度数组，长度与经度数组相同。
+     * @param extent 量化范围，范围之外的坐标按最近的边界量化。
+     * @return 访问顺序，元素为坐标在输入数组中的下标，Morton码相同的坐标保持原有的相对顺序。
+     */
+    public static int[] sort(double[] lngs, double[] lats, BoundingBox extent) {
+        int n = lngs.length;
+        int max = (1 << BITS) - 1;
+        double scaleLng = max / Math.max(extent.getMaxLng() - extent.getMinLng(), Double.MIN_NORMAL);
+        double scaleLat = max / Math.max(extent.getMaxLat() - extent.getMinLat(), Double.MIN_NORMAL);
+        char[] keys = new char[n];
+        int[] starts = new int[BUCKETS + 1];
+        for (int i = 0; i < n; i++) {
+            int x = quantize((lngs[i] - extent.getMinLng()) * scaleLng, max);
+            int y = quantize((lats[i] - extent.getMinLat()) * scaleLat, max);
+            keys[i] = (char) (spread(x) | spread(y) << 1);
+            starts[keys[i] + 1]++;
+        }
+        for (int b = 0; b < BUCKETS; b++) starts[b + 1] += starts[b];
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[starts[keys[i]]++] = i;
+        return order;
+    }
+
+    private static int quantize(double value, int max) {
+        // NaN同样量化为0
+        return value > 0 ? (int) Math.min(value, max) : 0;
+    }
+
+    /**
+     * 将8位整数的各位分散到偶数位上。
+     */
+    private static int spread(int value) {
+        int x = value & 0xFF;
+        x = (x | x << 4) & 0x0F0F;
+        x = (x | x << 2) & 0x3333;
+        x = (x | x << 1) & 0x5555;
+        return x;
+    }
+}
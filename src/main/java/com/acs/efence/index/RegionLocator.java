@@ -0,0 +1,193 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.metrics.QueryStats;
+import com.acs.efence.model.CompareMode;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+
+import java.util.Map;
+
+/**
+ * 可重复使用的逐层区域查找器。
+ * <p>
+ * 查找逻辑与 {@code AcsEFInterface#fenceHit(Map, RingIndex, Point)} 相同：从顶层空间索引开始，
+ * 命中某个多边形后继续在该节点的子节点索引中查找，返回点所在的最细层级节点。
+ * 查找器自身即为R树访问器，批量查找时同一个实例处理全部坐标，每个坐标不产生对象分配。
+ * 查找器保存了当前查询的状态，不是线程安全的，每个线程需使用各自的实例。
+ */
+public final class RegionLocator implements StrTree.Visitor {
+
+    /**
+     * 顶层节点的空间索引。
+     */
+    private final RingIndex root;
+
+    /**
+     * 记录射线法工作量，为null时不记录。
+     */
+    private final QueryStats stats;
+
+    /**
+     * 当前查询的坐标。
+     */
+    private double lng, lat;
+
+    /**
+     * 当前正在查找的层级索引。
+     */
+    private RingIndex current;
+
+    /**
+     * 当前已命中的最细层级节点。
+     */
+    private PolygonNode hit;
+
+    /**
+     * 当前查询的目标级别，命中的节点达到该级别后不再向下查找，为null时查找到最细层级。
+     */
+    private CompareMode mode;
+
+    /**
+     * 创建区域查找器。
+     *
+     * @param root 顶层节点的空间索引，为null时任何坐标都查找不到区域。
+     */
+    public RegionLocator(RingIndex root) {
+        this(root, null);
+    }
+
+    /**
+     * 创建记录射线法工作量的区域查找器，只用于一次查询。
+     *
+     * @param root 顶层节点的空间索引，为null时任何坐标都查找不到区域。
+     * @param stats 记录每次射线法判断，为null时不记录。
+     */
+    public RegionLocator(RingIndex root, QueryStats stats) {
+        this.root = root;
+        this.stats = stats;
+    }
+
+    /**
+     * 查找坐标所在的最细层级节点。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 坐标所在的最细层级节点；不在任何多边形内时返回null。
+     */
+    public PolygonNode locate(double lng, double lat) {
+        return locate(root, lng, lat);
+    }
+
+    /**
+     * 从指定层级的空间索引开始查找坐标所在的最细层级节点，例如只在某个节点的子节点中查找。
+     *
+     * @param index 开始查找的空间索引，为null时返回null。
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 坐标所在的最细层级节点；不在该索引的任何多边形内时返回null。
+     */
+    public PolygonNode locate(RingIndex index, double lng, double lat) {
+        return locate(index, lng, lat, null);
+    }
+
+    /**
+     * 从指定层级的空间索引开始查找坐标所在的节点，命中的节点达到目标级别后不再查找它的子节点。
+     *
+     * @param index 开始查找的空间索引，为null时返回null。
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param mode 目标级别，为null时查找到最细层级。
+     * @return 查找路径上第一个达到目标级别的节点，路径上没有达到目标级别的节点时返回最细层级节点；不在任何多边形内时返回null。
+     */
+    public PolygonNode locate(RingIndex index, double lng, double lat, CompareMode mode) {
+        this.lng = lng;
+        this.lat = lat;
+        this.hit = null;
+        this.mode = mode;
+        if (index != null) search(index);
+        return hit;
+    }
+
+    /**
+     * 在未建立空间索引的节点中逐个查找坐标所在的节点，命中的节点达到目标级别后不再查找它的子节点。
+     *
+     * @param nodes 开始查找的节点映射。
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param mode 目标级别，为null时查找到最细层级。
+     * @return 与 {@link #locate(RingIndex, double, double, CompareMode)} 相同。
+     */
+    public PolygonNode locate(Map<String, PolygonNode> nodes, double lng, double lat, CompareMode mode) {
+        this.lng = lng;
+        this.lat = lat;
+        this.hit = null;
+        this.mode = mode;
+        if (nodes != null) scan(nodes);
+        return hit;
+    }
+
+    @Override
+    public boolean visit(int id) {
+        PolygonNode node = current.node(id);
+        Ring ring = node.getRings().get(current.ring(id));
+        if (stats != null) stats.test(node, ring, lng, lat);
+        if (!ring.contains(lng, lat)) return false;
+        hit = node;
+        descend(node);
+        return true;
+    }
+
+    /**
+     * 节点未达到目标级别时继续在子节点中查找。
+     */
+    private void descend(PolygonNode node) {
+        if (!node.hasChildren() || (mode != null && mode.reachedBy(node))) return;
+        if (node.getChildIndex() != null) {
+            search(node.getChildIndex());
+        } else {
+            scan(node.getChildren());
+        }
+    }
+
+    /**
+     * 在指定层级索引中查找，结束后恢复上一层的索引。
+     */
+    private void search(RingIndex index) {
+        RingIndex parent = current;
+        current = index;
+        index.searchIds(lng, lat, this);
+        current = parent;
+    }
+
+    /**
+     * 节点未建立空间索引时逐个遍历。
+     */
+    private void scan(Map<String, PolygonNode> children) {
+        for (PolygonNode node : children.values()) {
+            if (node.getBounds() != null && !node.getBounds().contains(lng, lat)) continue;
+            for (Ring ring : node.getRings()) {
+                if (!ring.getBounds().contains(lng, lat)) continue;
+                if (stats != null) stats.test(node, ring, lng, lat);
+                if (!ring.contains(lng, lat)) continue;
+                hit = node;
+                descend(node);
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.PolygonNode;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 区域代码表。
+ * <p>
+ * 全部区域节点按区域代码排序后依次编号，批量接口用编号代替区域代码和匹配结果对象输出，
+ * 调用方通过编号取得区域代码或区域节点。
+ */
+public final class RegionTable implements Serializable {
+
+    /**
+     * 没有匹配到任何区域时的编号。
+     */
+    public static final int NONE = -1;
+
+    /**
+     * 按编号排列的区域代码，已排序。
+     */
+    private final String[] codes;
+
+    /**
+     * 按编号排列的区域节点。
+     */
+    private final PolygonNode[] nodes;
+
+    /**
+     * 区域节点到编号的映射，按对象标识比较。
+     */
+    private final Map<PolygonNode, Integer> indexes;
+
+    private RegionTable(String[] codes, PolygonNode[] nodes, Map<PolygonNode, Integer> indexes) {
+        this.codes = codes;
+        this.nodes = nodes;
+        this.indexes = indexes;
+    }
+
+    /**
+     * 根据按区域代码索引的节点映射构建区域代码表。
+     *
+     * @param regions 按区域代码索引的节点映射。
+     * @return 区域代码表。
+     */
+    public static RegionTable of(Map<String, PolygonNode> regions) {
+        String[] codes = regions.keySet().toArray(new String[0]);
+        Arrays.sort(codes);
+        PolygonNode[] nodes = new PolygonNode[codes.length];
+        Map<PolygonNode, Integer> indexes = new IdentityHashMap<>(codes.length);
+        for (int i = 0; i < codes.length; i++) {
+            nodes[i] = regions.get(codes[i]);
+            indexes.put(nodes[i], i);
+        }
+        return new RegionTable(codes, nodes, indexes);
+    }
+
+    /**
+     * 区域数量。
+     *
+     * @return 区域代码表中的区域数量。
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * 获取编号对应的区域代码。
+     *
+     * @param index 区域编号。
+     * @return 区域代码。
+     */
+    public String code(int index) {
+        return codes[index];
+    }
+
+    /**
+     * 获取编号对应的区域节点。
+     *
+     * @param index 区域编号。
+     * @return 区域节点。
+     */
+    public PolygonNode node(int index) {
+        return nodes[index];
+    }
+
+    /**
+     * 查找区域代码的编号。
+     *
+     * @param code 区域代码。
+     * @return 区域编号；区域代码不存在时返回 {@link #NONE}。
+     */
+    public int indexOf(String code) {
+        int index = Arrays.binarySearch(codes, code);
+        return index < 0 ? NONE : index;
+    }
+
+    /**
+     * 查找区域节点的编号。
+     *
+     * @param node 区域节点，可以为null。
+     * @return 区域编号；节点为null或不在代码表中时返回 {@link #NONE}。
+     */
+    public int indexOf(PolygonNode node) {
+        if (node == null) return NONE;
+        Integer index = indexes.get(node);
+        return index == null ? NONE : index;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 同一层级多边形节点的空间索引。
+ * <p>
+ * 以节点中每个多边形的外包矩形为条目构建 {@link StrTree}，
+ * 查询时只返回外包矩形包含给定点的少量候选多边形，避免逐个遍历兄弟节点。
+ */
+public final class RingIndex implements Serializable {
+
+    /**
+     * 条目编号对应的多边形节点。
+     */
+    private final PolygonNode[] nodes;
+
+    /**
+     * 条目编号对应的多边形在节点中的下标。
+     */
+    private final int[] rings;
+
+    /**
+     * 多边形外包矩形的R树。
+     */
+    private final StrTree tree;
+
+    /**
+     * 候选多边形访问器。
+     */
+    public interface Visitor {
+        /**
+         * 处理一个外包矩形包含查询点的多边形。
+         *
+         * @param node 多边形所属的节点。
+         * @param ring 多边形在节点中的下标。
+         * @return 返回true时立即结束查询，否则继续查找其他候选多边形。
+         */
+        boolean visit(PolygonNode node, int ring);
+    }
+
+    private RingIndex(PolygonNode[] nodes, int[] rings, StrTree tree) {
+        this.nodes = nodes;
+        this.rings = rings;
+        this.tree = tree;
+    }
+
+    /**
+     * 为同一层级的节点构建空间索引。
+     *
+     * @param level 同一层级的节点映射，键为节点代码。
+     * @return 空间索引；节点映射为null或为空时返回null。
+     */
+    public static RingIndex of(Map<String, PolygonNode> level) {
+        if (level == null || level.isEmpty()) return null;
+        List<PolygonNode> nodes = new ArrayList<>();
+        List<Integer> rings = new ArrayList<>();
+        List<BoundingBox> boxes = new ArrayList<>();
+        for (PolygonNode node : level.values()) {
+            List<Ring> nodeRings = node.getRings();
+            for (int i = 0; i < nodeRings.size(); i++) {
+                nodes.add(node);
+                rings.add(i);
+                boxes.add(nodeRings.get(i).getBounds());
+            }
+        }
+        return new RingIndex(nodes.toArray(new PolygonNode[0]),
+                rings.stream().mapToInt(Integer::intValue).toArray(),
+                new StrTree(boxes));
+    }
+
+    /**
+     * 查找外包矩形包含给定坐标的多边形，并依次交给访问器处理。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param visitor 候选多边形访问器。
+     * @return 如果访问器提前结束了查询返回true，否则返回false。
+     */
+    public boolean search(double lng, double lat, Visitor visitor) {
+        return tree.search(lng, lat, id -> visitor.visit(nodes[id], rings[id]));
+    }
+
+    /**
+     * 查找外包矩形包含给定坐标的条目，并将条目编号依次交给访问器处理，
+     * 可通过 {@link #node(int)} 和 {@link #ring(int)} 获取条目对应的节点和多边形。
+     * 访问器可以重复使用，查询过程不产生对象分配。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param visitor 条目访问器。
+     * @return 如果访问器提前结束了查询返回true，否则返回false。
+     */
+    public boolean searchIds(double lng, double lat, StrTree.Visitor visitor) {
+        return tree.search(lng, lat, visitor);
+    }
+
+    /**
+     * 查找外包矩形与给定矩形相交的条目，并将条目编号依次交给访问器处理。
+     *
+     * @param minLng 矩形最小经度。
+     * @param minLat 矩形最小纬度。
+     * @param maxLng 矩形最大经度。
+     * @param maxLat 矩形最大纬度。
+     * @param visitor 条目访问器。
+     * @return 如果访问器提前结束了查询返回true，否则返回false。
+     */
+    public boolean searchIds(double minLng, double minLat, double maxLng, double maxLat, StrTree.Visitor visitor) {
+        return tree.search(minLng, minLat, maxLng, maxLat, visitor);
+    }
+
+    /**
+     * 获取条目对应的多边形节点。
+     *
+     * @param id 条目编号。
+     * @return 多边形所属的节点。
+     */
+    public PolygonNode node(int id) {
+        return nodes[id];
+    }
+
+    /**
+     * 获取条目对应的多边形在节点中的下标。
+     *
+     * @param id 条目编号。
+     * @return 多边形在节点中的下标。
+     */
+    public int ring(int id) {
+        return rings[id];
+    }
+}
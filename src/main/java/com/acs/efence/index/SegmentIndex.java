@@ -0,0 +1,187 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 多边形边界的线段级空间索引，用于查找距离给定点最近的区域和计算点到区域边界的距离。
+ * <p>
+ * 每个多边形环按顺序每 {@link #RUN} 条边分为一段，以各段的外包矩形为条目构建 {@link StrTree}，
+ * 查询时按外包矩形距离从近到远访问，只计算可能比当前最近距离更近的线段，不需要遍历全部边。
+ * 距离使用以查询点纬度为基准的等距圆柱投影近似计算，单位为米，数百公里以内误差很小。
+ */
+public final class SegmentIndex implements Serializable {
+
+    /**
+     * 地球平均半径下每度对应的米数。
+     */
+    public static final double METERS_PER_DEGREE = 6371008.8 * Math.PI / 180;
+
+    /**
+     * 每个条目包含的边数。
+     */
+    private static final int RUN = 8;
+
+    /**
+     * 条目对应的区域节点。
+     */
+    private final PolygonNode[] nodes;
+
+    /**
+     * 条目对应的多边形环。
+     */
+    private final Ring[] rings;
+
+    /**
+     * 条目的第一条边在环中的下标，边i连接顶点i和下一个顶点。
+     */
+    private final int[] firstEdges;
+
+    /**
+     * 各段外包矩形的R树。
+     */
+    private final StrTree tree;
+
+    private SegmentIndex(PolygonNode[] nodes, Ring[] rings, int[] firstEdges, StrTree tree) {
+        this.nodes = nodes;
+        this.rings = rings;
+        this.firstEdges = firstEdges;
+        this.tree = tree;
+    }
+
+    /**
+     * 为区域节点自身的多边形环构建索引，不包括子节点的多边形。
+     *
+     * @param regions 区域节点。
+     * @return 线段索引。
+     */
+    public static SegmentIndex of(Collection<PolygonNode> regions) {
+        List<PolygonNode> nodes = new ArrayList<>();
+        List<Ring> rings = new ArrayList<>();
+        List<Integer> firstEdges = new ArrayList<>();
+        List<BoundingBox> boxes = new ArrayList<>();
+        for (PolygonNode node : regions) {
+            if (node.getRings() == null) continue;
+            for (Ring ring : node.getRings()) {
+                int n = ring.size();
+                for (int first = 0; first < n; first += RUN) {
+                    int last = Math.min(first + RUN, n);
+                    double minLng = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+                    double maxLng = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+                    // 包括最后一条边的终点
+                    for (int i = first; i <= last; i++) {
+                        int v = i == n ? 0 : i;
+                        minLng = Math.min(minLng, ring.lng(v));
+                        minLat = Math.min(minLat, ring.lat(v));
+                        maxLng = Math.max(maxLng, ring.lng(v));
+                        maxLat = Math.max(maxLat, ring.lat(v));
+                    }
+                    nodes.add(node);
+                    rings.add(ring);
+                    firstEdges.add(first);
+                    boxes.add(new BoundingBox().setMinLng(minLng).setMinLat(minLat).setMaxLng(maxLng).setMaxLat(maxLat));
+                }
+            }
+        }
+        return new SegmentIndex(nodes.toArray(new PolygonNode[0]), rings.toArray(new Ring[0]),
+                firstEdges.stream().mapToInt(Integer::intValue).toArray(), new StrTree(boxes));
+    }
+
+    /**
+     * 查找边界距离给定点最近的区域。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param maxDistance 最大距离（米）。
+     * @return 最近的区域节点；最大距离内没有任何区域边界时返回null。
+     */
+    public PolygonNode nearest(double lng, double lat, double maxDistance) {
+        int best = search(lng, lat, new double[]{maxDistance / METERS_PER_DEGREE});
+        return best < 0 ? null : nodes[best];
+    }
+
+    /**
+     * 计算给定点到索引中最近边界的距离，点在区域内或区域外都返回到边界的距离。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 距离（米）；索引为空时返回 {@link Double#POSITIVE_INFINITY}。
+     */
+    public double distance(double lng, double lat) {
+        double[] distance = {Double.POSITIVE_INFINITY};
+        search(lng, lat, distance);
+        return distance[0] * METERS_PER_DEGREE;
+    }
+
+    /**
+     * 条目数量。
+     *
+     * @return 索引中的条目数量。
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * 查找最近的条目。
+     *
+     * @param distance 传入搜索半径（度），输出最近距离；未找到时不修改。
+     * @return 最近条目的编号；搜索半径内没有条目时返回-1。
+     */
+    private int search(double lng, double lat, double[] distance) {
+        double scale = Math.cos(Math.toRadians(lat));
+        int[] best = {-1};
+        tree.nearest(lng, lat, scale, distance[0], (id, bound) -> {
+            double d = distance(id, lng, lat, scale);
+            // 第一个条目允许等于搜索半径，之后只接受更近的条目
+            if (best[0] < 0 ? d <= distance[0] : d < distance[0]) {
+                best[0] = id;
+                distance[0] = d;
+            }
+            return distance[0];
+        });
+        return best[0];
+    }
+
+    /**
+     * 查询点到一个条目中各条边的最近距离（度）。
+     */
+    private double distance(int id, double lng, double lat, double scale) {
+        Ring ring = rings[id];
+        int n = ring.size(), first = firstEdges[id], last = Math.min(first + RUN, n);
+        double min = Double.POSITIVE_INFINITY;
+        double x1 = (ring.lng(first) - lng) * scale, y1 = ring.lat(first) - lat;
+        for (int i = first; i < last; i++) {
+            int j = i + 1 == n ? 0 : i + 1;
+            double x2 = (ring.lng(j) - lng) * scale, y2 = ring.lat(j) - lat;
+            double dx = x2 - x1, dy = y2 - y1, length2 = dx * dx + dy * dy;
+            double t = length2 > 0 ? Math.max(0, Math.min(1, -(x1 * dx + y1 * dy) / length2)) : 0;
+            double ex = x1 + t * dx, ey = y1 + t * dy;
+            min = Math.min(min, ex * ex + ey * ey);
+            x1 = x2;
+            y1 = y2;
+        }
+        return Math.sqrt(min);
+    }
+}
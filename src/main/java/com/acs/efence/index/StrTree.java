@@ -0,0 +1,350 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.BoundingBox;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 使用 Sort-Tile-Recursive 算法批量构建的不可变R树。
+ * <p>
+ * 树中每个条目由一个外包矩形和一个整数编号组成，编号即条目在构建列表中的下标。
+ * 所有节点按层存放在基本类型数组中，查询过程不产生额外的对象分配。
+ */
+public final class StrTree implements Serializable {
+
+    /**
+     * 每个树节点最多包含的子节点数量。
+     */
+    private static final int NODE_CAPACITY = 16;
+
+    /**
+     * 叶子层每个位置对应的条目编号。
+     */
+    private final int[] ids;
+
+    /**
+     * 各层节点的外包矩形，第一维为层号，0为叶子层。
+     */
+    private final double[][] minLng, minLat, maxLng, maxLat;
+
+    /**
+     * 各层节点在下一层中的子节点范围 [start, end)，叶子层为null。
+     */
+    private final int[][] start, end;
+
+    /**
+     * 树节点访问器，用于逐个处理查询命中的条目。
+     */
+    public interface Visitor {
+        /**
+         * 处理一个外包矩形包含查询点的条目。
+         *
+         * @param id 条目编号。
+         * @return 返回true时立即结束查询，否则继续查找其他条目。
+         */
+        boolean visit(int id);
+    }
+
+    /**
+     * 最近邻查询的条目访问器。
+     */
+    public interface DistanceVisitor {
+        /**
+         * 处理一个外包矩形与查询点的距离不超过搜索半径的条目，条目按外包矩形距离从近到远依次访问。
+         *
+         * @param id 条目编号。
+         * @param bound 条目外包矩形与查询点的距离，即条目中任何对象与查询点距离的下界。
+         * @return 新的搜索半径，外包矩形距离超过搜索半径的条目不再访问。
+         */
+        double visit(int id, double bound);
+    }
+
+    /**
+     * 根据外包矩形列表批量构建R树。
+     *
+     * @param boxes 条目的外包矩形列表，条目编号即列表下标。
+     */
+    public StrTree(List<BoundingBox> boxes) {
+        int n = boxes.size();
+        double[] x0 = new double[n], y0 = new double[n], x1 = new double[n], y1 = new double[n];
+        for (int i = 0; i < n; i++) {
+            BoundingBox box = boxes.get(i);
+            x0[i] = box.getMinLng();
+            y0[i] = box.getMinLat();
+            x1[i] = box.getMaxLng();
+            y1[i] = box.getMaxLat();
+        }
+
+        // 计算层数，顶层节点数量不超过 NODE_CAPACITY
+        int levels = 1;
+        for (int count = n; count > NODE_CAPACITY; count = (count + NODE_CAPACITY - 1) / NODE_CAPACITY) levels++;
+        minLng = new double[levels][];
+        minLat = new double[levels][];
+        maxLng = new double[levels][];
+        maxLat = new double[levels][];
+        start = new int[levels][];
+        end = new int[levels][];
+
+        // 叶子层按STR顺序排列条目
+        int[] order = tile(x0, y0, x1, y1);
+        ids = order;
+        minLng[0] = permute(x0, order);
+        minLat[0] = permute(y0, order);
+        maxLng[0] = permute(x1, order);
+        maxLat[0] = permute(y1, order);
+
+        // 自底向上逐层打包，每层节点再次按STR排序
+        for (int level = 1; level < levels; level++) {
+            int below = minLng[level - 1].length;
+            int count = (below + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            double[] nx0 = new double[count], ny0 = new double[count], nx1 = new double[count], ny1 = new double[count];
+            int[] ns = new int[count], ne = new int[count];
+            for (int i = 0; i < count; i++) {
+                ns[i] = i * NODE_CAPACITY;
+                ne[i] = Math.min(below, ns[i] + NODE_CAPACITY);
+                nx0[i] = ny0[i] = Double.POSITIVE_INFINITY;
+                nx1[i] = ny1[i] = Double.NEGATIVE_INFINITY;
+                for (int c = ns[i]; c < ne[i]; c++) {
+                    nx0[i] = Math.min(nx0[i], minLng[level - 1][c]);
+                    ny0[i] = Math.min(ny0[i], minLat[level - 1][c]);
+                    nx1[i] = Math.max(nx1[i], maxLng[level - 1][c]);
+                    ny1[i] = Math.max(ny1[i], maxLat[level - 1][c]);
+                }
+            }
+            int[] levelOrder = tile(nx0, ny0, nx1, ny1);
+            minLng[level] = permute(nx0, levelOrder);
+            minLat[level] = permute(ny0, levelOrder);
+            maxLng[level] = permute(nx1, levelOrder);
+            maxLat[level] = permute(ny1, levelOrder);
+            start[level] = permute(ns, levelOrder);
+            end[level] = permute(ne, levelOrder);
+        }
+    }
+
+    /**
+     * 查找外包矩形包含给定坐标的条目，并依次交给访问器处理。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param visitor 条目访问器。
+     * @return 如果访问器提前结束了查询返回true，否则返回false。
+     */
+    public boolean search(double lng, double lat, Visitor visitor) {
+        int top = minLng.length - 1;
+        for (int i = 0; i < minLng[top].length; i++) {
+            if (search(top, i, lng, lat, visitor)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在指定层的指定节点下递归查找。
+     */
+    private boolean search(int level, int pos, double lng, double lat, Visitor visitor) {
+        if (lng < minLng[level][pos] || lng > maxLng[level][pos]
+                || lat < minLat[level][pos] || lat > maxLat[level][pos]) {
+            return false;
+        }
+        if (level == 0) return visitor.visit(ids[pos]);
+        for (int c = start[level][pos]; c < end[level][pos]; c++) {
+            if (search(level - 1, c, lng, lat, visitor)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 查找外包矩形与给定矩形相交（含边界）的条目，并依次交给访问器处理。
+     *
+     * @param minLng 矩形最小经度。
+     * @param minLat 矩形最小纬度。
+     * @param maxLng 矩形最大经度。
+     * @param maxLat 矩形最大纬度。
+     * @param visitor 条目访问器。
+     * @return 如果访问器提前结束了查询返回true，否则返回false。
+     */
+    public boolean search(double minLng, double minLat, double maxLng, double maxLat, Visitor visitor) {
+        int top = this.minLng.length - 1;
+        for (int i = 0; i < this.minLng[top].length; i++) {
+            if (search(top, i, minLng, minLat, maxLng, maxLat, visitor)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在指定层的指定节点下递归查找与矩形相交的条目。
+     */
+    private boolean search(int level, int pos, double x0, double y0, double x1, double y1, Visitor visitor) {
+        if (x1 < minLng[level][pos] || x0 > maxLng[level][pos]
+                || y1 < minLat[level][pos] || y0 > maxLat[level][pos]) {
+            return false;
+        }
+        if (level == 0) return visitor.visit(ids[pos]);
+        for (int c = start[level][pos]; c < end[level][pos]; c++) {
+            if (search(level - 1, c, x0, y0, x1, y1, visitor)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 按外包矩形与查询点的距离从近到远访问条目（best-first搜索），直到剩余条目的距离都超过搜索半径。
+     * 距离按经度差乘以缩放系数、纬度差不变的平面计算，缩放系数取查询点纬度的余弦值即为等距圆柱投影。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @param lngScale 经度差的缩放系数。
+     * @param radius 初始搜索半径（度）。
+     * @param visitor 条目访问器，返回值为新的搜索半径。
+     */
+    public void nearest(double lng, double lat, double lngScale, double radius, DistanceVisitor visitor) {
+        // 以最小堆保存待访问的树节点，键为节点外包矩形与查询点的距离
+        double[] keys = new double[64];
+        int[] levels = new int[64], positions = new int[64];
+        int size = 0;
+        int top = minLng.length - 1;
+        for (int i = 0; i < minLng[top].length; i++) {
+            double d = distance(top, i, lng, lat, lngScale);
+            if (d > radius) continue;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                levels = Arrays.copyOf(levels, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            size = push(keys, levels, positions, size, d, top, i);
+        }
+        while (size > 0) {
+            double d = keys[0];
+            int level = levels[0], pos = positions[0];
+            size = pop(keys, levels, positions, size);
+            if (d > radius) break;
+            if (level == 0) {
+                radius = Math.min(radius, visitor.visit(ids[pos], d));
+                continue;
+            }
+            for (int c = start[level][pos]; c < end[level][pos]; c++) {
+                double cd = distance(level - 1, c, lng, lat, lngScale);
+                if (cd > radius) continue;
+                if (size == keys.length) {
+                    keys = Arrays.copyOf(keys, size * 2);
+                    levels = Arrays.copyOf(levels, size * 2);
+                    positions = Arrays.copyOf(positions, size * 2);
+                }
+                size = push(keys, levels, positions, size, cd, level - 1, c);
+            }
+        }
+    }
+
+    /**
+     * 指定层的指定节点的外包矩形与查询点的距离，点在矩形内时为0。
+     */
+    private double distance(int level, int pos, double lng, double lat, double lngScale) {
+        double dx = Math.max(0, Math.max(minLng[level][pos] - lng, lng - maxLng[level][pos])) * lngScale;
+        double dy = Math.max(0, Math.max(minLat[level][pos] - lat, lat - maxLat[level][pos]));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * 将节点加入最小堆，调用方保证数组有空余位置。
+     *
+     * @return 加入后的堆大小。
+     */
+    private static int push(double[] keys, int[] levels, int[] positions, int size, double key, int level, int pos) {
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[parent] <= key) break;
+            keys[i] = keys[parent];
+            levels[i] = levels[parent];
+            positions[i] = positions[parent];
+            i = parent;
+        }
+        keys[i] = key;
+        levels[i] = level;
+        positions[i] = pos;
+        return size + 1;
+    }
+
+    /**
+     * 移除最小堆的堆顶。
+     *
+     * @return 移除后的堆大小。
+     */
+    private static int pop(double[] keys, int[] levels, int[] positions, int size) {
+        size--;
+        double key = keys[size];
+        int level = levels[size], pos = positions[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && keys[child + 1] < keys[child]) child++;
+            if (keys[child] >= key) break;
+            keys[i] = keys[child];
+            levels[i] = levels[child];
+            positions[i] = positions[child];
+            i = child;
+        }
+        keys[i] = key;
+        levels[i] = level;
+        positions[i] = pos;
+        return size;
+    }
+
+    /**
+     * 条目数量。
+     *
+     * @return R树中的条目数量。
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * 按 Sort-Tile-Recursive 规则计算排列顺序：先按中心经度切分为若干竖条，
+     * 每个竖条内再按中心纬度排序。
+     */
+    private static int[] tile(double[] x0, double[] y0, double[] x1, double[] y1) {
+        int n = x0.length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, Comparator.comparingDouble(i -> x0[i] + x1[i]));
+        int pages = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int slices = (int) Math.ceil(Math.sqrt(pages));
+        int sliceSize = slices * NODE_CAPACITY;
+        for (int from = 0; from < n; from += sliceSize) {
+            Arrays.sort(order, from, Math.min(n, from + sliceSize), Comparator.comparingDouble(i -> y0[i] + y1[i]));
+        }
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) result[i] = order[i];
+        return result;
+    }
+
+    private static double[] permute(double[] values, int[] order) {
+        double[] result = new double[order.length];
+        for (int i = 0; i < order.length; i++) result[i] = values[order[i]];
+        return result;
+    }
+
+    private static int[] permute(int[] values, int[] order) {
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) result[i] = values[order[i]];
+        return result;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数线性分桶的并发耗时直方图，分桶方式与HdrHistogram相同。
+ * <p>
+ * 小于128的值每个值一个桶；更大的值按2的幂分段，每段等分为64个桶，任何值的相对误差不超过1/64。
+ * 全部桶共3712个，覆盖long的整个正数范围，内存占用固定，记录一个值只需一次原子加法。
+ * 记录与读取可以并发执行，读取的分位数是读取期间各个桶的近似快照。
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 每段的桶数为2的该次幂。
+     */
+    private static final int SUB_BUCKET_BITS = 6;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * 桶的总数：线性部分128个，此后每段64个，共56段。
+     */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一个值，负数按0记录。
+     *
+     * @param value 耗时（纳秒）。
+     */
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * 已记录的值的数量。
+     *
+     * @return 数量。
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 已记录的最大值。
+     *
+     * @return 最大值；没有记录时返回0。
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 已记录的值的平均值。
+     *
+     * @return 平均值；没有记录时返回0。
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * 获取分位数。
+     *
+     * @param percentile 百分位，取值0到100，例如99.9。
+     * @return 不小于指定比例的记录值的最小桶上界，不超过已记录的最大值；没有记录时返回0。
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= target) return Math.min(highestValue(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * 清除全部记录。与记录并发执行时，清除期间记录的值可能部分保留。
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    /**
+     * 值所在的桶：小于128的值直接对应，更大的值取最高位所在的段和其后6位。
+     */
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * 桶内的最大值。
+     */
+    static long highestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket - (long) shift * SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.metrics;
+
+/**
+ * 电子围栏查询和加载的指标监听器，通过 {@code AcsEFInterface#setMetricsListener(MetricsListener)} 设置。
+ * <p>
+ * 未设置监听器时查询路径只多一次字段判断，不计时、不创建 {@link QueryStats}。
+ * 监听器在执行查询的线程中同步调用，实现需要线程安全并尽快返回，耗时较长的处理应转交给其他线程。
+ * 现成的实现见 {@link MetricsRegistry}。
+ */
+public interface MetricsListener {
+
+    /**
+     * 不做任何处理的监听器，设置该监听器等同于关闭指标收集。
+     */
+    MetricsListener NOOP = new MetricsListener() {
+    };
+
+    /**
+     * 一次toMatch查询结束。
+     *
+     * @param stats 查询的执行情况。
+     */
+    default void onMatch(QueryStats stats) {
+    }
+
+    /**
+     * 一次toCompare查询结束。
+     *
+     * @param stats 查询的执行情况。
+     */
+    default void onCompare(QueryStats stats) {
+    }
+
+    /**
+     * 数据集加载的一个阶段结束，例如JSON解析、网格索引构建。设置监听器时会先补报数据集已完成的各个阶段。
+     *
+     * @param phase 阶段名称，见 {@code AcsEFInterface#getLoadTimings()}。
+     * @param nanos 阶段耗时（纳秒）。
+     */
+    default void onLoad(String phase, long nanos) {
+    }
+}
@@ -0,0 +1,280 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在内存中汇总查询和加载指标的监听器。
+ * <p>
+ * 汇总内容包括toMatch和toCompare的耗时直方图、各种结果方式（网格、缓存、射线法）的次数、
+ * 射线法检查的节点数、多边形环数和边数，以及按区域代码汇总的耗时，可用 {@link #getSlowestRegions(int)}
+ * 找出累计耗时最多的区域。未命中任何区域的toMatch查询不按区域汇总。
+ */
+public class MetricsRegistry implements MetricsListener {
+
+    /**
+     * 一个区域的查询汇总。
+     */
+    public static final class RegionStats {
+
+        private final String code;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder edges = new LongAdder();
+
+        private RegionStats(String code) {
+            this.code = code;
+        }
+
+        private void record(QueryStats stats) {
+            count.increment();
+            totalNanos.add(stats.getNanos());
+            maxNanos.accumulate(stats.getNanos());
+            edges.add(stats.getEdges());
+        }
+
+        /**
+         * 区域代码。
+         *
+         * @return 区域代码。
+         */
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         * 查询次数。
+         *
+         * @return 查询次数。
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * 累计耗时（纳秒）。
+         *
+         * @return 累计耗时。
+         */
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        /**
+         * 单次查询的最大耗时（纳秒）。
+         *
+         * @return 最大耗时。
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * 射线法累计遍历的边数。
+         *
+         * @return 边数。
+         */
+        public long getEdges() {
+            return edges.sum();
+        }
+
+        @Override
+        public String toString() {
+            long n = Math.max(1, getCount());
+            return String.format("%s count=%d mean=%dns max=%dns edges/query=%d",
+                    code, getCount(), getTotalNanos() / n, getMaxNanos(), getEdges() / n);
+        }
+    }
+
+    private final LatencyHistogram matchLatency = new LatencyHistogram();
+    private final LatencyHistogram compareLatency = new LatencyHistogram();
+    private final Map<QueryStats.Path, LongAdder> paths = new EnumMap<>(QueryStats.Path.class);
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder rings = new LongAdder();
+    private final LongAdder edges = new LongAdder();
+    private final ConcurrentHashMap<String, RegionStats> regions = new ConcurrentHashMap<>();
+    private final Map<String, Long> loadTimings = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * 创建空的指标汇总。
+     */
+    public MetricsRegistry() {
+        for (QueryStats.Path path : QueryStats.Path.values()) paths.put(path, new LongAdder());
+    }
+
+    @Override
+    public void onMatch(QueryStats stats) {
+        matchLatency.record(stats.getNanos());
+        record(stats);
+    }
+
+    @Override
+    public void onCompare(QueryStats stats) {
+        compareLatency.record(stats.getNanos());
+        record(stats);
+    }
+
+    @Override
+    public void onLoad(String phase, long nanos) {
+        loadTimings.put(phase, nanos);
+    }
+
+    private void record(QueryStats stats) {
+        if (stats.getPath() != null) paths.get(stats.getPath()).increment();
+        nodes.add(stats.getNodes());
+        rings.add(stats.getRings());
+        edges.add(stats.getEdges());
+        if (stats.getCode() != null) regions.computeIfAbsent(stats.getCode(), RegionStats::new).record(stats);
+    }
+
+    /**
+     * toMatch的耗时直方图（纳秒）。
+     *
+     * @return 耗时直方图。
+     */
+    public LatencyHistogram getMatchLatency() {
+        return matchLatency;
+    }
+
+    /**
+     * toCompare的耗时直方图（纳秒）。
+     *
+     * @return 耗时直方图。
+     */
+    public LatencyHistogram getCompareLatency() {
+        return compareLatency;
+    }
+
+    /**
+     * 以指定方式得到结果的查询次数。
+     *
+     * @param path 得到结果的方式。
+     * @return 查询次数。
+     */
+    public long getPathCount(QueryStats.Path path) {
+        return paths.get(path).sum();
+    }
+
+    /**
+     * 以指定方式得到结果的查询所占的比例，例如 {@link QueryStats.Path#GRID} 的比例即为网格索引的命中率。
+     *
+     * @param path 得到结果的方式。
+     * @return 0到1之间的比例；没有查询时返回0。
+     */
+    public double getPathRatio(QueryStats.Path path) {
+        long total = 0;
+        for (LongAdder adder : paths.values()) total += adder.sum();
+        return total == 0 ? 0 : (double) getPathCount(path) / total;
+    }
+
+    /**
+     * 射线法阶段累计检查过多边形的节点数。
+     *
+     * @return 节点数。
+     */
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    /**
+     * 累计执行射线法的多边形环数。
+     *
+     * @return 多边形环数。
+     */
+    public long getRings() {
+        return rings.sum();
+    }
+
+    /**
+     * 射线法累计遍历的边数。
+     *
+     * @return 边数。
+     */
+    public long getEdges() {
+        return edges.sum();
+    }
+
+    /**
+     * 各加载阶段最近一次的耗时（纳秒），按首次出现的顺序排列。
+     *
+     * @return 阶段名称与耗时的只读副本。
+     */
+    public Map<String, Long> getLoadTimings() {
+        synchronized (loadTimings) {
+            return Collections.unmodifiableMap(new LinkedHashMap<>(loadTimings));
+        }
+    }
+
+    /**
+     * 累计耗时最多的区域。
+     *
+     * @param limit 最多返回的区域数量。
+     * @return 按累计耗时从多到少排列的区域汇总。
+     */
+    public List<RegionStats> getSlowestRegions(int limit) {
+        List<RegionStats> list = new ArrayList<>(regions.values());
+        list.sort(Comparator.comparingLong(RegionStats::getTotalNanos).reversed());
+        return list.subList(0, Math.min(Math.max(limit, 0), list.size()));
+    }
+
+    /**
+     * 清除全部查询指标，加载阶段的耗时保留。
+     */
+    public void reset() {
+        matchLatency.reset();
+        compareLatency.reset();
+        paths.values().forEach(LongAdder::reset);
+        nodes.reset();
+        rings.reset();
+        edges.reset();
+        regions.clear();
+    }
+
+    /**
+     * 生成文本格式的汇总报告，包括耗时分位数、结果方式比例、射线法工作量、加载阶段耗时和累计耗时最多的10个区域。
+     *
+     * @return 多行文本报告。
+     */
+    public String report() {
+        StringBuilder text = new StringBuilder();
+        latency(text, "toMatch", matchLatency);
+        latency(text, "toCompare", compareLatency);
+        for (QueryStats.Path path : QueryStats.Path.values()) {
+            text.append(String.format("path %-7s %6.2f%%%n", path, getPathRatio(path) * 100));
+        }
+        text.append(String.format("ray casting: nodes=%d rings=%d edges=%d%n", getNodes(), getRings(), getEdges()));
+        getLoadTimings().forEach((phase, nanos) -> text.append(String.format("load %-11s %8.1f ms%n", phase, nanos / 1e6)));
+        getSlowestRegions(10).forEach(region -> text.append("region ").append(region).append(System.lineSeparator()));
+        return text.toString();
+    }
+
+    private static void latency(StringBuilder text, String name, LatencyHistogram histogram) {
+        text.append(String.format("%-9s count=%d mean=%.0fns p50=%dns p99=%dns p99.9=%dns max=%dns%n", name,
+                histogram.getCount(), histogram.getMean(), histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax()));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.metrics;
+
+import com.acs.efence.model.Point;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 一次toMatch或toCompare查询的执行情况，只在设置了 {@link MetricsListener} 时创建。
+ * <p>
+ * 记录查询的坐标、耗时、得到结果的方式，以及射线法阶段检查的节点数、多边形环数和遍历的边数。
+ * 同一个对象只在执行查询的线程中修改，查询结束后交给监听器，监听器不应再修改它。
+ */
+@Getter
+@ToString(exclude = "last")
+public final class QueryStats {
+
+    /**
+     * 查询得到结果的方式。
+     */
+    public enum Path {
+        /**
+         * 坐标不在网格覆盖范围或区域外包矩形内，无需判断。
+         */
+        OUTSIDE,
+        /**
+         * 坐标位于网格索引的内部网格，直接使用预计算结果。
+         */
+        GRID,
+        /**
+         * 坐标位于已缓存的小网格，直接使用缓存结果。
+         */
+        CACHE,
+        /**
+         * 使用射线法逐个判断候选多边形。
+         */
+        RAY
+    }
+
+    /**
+     * 查询的坐标。
+     */
+    private final Point point;
+
+    /**
+     * 查询开始时的 {@link System#nanoTime()}。
+     */
+    private final long start;
+
+    /**
+     * 查询耗时（纳秒），查询结束后设置。
+     */
+    private long nanos;
+
+    /**
+     * toMatch命中的区域代码，未命中时为null；toCompare实际判断的区域代码。
+     */
+    private String code;
+
+    /**
+     * 得到结果的方式。
+     */
+    private Path path;
+
+    /**
+     * 射线法阶段检查过多边形的节点数。
+     */
+    private int nodes;
+
+    /**
+     * 执行射线法的多边形环数。
+     */
+    private int rings;
+
+    /**
+     * 射线法遍历的边数，见 {@link Ring#scannedEdges(double, double)}。
+     */
+    private long edges;
+
+    /**
+     * 最近一次检查的节点，用于统计节点数。
+     */
+    private PolygonNode last;
+
+    /**
+     * 在查询开始时创建。
+     *
+     * @param point 查询的坐标。
+     */
+    public QueryStats(Point point) {
+        this.point = point;
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * 记录得到结果的方式。
+     *
+     * @param path 得到结果的方式。
+     * @return 当前对象。
+     */
+    public QueryStats path(Path path) {
+        this.path = path;
+        return this;
+    }
+
+    /**
+     * 记录一次射线法判断。
+     *
+     * @param node 多边形所属的节点。
+     * @param ring 执行射线法的多边形环。
+     * @param lng 查询坐标的经度。
+     * @param lat 查询坐标的纬度。
+     */
+    public void test(PolygonNode node, Ring ring, double lng, double lat) {
+        if (node != last) {
+            nodes++;
+            last = node;
+        }
+        rings++;
+        edges += ring.scannedEdges(lng, lat);
+    }
+
+    /**
+     * 查询结束时记录耗时和结果。
+     *
+     * @param code 命中或判断的区域代码。
+     * @return 当前对象。
+     */
+    public QueryStats finish(String code) {
+        this.nanos = System.nanoTime() - start;
+        this.code = code;
+        return this;
+    }
+}
@@ -0,0 +1,127 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 轴对齐外包矩形类，用于在射线法判断之前快速排除不可能命中的多边形。
+ * 矩形四边均向外扩展了一个极小的容差，保证与射线法的边界精度判断保持一致。
+ */
+@Data
+@Accessors(chain = true)
+public class BoundingBox implements Serializable {
+
+    /**
+     * 外包矩形的扩展容差，需大于射线法中使用的浮点数比较精度。
+     */
+    public static final double TOLERANCE = 1e-9;
+
+    /**
+     * 最小经度。
+     */
+    double minLng;
+
+    /**
+     * 最小纬度。
+     */
+    double minLat;
+
+    /**
+     * 最大经度。
+     */
+    double maxLng;
+
+    /**
+     * 最大纬度。
+     */
+    double maxLat;
+
+    /**
+     * 创建一个不包含任何点的空外包矩形，可通过合并其他矩形逐步扩展。
+     *
+     * @return 空外包矩形。
+     */
+    public static BoundingBox empty() {
+        return new BoundingBox()
+                .setMinLng(Double.POSITIVE_INFINITY)
+                .setMinLat(Double.POSITIVE_INFINITY)
+                .setMaxLng(Double.NEGATIVE_INFINITY)
+                .setMaxLat(Double.NEGATIVE_INFINITY);
+    }
+
+    /**
+     * 根据多边形顶点坐标计算外包矩形。
+     *
+     * @param lngs 顶点经度数组。
+     * @param lats 顶点纬度数组。
+     * @return 包含所有顶点的外包矩形。
+     */
+    public static BoundingBox of(double[] lngs, double[] lats) {
+        double minLng = Double.POSITIVE_INFINITY, minLat = Double.POSITIVE_INFINITY;
+        double maxLng = Double.NEGATIVE_INFINITY, maxLat = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < lngs.length; i++) {
+            minLng = Math.min(minLng, lngs[i]);
+            minLat = Math.min(minLat, lats[i]);
+            maxLng = Math.max(maxLng, lngs[i]);
+            maxLat = Math.max(maxLat, lats[i]);
+        }
+        return new BoundingBox()
+                .setMinLng(minLng - TOLERANCE)
+                .setMinLat(minLat - TOLERANCE)
+                .setMaxLng(maxLng + TOLERANCE)
+                .setMaxLat(maxLat + TOLERANCE);
+    }
+
+    /**
+     * 将另一个外包矩形合并到当前矩形中，使当前矩形同时覆盖两者。
+     *
+     * @param other 需要合并的外包矩形，为null时忽略。
+     * @return 当前外包矩形。
+     */
+    public BoundingBox union(BoundingBox other) {
+        if (other == null) return this;
+        minLng = Math.min(minLng, other.minLng);
+        minLat = Math.min(minLat, other.minLat);
+        maxLng = Math.max(maxLng, other.maxLng);
+        maxLat = Math.max(maxLat, other.maxLat);
+        return this;
+    }
+
+    /**
+     * 判断给定点是否落在外包矩形内（含边界）。
+     *
+     * @param point 待判断的点。
+     * @return 如果点在矩形内返回true，否则返回false。
+     */
+    public boolean contains(Point point) {
+        return contains(point.getLng(), point.getLat());
+    }
+
+    /**
+     * 判断给定经纬度是否落在外包矩形内（含边界）。
+     *
+     * @param lng 经度。
+     * @param lat 纬度。
+     * @return 如果坐标在矩形内返回true，否则返回false。
+     */
+    public boolean contains(double lng, double lat) {
+        return lng >= minLng && lng <= maxLng && lat >= minLat && lat <= maxLat;
+    }
+}
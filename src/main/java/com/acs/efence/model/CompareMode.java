@@ -30,19 +30,38 @@ public enum CompareMode {
      * 省份级别比较模式。
      * 在这种模式下，比较操作将专注于省份级别的数据。
      */
-    PROVINCE,
+    PROVINCE(1),
 
     /**
      * 市级级别比较模式。
      * 在这种模式下，比较操作将专注于城市级别的数据。
      */
-    CITY,
+    CITY(2),
 
     /**
      * 区域级别比较模式。
      * 在这种模式下，比较操作将专注于区域（如区、县）级别的数据。
      */
-    AREA
+    AREA(3);
+
+    /**
+     * 对应的区域级别，与区域数据中的level字段一致。
+     */
+    private final int level;
+
+    CompareMode(int level) {
+        this.level = level;
+    }
+
+    /**
+     * 判断节点是否已达到该模式的级别，未设置级别的节点视为未达到。
+     *
+     * @param node 区域节点。
+     * @return 节点级别不小于该模式的级别时返回true，否则返回false。
+     */
+    public boolean reachedBy(PolygonNode node) {
+        return node.getLevel() != null && node.getLevel() >= level;
+    }
 
 }
 
@@ -0,0 +1,169 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * 多边形环的经度分带边索引。
+ * <p>
+ * 把环的经度范围等分为若干竖带，每条竖带记录经度区间与之相交的全部边。
+ * 射线法使用竖直方向的射线，只有经度区间包含查询点经度的边才可能与射线相交，
+ * 这些边一定都登记在查询点所在的竖带中，因此只需遍历一条竖带的边，而不是整个环。
+ * 浮点数的减法、除法和取整都是单调的，边的经度区间包含查询点经度时，查询点所在竖带一定在该边登记的竖带范围内。
+ */
+final class EdgeSlabs implements Serializable {
+
+    /**
+     * 竖带登记的边总数与顶点数之比的上限，超过时减少竖带数量。
+     */
+    private static final int MAX_ENTRIES_PER_VERTEX = 4;
+
+    /**
+     * 环的最小经度减去外扩距离，即第一条竖带的起点。
+     */
+    private final double minLng;
+
+    /**
+     * 环的最大经度加上外扩距离。
+     */
+    private final double maxLng;
+
+    /**
+     * 每条竖带的宽度的倒数。
+     */
+    private final double scale;
+
+    /**
+     * 竖带数量。
+     */
+    private final int count;
+
+    /**
+     * 每条竖带的边在 {@link #edges} 中的范围 [starts[s], starts[s + 1])。
+     */
+    private final int[] starts;
+
+    /**
+     * 按竖带排列的边，元素为边起点的顶点下标。
+     */
+    private final int[] edges;
+
+    /**
+     * 为多边形环构建竖带索引。
+     *
+     * @param ring 多边形环。
+     */
+    EdgeSlabs(Ring ring) {
+        this(ring.size(), ring::lng, 0);
+    }
+
+    /**
+     * 为顶点序列构建竖带索引，每条边的经度区间向两侧外扩指定距离后登记，
+     * 与查询点经度之差不超过该距离的边都在查询点所在的竖带中。
+     *
+     * @param n 顶点数量。
+     * @param lngs 顶点经度。
+     * @param margin 外扩距离（度），不小于0。
+     */
+    EdgeSlabs(int n, IntToDoubleFunction lngs, double margin) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, lngs.applyAsDouble(i));
+            max = Math.max(max, lngs.applyAsDouble(i));
+        }
+        min -= margin;
+        max += margin;
+        this.minLng = min;
+        this.maxLng = max;
+
+        // 边较长时一条边会登记到多条竖带中，登记总数过多时减少竖带数量
+        int slabs = Math.max(1, n / 4);
+        int[] first = new int[n], last = new int[n];
+        long entries;
+        double slabScale;
+        do {
+            slabScale = max > min ? slabs / (max - min) : 0;
+            entries = 0;
+            for (int i = 0; i < n; i++) {
+                int j = i + 1 == n ? 0 : i + 1;
+                double x1 = lngs.applyAsDouble(i), x2 = lngs.applyAsDouble(j);
+                first[i] = slab(Math.min(x1, x2) - margin, min, slabScale, slabs);
+                last[i] = slab(Math.max(x1, x2) + margin, min, slabScale, slabs);
+                entries += last[i] - first[i] + 1;
+            }
+            // 只有一条竖带时登记总数等于顶点数，循环一定会结束
+        } while (entries > (long) MAX_ENTRIES_PER_VERTEX * n && (slabs /= 2) >= 1);
+        this.scale = slabScale;
+        this.count = slabs;
+
+        this.starts = new int[count + 1];
+        for (int i = 0; i < n; i++) {
+            for (int s = first[i]; s <= last[i]; s++) starts[s + 1]++;
+        }
+        for (int s = 0; s < count; s++) starts[s + 1] += starts[s];
+        this.edges = new int[starts[count]];
+        int[] fill = Arrays.copyOf(starts, count);
+        for (int i = 0; i < n; i++) {
+            for (int s = first[i]; s <= last[i]; s++) edges[fill[s]++] = i;
+        }
+    }
+
+    /**
+     * 查询点所在的竖带。
+     *
+     * @param lng 查询点经度。
+     * @return 竖带编号。
+     */
+    int slab(double lng) {
+        return slab(lng, minLng, scale, count);
+    }
+
+    /**
+     * 判断经度是否在环的经度范围（含外扩距离）内，范围之外的点不会与任何边相交。
+     */
+    boolean covers(double lng) {
+        return lng >= minLng && lng <= maxLng;
+    }
+
+    /**
+     * 竖带中第一条边在登记数组中的位置。
+     */
+    int start(int slab) {
+        return starts[slab];
+    }
+
+    /**
+     * 竖带中最后一条边之后在登记数组中的位置。
+     */
+    int end(int slab) {
+        return starts[slab + 1];
+    }
+
+    /**
+     * 登记数组中第k条边的起点下标。
+     */
+    int edge(int k) {
+        return edges[k];
+    }
+
+    private static int slab(double lng, double min, double scale, int count) {
+        int s = (int) Math.floor((lng - min) * scale);
+        return Math.min(Math.max(s, 0), count - 1);
+    }
+}
@@ -0,0 +1,194 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import lombok.EqualsAndHashCode;
+
+/**
+ * 顶点以定点整数存放的多边形环，经纬度按 {@link #SCALE}（即1e-7度，约1厘米）量化为int。
+ * <p>
+ * 顶点数组占用的内存是double数组的一半。射线法判断时查询点按同样的方式量化，
+ * 边的相交与点在边上的判断都只使用long乘法和比较，没有除法和精度阈值，结果是精确的，在任何JVM上都相同。
+ * 判断规则与 {@link Ring} 逐步相同，只有距离边界不超过量化误差（5e-8度）的点判断结果可能不同。
+ * 通过系统属性 {@code acs.efence.fixedPoint} 启用，见 {@link Ring#of(double[], double[])}。
+ */
+@EqualsAndHashCode(callSuper = true)
+public class FixedRing extends Ring {
+
+    /**
+     * 每度对应的定点数单位数量。
+     */
+    public static final double SCALE = 1e7;
+
+    /**
+     * 顶点经度的定点数数组。
+     */
+    private final int[] xs;
+
+    /**
+     * 顶点纬度的定点数数组，与经度数组一一对应。
+     */
+    private final int[] ys;
+
+    /**
+     * 顶点定点数的外包矩形，范围之外的点不需要判断，范围之内的点参与运算的差值都不会使long乘法溢出。
+     */
+    private final int minX, maxX, minY, maxY;
+
+    /**
+     * 使用已量化的顶点创建多边形环。
+     *
+     * @param xs 顶点经度的定点数数组。
+     * @param ys 顶点纬度的定点数数组，长度需与经度数组相同。
+     */
+    public FixedRing(int[] xs, int[] ys) {
+        super(bounds(xs, ys));
+        this.xs = xs;
+        this.ys = ys;
+        int x0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE, y0 = Integer.MAX_VALUE, y1 = Integer.MIN_VALUE;
+        for (int i = 0; i < xs.length; i++) {
+            x0 = Math.min(x0, xs[i]);
+            x1 = Math.max(x1, xs[i]);
+            y0 = Math.min(y0, ys[i]);
+            y1 = Math.max(y1, ys[i]);
+        }
+        this.minX = x0;
+        this.maxX = x1;
+        this.minY = y0;
+        this.maxY = y1;
+        prepare();
+    }
+
+    /**
+     * 将顶点坐标量化后创建多边形环。
+     *
+     * @param lngs 顶点经度数组。
+     * @param lats 顶点纬度数组，长度需与经度数组相同。
+     * @return 多边形环；有坐标不是有限值或超出int范围时返回null。
+     */
+    public static FixedRing quantize(double[] lngs, double[] lats) {
+        int[] xs = new int[lngs.length], ys = new int[lats.length];
+        for (int i = 0; i < xs.length; i++) {
+            long x = quantize(lngs[i]), y = quantize(lats[i]);
+            if (x != (int) x || y != (int) y) return null;
+            xs[i] = (int) x;
+            ys[i] = (int) y;
+        }
+        return new FixedRing(xs, ys);
+    }
+
+    /**
+     * 将经度或纬度四舍五入为定点数。
+     *
+     * @param degrees 经度或纬度。
+     * @return 定点数；非有限值返回 {@link Long#MIN_VALUE}。
+     */
+    public static long quantize(double degrees) {
+        return Double.isFinite(degrees) ? Math.round(degrees * SCALE) : Long.MIN_VALUE;
+    }
+
+    private static BoundingBox bounds(int[] xs, int[] ys) {
+        double[] lngs = new double[xs.length], lats = new double[ys.length];
+        for (int i = 0; i < xs.length; i++) {
+            lngs[i] = xs[i] / SCALE;
+            lats[i] = ys[i] / SCALE;
+        }
+        return BoundingBox.of(lngs, lats);
+    }
+
+    @Override
+    public int size() {
+        return xs.length;
+    }
+
+    @Override
+    public double lng(int i) {
+        return xs[i] / SCALE;
+    }
+
+    @Override
+    public double lat(int i) {
+        return ys[i] / SCALE;
+    }
+
+    /**
+     * 判断一个点是否在多边形环内。点先量化为定点数，再按与 {@link Ring#contains(double, double)} 相同的规则逐边统计交点数，
+     * 位于边界上或与顶点重合的点视为在多边形内，射线经过顶点时同样根据相邻两条边决定交点数。
+     * <p>
+     * 交点是否在查询点上方通过比较两个叉积分量判断，两者相等即点在边上，整个过程没有除法和舍入，
+     * 与double射线法只在距离边界不超过量化误差或精度阈值的点上可能不同。
+     * 已建立简化轮廓时先用简化轮廓判断，已建立竖带边索引时只遍历查询点所在竖带的边。
+     *
+     * @param lng 待判断点的经度。
+     * @param lat 待判断点的纬度。
+     * @return 如果点在多边形内部返回true，否则返回false。
+     */
+    @Override
+    public boolean contains(double lng, double lat) {
+        int side = envelopeSide(lng, lat);
+        if (side != RingEnvelope.BAND) return side == RingEnvelope.INSIDE;
+        final long qx = quantize(lng);
+        long qy = quantize(lat);
+        /* 经度在范围外或纬度高于所有顶点时射线不与任何边相交；低于所有顶点时各边的判断与纬度无关，取最低顶点之下即可 */
+        if (qx < minX || qx > maxX || qy > maxY) return false;
+        if (qy < minY) qy = minY - 1L;
+        final int[] x = xs, y = ys;
+        final int n = x.length;
+        int intersectCount = 0;
+        final EdgeSlabs index = slabs();
+        if (index != null) {
+            final int slab = index.slab(qx / SCALE);
+            for (int k = index.start(slab), end = index.end(slab); k < end; k++) {
+                int i = index.edge(k);
+                int j = i + 1 == n ? 0 : i + 1;
+                int crossing = cross(x[i], y[i], x[j], y[j], x[j + 1 == n ? 0 : j + 1], qx, qy);
+                if (crossing < 0) return true;
+                intersectCount += crossing;
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                int j = i + 1 == n ? 0 : i + 1;
+                int crossing = cross(x[i], y[i], x[j], y[j], x[j + 1 == n ? 0 : j + 1], qx, qy);
+                if (crossing < 0) return true;
+                intersectCount += crossing;
+            }
+        }
+        return (intersectCount & 1) != 0;
+    }
+
+    /**
+     * 判断边p1p2与从查询点竖直向上的射线的关系，规则与 {@link Ring#contains(double, double)} 的每一步相同。
+     * 查询点在环的外包矩形内时，各差值的绝对值不超过环的宽度或高度，经度差不超过3.6e9，纬度差不超过1.8e9，乘积小于long的最大值。
+     *
+     * @param x3 p2之后的顶点的经度，射线经过p2时使用。
+     * @return 点在边界上返回-1，否则返回交点数。
+     */
+    private static int cross(long x1, long y1, long x2, long y2, long x3, long qx, long qy) {
+        if (qx == x1 && qy == y1) return -1;
+        if (qx < Math.min(x1, x2) || qx > Math.max(x1, x2)) return 0;
+        if (qx > Math.min(x1, x2) && qx < Math.max(x1, x2)) {
+            if (qy > Math.max(y1, y2)) return 0;
+            if (y1 == y2) return qy == y1 ? -1 : 1;
+            /* 查询点与p1的纬度差乘以边的经度跨度，和边在查询点经度处相对p1的纬度差乘以同一跨度，相等时点在边上 */
+            long a = (x2 - x1) * (qy - y1), b = (qx - x1) * (y2 - y1);
+            if (a == b) return -1;
+            return (x2 > x1 ? a < b : a > b) ? 1 : 0;
+        }
+        /* 射线经过p2顶点时，根据相邻两条边是否位于射线两侧决定交点数 */
+        if (qx == x2 && qy <= y2) return qx >= Math.min(x1, x3) && qx <= Math.max(x1, x3) ? 1 : 2;
+        return 0;
+    }
+}
@@ -0,0 +1,235 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * 顶点存放在堆外缓冲区（通常是内存映射文件）中的多边形环。
+ * <p>
+ * 所有环共享同一对经度、纬度缓冲区，每个环只记录自己在缓冲区中的起始位置和顶点数量，
+ * 射线法判断时直接读取缓冲区，顶点数据不占用堆内存，也不会被GC扫描。
+ * 竖带边索引和简化轮廓在第一次判断时才建立，创建时不读取顶点，未被查询的环所在的页面不会被读入。
+ * 两个环的顶点数量和各顶点坐标都相同时相等。序列化时会转换为顶点存放在堆内存中的 {@link Ring}。
+ */
+public class MappedRing extends Ring {
+
+    /**
+     * 全部顶点的经度缓冲区。
+     */
+    private final transient DoubleBuffer lngs;
+
+    /**
+     * 全部顶点的纬度缓冲区。
+     */
+    private final transient DoubleBuffer lats;
+
+    /**
+     * 环的第一个顶点在缓冲区中的位置。
+     */
+    private final int offset;
+
+    /**
+     * 环的顶点数量。
+     */
+    private final int count;
+
+    /**
+     * 是否已建立竖带边索引和简化轮廓（顶点数较少时二者都不建立）。
+     */
+    private transient volatile boolean prepared;
+
+    /**
+     * 创建一个顶点存放在缓冲区中的多边形环。
+     *
+     * @param lngs 全部顶点的经度缓冲区。
+     * @param lats 全部顶点的纬度缓冲区。
+     * @param offset 环的第一个顶点在缓冲区中的位置。
+     * @param count 环的顶点数量。
+     * @param bounds 环的外包矩形。
+     */
+    public MappedRing(DoubleBuffer lngs, DoubleBuffer lats, int offset, int count, BoundingBox bounds) {
+        super(bounds);
+        this.lngs = lngs;
+        this.lats = lats;
+        this.offset = offset;
+        this.count = count;
+    }
+
+    /**
+     * 第一次使用时建立竖带边索引和简化轮廓，多个线程同时调用时只建立一次。
+     */
+    private void ensurePrepared() {
+        if (prepared) return;
+        synchronized (this) {
+            if (!prepared) {
+                prepare();
+                prepared = true;
+            }
+        }
+    }
+
+    @Override
+    public boolean isPrepared() {
+        ensurePrepared();
+        return super.isPrepared();
+    }
+
+    @Override
+    public boolean isSimplified() {
+        ensurePrepared();
+        return super.isSimplified();
+    }
+
+    @Override
+    public int scannedEdges(double lng, double lat) {
+        ensurePrepared();
+        return super.scannedEdges(lng, lat);
+    }
+
+    @Override
+    public boolean crosses(double minLng, double minLat, double maxLng, double maxLat) {
+        ensurePrepared();
+        return super.crosses(minLng, minLat, maxLng, maxLat);
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public double lng(int i) {
+        return lngs.get(offset + i);
+    }
+
+    @Override
+    public double lat(int i) {
+        return lats.get(offset + i);
+    }
+
+    /**
+     * 判断一个点是否在多边形环内，判断规则与 {@link Ring#contains(double, double)} 完全相同，只是直接读取缓冲区。
+     *
+     * @param lng 待判断点的经度。
+     * @param lat 待判断点的纬度。
+     * @return 如果点在多边形内部返回true，否则返回false。
+     */
+    @Override
+    public boolean contains(double lng, double lat) {
+        ensurePrepared();
+        int side = envelopeSide(lng, lat);
+        if (side != RingEnvelope.BAND) return side == RingEnvelope.INSIDE;
+        if (isPrepared()) return containsPrepared(lng, lat);
+        final DoubleBuffer xs = lngs, ys = lats;
+        final int base = offset, n = count;
+        int intersectCount = 0;
+
+        double x1 = xs.get(base), y1 = ys.get(base);
+        for (int i = 1; i <= n; ++i) {
+            /* 当前点与p1重合 */
+            if (lng == x1 && lat == y1 && Double.compare(lng, x1) == 0 && Double.compare(lat, y1) == 0) {
+                return true;
+            }
+
+            int j = base + (i == n ? 0 : i);
+            double x2 = xs.get(j), y2 = ys.get(j);
+            /* 当前点在p1和p2的垂直投影之外 */
+            if (lng < Math.min(x1, x2) || lng > Math.max(x1, x2)) {
+                x1 = x2;
+                y1 = y2;
+                continue;
+            }
+
+            if (lng > Math.min(x1, x2) && lng < Math.max(x1, x2)) {
+                if (lat <= Math.max(y1, y2)) {
+                    if (x1 == x2 && lat >= Math.min(y1, y2)) {
+                        return true;
+                    }
+                    if (y1 == y2) {
+                        if (y1 == lat) {
+                            return true;
+                        } else {
+                            ++intersectCount;
+                        }
+                    } else {
+                        double xinters = (lng - x1) * (y2 - y1) / (x2 - x1) + y1;
+                        if (Math.abs(lat - xinters) < PRECISION) {
+                            return true;
+                        }
+                        if (lat < xinters) {
+                            ++intersectCount;
+                        }
+                    }
+                }
+            } else {
+                /* 射线经过p2顶点 */
+                if (lng == x2 && lat <= y2) {
+                    double x3 = xs.get(base + (i + 1) % n);
+                    if (lng >= Math.min(x1, x3) && lng <= Math.max(x1, x3)) {
+                        ++intersectCount;
+                    } else {
+                        intersectCount += 2;
+                    }
+                }
+            }
+            x1 = x2;
+            y1 = y2;
+        }
+        return intersectCount % 2 != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof MappedRing)) return false;
+        MappedRing other = (MappedRing) o;
+        if (other.count != count) return false;
+        for (int i = 0; i < count; i++) {
+            if (Double.compare(lng(i), other.lng(i)) != 0 || Double.compare(lat(i), other.lat(i)) != 0) return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected boolean canEqual(Object other) {
+        return other instanceof MappedRing;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = count;
+        for (int i = 0; i < count; i++) {
+            result = 31 * result + Double.hashCode(lng(i));
+            result = 31 * result + Double.hashCode(lat(i));
+        }
+        return result;
+    }
+
+    /**
+     * 序列化时复制顶点到堆内存，转换为普通的多边形环。
+     *
+     * @return 顶点存放在堆内存中的多边形环。
+     */
+    private Object writeReplace() {
+        double[] lngCopy = new double[count], latCopy = new double[count];
+        for (int i = 0; i < count; i++) {
+            lngCopy[i] = lng(i);
+            latCopy[i] = lat(i);
+        }
+        return new Ring(lngCopy, latCopy);
+    }
+}
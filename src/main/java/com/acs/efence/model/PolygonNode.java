@@ -15,12 +15,17 @@ limitations under the License.
 */
 package com.acs.efence.model;
 
+import com.acs.efence.index.RingIndex;
+import com.acs.efence.index.SegmentIndex;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import lombok.experimental.Accessors;
 
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * 表示多边形节点的类，用于构建多边形的树状结构。
@@ -56,20 +61,85 @@ public class PolygonNode implements Serializable {
     String a_code;
 
     /**
-     * 节点所代表的多边形的字符串表示。
+     * 节点所代表的多边形环，顶点以基本类型数组紧凑存放。
      */
-    List<String> polygons;
+    List<Ring> rings;
 
     /**
-     * 节点所代表的多边形的具体坐标点列表。
+     * 节点的外包矩形，覆盖节点自身所有多边形及其全部子节点。
      */
-    List<List<Point>> polygonPoints;
+    BoundingBox bounds;
 
     /**
      * 存储子节点的映射，键为子节点的标识，值为子节点对象。
      */
     Map<String, PolygonNode> children;
 
+    /**
+     * 父节点，顶层节点和不在层级树中的节点为null。
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    PolygonNode parent;
+
+    /**
+     * 子节点多边形的空间索引，用于快速查找可能包含给定点的子节点。
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    RingIndex childIndex;
+
+    /**
+     * 节点自身多边形边界的线段索引，首次计算到边界的距离时构建。
+     */
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    transient SegmentIndex segmentIndex;
+
+    /**
+     * 节点所代表的多边形的字符串表示，每次调用都会创建新的列表。
+     * 启用了 {@link Ring#RETAIN_TEXT} 时，由字符串加载的多边形返回原始字符串；未启用、由坐标点或快照加载时，
+     * 数字按 {@link Double#toString(double)} 格式输出，可能与原始数据的书写形式不同，但解析后的数值完全相同。
+     *
+     * @return 多边形的字符串列表；未设置多边形环时返回null。
+     */
+    public List<String> getPolygons() {
+        if (rings == null) return null;
+        return rings.stream().map(Ring::toText).collect(Collectors.toList());
+    }
+
+    /**
+     * 使用"经度,纬度;经度,纬度"格式的多边形字符串设置节点的多边形环。
+     *
+     * @param polygons 多边形的字符串列表。
+     * @return 当前节点。
+     */
+    public PolygonNode setPolygons(List<String> polygons) {
+        this.rings = polygons == null ? null : polygons.stream().map(Ring::parse).collect(Collectors.toList());
+        return this;
+    }
+
+    /**
+     * 节点所代表的多边形的具体坐标点列表，由多边形环即时转换得到，每次调用都会创建新的列表。
+     *
+     * @return 多边形的坐标点列表；未设置多边形环时返回null。
+     */
+    public List<List<Point>> getPolygonPoints() {
+        if (rings == null) return null;
+        return rings.stream().map(Ring::toPoints).collect(Collectors.toList());
+    }
+
+    /**
+     * 使用坐标点列表设置节点的多边形环。
+     *
+     * @param polygonPoints 多边形的坐标点列表。
+     * @return 当前节点。
+     */
+    public PolygonNode setPolygonPoints(List<List<Point>> polygonPoints) {
+        this.rings = polygonPoints == null ? null : polygonPoints.stream().map(Ring::of).collect(Collectors.toList());
+        return this;
+    }
+
     /**
      * 检查当前节点是否具有子节点。
      *
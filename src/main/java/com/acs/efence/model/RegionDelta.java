@@ -0,0 +1,82 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按区域代码描述的一组区域数据变化，包括新增、替换和删除。
+ * 同一区域代码在一次变化中加入的全部多边形记录整体替换该区域原有的全部多边形，
+ * 与原始数据相同，区域的级别、上级代码等属性取自该代码的第一条记录。
+ */
+public class RegionDelta implements Serializable {
+
+    /**
+     * 每个发生变化的区域代码对应的新记录，值为null表示删除该区域。
+     */
+    private final Map<String, List<Polygon>> changes = new LinkedHashMap<>();
+
+    /**
+     * 新增或替换区域的一条多边形记录。同一区域代码可多次调用，每条记录为区域的一个多边形。
+     *
+     * @param record 多边形记录，字段含义与region_polygon.json中的记录相同。
+     * @return 当前对象。
+     * @throws RuntimeException 如果记录、区域代码或多边形为null，将抛出运行时异常。
+     */
+    public RegionDelta put(Polygon record) {
+        if (record == null || record.getCode() == null || record.getPolygon() == null) throw new RuntimeException("访问参数丢失");
+        List<Polygon> records = changes.get(record.getCode());
+        if (records == null) changes.put(record.getCode(), records = new ArrayList<>(1));
+        records.add(record);
+        return this;
+    }
+
+    /**
+     * 删除区域。与从原始数据中删除该区域的全部记录相同，该区域的子区域不再属于层级树，只能按区域代码访问。
+     *
+     * @param code 区域代码。
+     * @return 当前对象。
+     * @throws RuntimeException 如果区域代码为null，将抛出运行时异常。
+     */
+    public RegionDelta remove(String code) {
+        if (code == null) throw new RuntimeException("访问参数丢失");
+        changes.put(code, null);
+        return this;
+    }
+
+    /**
+     * 获取全部变化。
+     *
+     * @return 按加入顺序排列的区域代码与新记录的只读映射，值为null表示删除该区域。
+     */
+    public Map<String, List<Polygon>> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    /**
+     * 判断是否没有任何变化。
+     *
+     * @return 没有任何变化时返回true。
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+}
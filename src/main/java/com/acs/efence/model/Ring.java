@@ -0,0 +1,568 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多边形环的紧凑表示。
+ * <p>
+ * 顶点的经度和纬度分别存放在两个基本类型数组中，相比 {@code List<Point>} 省去了每个顶点的对象头和引用，
+ * 射线法判断时直接顺序访问数组，不产生任何对象分配。
+ */
+@Getter
+@EqualsAndHashCode
+public class Ring implements Serializable {
+
+    /**
+     * 浮点数比较的精度阈值。
+     */
+    protected static final double PRECISION = 2e-10;
+
+    /**
+     * 建立竖带边索引的最小顶点数，可通过系统属性 {@code acs.efence.preparedRingThreshold} 调整，
+     * 设置为0时所有环都建立索引，设置为 {@link Integer#MAX_VALUE} 时不建立索引。
+     */
+    public static final int PREPARED_THRESHOLD = Integer.getInteger("acs.efence.preparedRingThreshold", 256);
+
+    /**
+     * 是否将顶点量化为定点整数存放，可通过系统属性 {@code acs.efence.fixedPoint} 启用，见 {@link FixedRing}。
+     */
+    public static final boolean FIXED_POINT = Boolean.getBoolean("acs.efence.fixedPoint");
+
+    /**
+     * 建立简化轮廓的最小顶点数，可通过系统属性 {@code acs.efence.simplifyThreshold} 调整，设置为 {@link Integer#MAX_VALUE} 时不建立简化轮廓。
+     * 默认值64：合成数据单线程toCompare，均匀分布的坐标由约210ns降至约140ns；集中在边界附近的坐标大多落在窄带内，
+     * 简化轮廓的判断成为额外开销，约慢2%~6%。
+     */
+    public static final int SIMPLIFY_THRESHOLD = Integer.getInteger("acs.efence.simplifyThreshold", 64);
+
+    /**
+     * 简化轮廓的容差（度），可通过系统属性 {@code acs.efence.simplifyTolerance} 调整。
+     * 容差越大简化轮廓的顶点越少，但需要对原环执行射线法的窄带也越宽。
+     */
+    public static final double SIMPLIFY_TOLERANCE = Double.parseDouble(System.getProperty("acs.efence.simplifyTolerance", "0.002"));
+
+    /**
+     * 解析多边形字符串时是否保留原始字符串，保留时 {@link #toText()} 按原样返回，可通过系统属性 {@code acs.efence.retainPolygonText=true} 启用。
+     * 默认不保留，{@link #toText()} 按 {@link Double#toString(double)} 格式重新生成。保留的字符串常驻堆内存，
+     * 约为数据文件中坐标字符串的长度（JDK 9及以上每个字符1字节，JDK 8为2字节），通常是顶点数组本身的数倍。
+     */
+    public static final boolean RETAIN_TEXT = Boolean.getBoolean("acs.efence.retainPolygonText");
+
+    /**
+     * 可以精确表示为double的10的整数次幂。
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * 可以精确表示为double的最大整数尾数。
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    /**
+     * 顶点经度数组，顶点不在堆内存中时为null。
+     */
+    private final double[] lngs;
+
+    /**
+     * 顶点纬度数组，与经度数组一一对应，顶点不在堆内存中时为null。
+     */
+    private final double[] lats;
+
+    /**
+     * 环的外包矩形。
+     */
+    private final BoundingBox bounds;
+
+    /**
+     * 竖带边索引，顶点数少于 {@link #PREPARED_THRESHOLD} 且未建立简化轮廓时为null。
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private EdgeSlabs slabs;
+
+    /**
+     * 简化轮廓，顶点数少于 {@link #SIMPLIFY_THRESHOLD} 或简化效果不明显时为null。
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private RingEnvelope envelope;
+
+    /**
+     * 解析时的原始多边形字符串，未保留或不是由字符串解析得到时为null。
+     */
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private String text;
+
+    /**
+     * 使用顶点坐标数组创建多边形环。
+     *
+     * @param lngs 顶点经度数组。
+     * @param lats 顶点纬度数组，长度需与经度数组相同。
+     */
+    public Ring(double[] lngs, double[] lats) {
+        this.lngs = lngs;
+        this.lats = lats;
+        this.bounds = BoundingBox.of(lngs, lats);
+        prepare();
+    }
+
+    /**
+     * 供顶点存放在其他位置的子类使用，子类需重写顶点访问方法和 {@link #contains(double, double)}，
+     * 并在顶点可以访问后调用 {@link #prepare()}。
+     *
+     * @param bounds 环的外包矩形。
+     */
+    protected Ring(BoundingBox bounds) {
+        this.lngs = null;
+        this.lats = null;
+        this.bounds = bounds;
+    }
+
+    /**
+     * 使用顶点坐标数组创建多边形环，启用了 {@link #FIXED_POINT} 时顶点量化为定点整数存放，
+     * 坐标超出定点数范围时仍使用double存放。
+     *
+     * @param lngs 顶点经度数组。
+     * @param lats 顶点纬度数组，长度需与经度数组相同。
+     * @return 多边形环。
+     */
+    public static Ring of(double[] lngs, double[] lats) {
+        if (FIXED_POINT) {
+            Ring ring = FixedRing.quantize(lngs, lats);
+            if (ring != null) return ring;
+        }
+        return new Ring(lngs, lats);
+    }
+
+    /**
+     * 使用顶点列表创建多边形环。
+     *
+     * @param points 多边形的顶点列表。
+     * @return 多边形环。
+     */
+    public static Ring of(List<Point> points) {
+        double[] lngs = new double[points.size()];
+        double[] lats = new double[points.size()];
+        for (int i = 0; i < lngs.length; i++) {
+            lngs[i] = points.get(i).getLng();
+            lats[i] = points.get(i).getLat();
+        }
+        return of(lngs, lats);
+    }
+
+    /**
+     * 将"经度,纬度;经度,纬度"格式的多边形字符串解析为多边形环。
+     * 直接扫描字符解析数字，不创建中间字符串，解析结果与 {@link Double#parseDouble(String)} 完全相同。
+     *
+     * @param text 多边形字符串。
+     * @return 多边形环。
+     * @throws NumberFormatException 如果坐标格式不正确。
+     */
+    public static Ring parse(String text) {
+        int n = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == ';') n++;
+        }
+        // 与String.split一致，忽略末尾的空坐标
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) == ';') {
+            end--;
+            n--;
+        }
+        double[] lngs = new double[n];
+        double[] lats = new double[n];
+        int pos = 0;
+        for (int i = 0; i < n; i++) {
+            int comma = indexOf(text, ',', pos, end);
+            int semicolon = indexOf(text, ';', pos, end);
+            if (comma >= semicolon) throw new NumberFormatException("Missing latitude in: " + text.substring(pos, semicolon));
+            lngs[i] = parseNumber(text, pos, comma);
+            // 与原实现一致，同一坐标中第二个逗号之后的内容被忽略
+            lats[i] = parseNumber(text, comma + 1, Math.min(semicolon, indexOf(text, ',', comma + 1, semicolon)));
+            pos = semicolon + 1;
+        }
+        Ring ring = of(lngs, lats);
+        if (RETAIN_TEXT) ring.text = text;
+        return ring;
+    }
+
+    /**
+     * 顶点数量达到 {@link #PREPARED_THRESHOLD} 时建立竖带边索引，达到 {@link #SIMPLIFY_THRESHOLD} 时建立简化轮廓。
+     * 建立了简化轮廓的环同时建立竖带边索引，窄带内的点只遍历所在竖带的边，不会比不使用简化轮廓时遍历更多的边。
+     */
+    protected final void prepare() {
+        if (size() >= SIMPLIFY_THRESHOLD) envelope = RingEnvelope.of(this, SIMPLIFY_TOLERANCE);
+        if (size() >= PREPARED_THRESHOLD || envelope != null) slabs = new EdgeSlabs(this);
+    }
+
+    /**
+     * 是否已建立简化轮廓。
+     *
+     * @return 已建立简化轮廓返回true，远离边界的点不需要对整个环执行射线法。
+     */
+    public boolean isSimplified() {
+        return envelope != null;
+    }
+
+    /**
+     * 使用简化轮廓判断点与环的关系，未建立简化轮廓时返回 {@link RingEnvelope#BAND}。
+     *
+     * @param lng 待判断点的经度。
+     * @param lat 待判断点的纬度。
+     * @return 在环内返回 {@link RingEnvelope#INSIDE}，在环外返回 {@link RingEnvelope#OUTSIDE}，需要执行射线法时返回 {@link RingEnvelope#BAND}。
+     */
+    final int envelopeSide(double lng, double lat) {
+        return envelope == null ? RingEnvelope.BAND : envelope.side(lng, lat);
+    }
+
+    /**
+     * 竖带边索引，未建立时为null。
+     */
+    final EdgeSlabs slabs() {
+        return slabs;
+    }
+
+    /**
+     * 是否已建立竖带边索引。
+     *
+     * @return 已建立索引返回true，判断时只遍历查询点所在竖带的边。
+     */
+    public boolean isPrepared() {
+        return slabs != null;
+    }
+
+    /**
+     * 判断给定的点时射线法需要遍历的原环边数：简化轮廓已能判断时为0，未建立竖带边索引时为全部边，
+     * 否则为查询点所在竖带的边数。
+     *
+     * @param lng 待判断点的经度。
+     * @param lat 待判断点的纬度。
+     * @return 需要遍历的边数。
+     */
+    public int scannedEdges(double lng, double lat) {
+        if (envelopeSide(lng, lat) != RingEnvelope.BAND) return 0;
+        if (slabs == null) return size();
+        if (!slabs.covers(lng)) return 0;
+        int slab = slabs.slab(lng);
+        return slabs.end(slab) - slabs.start(slab);
+    }
+
+    /**
+     * 判断是否有边经过矩形（含矩形边界）。已建立竖带边索引时只检查与矩形经度范围相交的竖带中的边，
+     * 经度区间与矩形相交的边一定登记在这些竖带中，结果与检查全部边相同。
+     *
+     * @param minLng 矩形的最小经度。
+     * @param minLat 矩形的最小纬度。
+     * @param maxLng 矩形的最大经度。
+     * @param maxLat 矩形的最大纬度。
+     * @return 有边经过矩形返回true，否则返回false。
+     */
+    public boolean crosses(double minLng, double minLat, double maxLng, double maxLat) {
+        final int n = size();
+        final EdgeSlabs index = slabs;
+        if (index == null) {
+            for (int i = 0; i < n; i++) {
+                if (edgeCrosses(i, n, minLng, minLat, maxLng, maxLat)) return true;
+            }
+            return false;
+        }
+        // 一条边可能登记在多条竖带中，重复检查不影响结果
+        for (int slab = index.slab(minLng), last = index.slab(maxLng); slab <= last; slab++) {
+            for (int k = index.start(slab), end = index.end(slab); k < end; k++) {
+                if (edgeCrosses(index.edge(k), n, minLng, minLat, maxLng, maxLat)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 判断第i条边是否经过矩形：取边在矩形经度范围内的部分，比较其纬度范围与矩形的纬度范围。
+     */
+    private boolean edgeCrosses(int i, int n, double rx0, double ry0, double rx1, double ry1) {
+        int j = i + 1 == n ? 0 : i + 1;
+        double x0 = lng(i), y0 = lat(i), x1 = lng(j), y1 = lat(j);
+        if (x0 > x1) {
+            double t = x0; x0 = x1; x1 = t;
+            t = y0; y0 = y1; y1 = t;
+        }
+        if (x1 < rx0 || x0 > rx1) return false;
+        double a = Math.max(x0, rx0), b = Math.min(x1, rx1);
+        double ya = x1 == x0 ? y0 : y0 + (y1 - y0) * ((a - x0) / (x1 - x0));
+        double yb = x1 == x0 ? y1 : y0 + (y1 - y0) * ((b - x0) / (x1 - x0));
+        return Math.max(ya, yb) >= ry0 && Math.min(ya, yb) <= ry1;
+    }
+
+    /**
+     * 顶点数量。
+     *
+     * @return 环的顶点数量。
+     */
+    public int size() {
+        return lngs.length;
+    }
+
+    /**
+     * 获取顶点经度。
+     *
+     * @param i 顶点下标。
+     * @return 第i个顶点的经度。
+     */
+    public double lng(int i) {
+        return lngs[i];
+    }
+
+    /**
+     * 获取顶点纬度。
+     *
+     * @param i 顶点下标。
+     * @return 第i个顶点的纬度。
+     */
+    public double lat(int i) {
+        return lats[i];
+    }
+
+    /**
+     * 转换为顶点列表，每次调用都会创建新的列表。
+     *
+     * @return 多边形的顶点列表。
+     */
+    public List<Point> toPoints() {
+        int n = size();
+        List<Point> points = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) points.add(new Point(lng(i), lat(i)));
+        return points;
+    }
+
+    /**
+     * 转换为"经度,纬度;经度,纬度"格式的多边形字符串。由字符串解析得到且保留了原始字符串时按原样返回，
+     * 否则按 {@link Double#toString(double)} 格式生成新的字符串，数字的书写形式可能与原始数据不同，但解析后的数值完全相同。
+     *
+     * @return 多边形字符串。
+     */
+    public String toText() {
+        if (text != null) return text;
+        int n = size();
+        StringBuilder builder = new StringBuilder(n * 24);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) builder.append(';');
+            builder.append(lng(i)).append(',').append(lat(i));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 判断一个点是否在多边形环内。
+     * 使用射线穿过法来判断，从点向任意方向引一条射线，统计射线与多边形边界的交点数。
+     * 如果交点数为奇数，则点在多边形内部；如果交点数为偶数，则点在多边形外部。
+     * 位于边界上或与顶点重合的点视为在多边形内。
+     * 已建立简化轮廓时，远离边界的点直接由简化轮廓判断，结果与射线法相同。
+     *
+     * @param lng 待判断点的经度。
+     * @param lat 待判断点的纬度。
+     * @return 如果点在多边形内部返回true，否则返回false。
+     */
+    public boolean contains(double lng, double lat) {
+        int side = envelopeSide(lng, lat);
+        if (side != RingEnvelope.BAND) return side == RingEnvelope.INSIDE;
+        if (slabs != null) return containsPrepared(lng, lat);
+        final double[] xs = lngs, ys = lats;
+        /* 多边形的顶点数量 */
+        final int n = xs.length;
+        /* 交点计数器 */
+        int intersectCount = 0;
+
+        /* 从第一个顶点开始 */
+        double x1 = xs[0], y1 = ys[0];
+        for (int i = 1; i <= n; ++i) {
+            /* 如果当前点与p1重合，则点在顶点上 */
+            if (lng == x1 && lat == y1 && Double.compare(lng, x1) == 0 && Double.compare(lat, y1) == 0) {
+                return true;
+            }
+
+            /* 获取下一个顶点 */
+            int j = i == n ? 0 : i;
+            double x2 = xs[j], y2 = ys[j];
+            /* 如果当前点在p1和p2的垂直投影之外，则跳过当前边，考虑下一条边 */
+            if (lng < Math.min(x1, x2) || lng > Math.max(x1, x2)) {
+                x1 = x2;
+                y1 = y2;
+                continue;
+            }
+
+            /* 射线与边的相交判断 */
+            if (lng > Math.min(x1, x2) && lng < Math.max(x1, x2)) {
+                if (lat <= Math.max(y1, y2)) {
+                    /* 如果p1和p2的经度相同，且当前点在它们的纬度范围内，则当前点在边界上 */
+                    if (x1 == x2 && lat >= Math.min(y1, y2)) {
+                        return true;
+                    }
+
+                    /* 如果p1和p2的纬度相同，且当前点在它们的经度范围内，则交点数加一 */
+                    if (y1 == y2) {
+                        if (y1 == lat) {
+                            return true;
+                        } else {
+                            ++intersectCount;
+                        }
+                    } else {
+                        /* 计算交点的纬度 */
+                        double xinters = (lng - x1) * (y2 - y1) / (x2 - x1) + y1;
+                        /* 如果当前点的纬度与交点的纬度相差小于精度，则当前点在边界上 */
+                        if (Math.abs(lat - xinters) < PRECISION) {
+                            return true;
+                        }
+                        /* 如果当前点的纬度小于交点的纬度，则交点数加一 */
+                        if (lat < xinters) {
+                            ++intersectCount;
+                        }
+                    }
+                }
+            } else {
+                /* 射线经过p2顶点时，根据相邻两条边是否位于射线两侧决定交点数 */
+                if (lng == x2 && lat <= y2) {
+                    double x3 = xs[(i + 1) % n];
+                    if (lng >= Math.min(x1, x3) && lng <= Math.max(x1, x3)) {
+                        ++intersectCount;
+                    } else {
+                        intersectCount += 2;
+                    }
+                }
+            }
+            /* 更新当前边 */
+            x1 = x2;
+            y1 = y2;
+        }
+        /* 如果交点数为奇数，则点在多边形内部；否则在外部 */
+        return intersectCount % 2 != 0;
+    }
+
+    /**
+     * 使用竖带边索引判断一个点是否在多边形环内，判断规则与 {@link #contains(double, double)} 完全相同。
+     * <p>
+     * 射线法中经度区间不包含查询点经度的边会被直接跳过，其余每条边的处理只依赖该边及其后一个顶点，
+     * 并且任何一条边命中边界都直接返回true，因此只遍历查询点所在竖带的边、按任意顺序处理，结果都与遍历整个环相同。
+     * 与查询点重合的顶点必然是某条竖带内的边的起点，同样会被检查到。
+     *
+     * @param lng 待判断点的经度。
+     * @param lat 待判断点的纬度。
+     * @return 如果点在多边形内部返回true，否则返回false。
+     */
+    protected final boolean containsPrepared(double lng, double lat) {
+        final EdgeSlabs index = slabs;
+        if (!index.covers(lng)) return false;
+        final int n = size();
+        final int slab = index.slab(lng);
+        int intersectCount = 0;
+        for (int k = index.start(slab), end = index.end(slab); k < end; k++) {
+            int i = index.edge(k);
+            int j = i + 1 == n ? 0 : i + 1;
+            double x1 = lng(i), y1 = lat(i), x2 = lng(j), y2 = lat(j);
+            /* 当前点与p1重合 */
+            if (lng == x1 && lat == y1 && Double.compare(lng, x1) == 0 && Double.compare(lat, y1) == 0) {
+                return true;
+            }
+            /* 当前点在p1和p2的垂直投影之外 */
+            if (lng < Math.min(x1, x2) || lng > Math.max(x1, x2)) continue;
+
+            if (lng > Math.min(x1, x2) && lng < Math.max(x1, x2)) {
+                if (lat <= Math.max(y1, y2)) {
+                    if (x1 == x2 && lat >= Math.min(y1, y2)) {
+                        return true;
+                    }
+                    if (y1 == y2) {
+                        if (y1 == lat) {
+                            return true;
+                        } else {
+                            ++intersectCount;
+                        }
+                    } else {
+                        double xinters = (lng - x1) * (y2 - y1) / (x2 - x1) + y1;
+                        if (Math.abs(lat - xinters) < PRECISION) {
+                            return true;
+                        }
+                        if (lat < xinters) {
+                            ++intersectCount;
+                        }
+                    }
+                }
+            } else {
+                /* 射线经过p2顶点 */
+                if (lng == x2 && lat <= y2) {
+                    double x3 = lng(j + 1 == n ? 0 : j + 1);
+                    if (lng >= Math.min(x1, x3) && lng <= Math.max(x1, x3)) {
+                        ++intersectCount;
+                    } else {
+                        intersectCount += 2;
+                    }
+                }
+            }
+        }
+        return intersectCount % 2 != 0;
+    }
+
+    private static int indexOf(String text, char c, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return end;
+    }
+
+    /**
+     * 解析text[from, to)中的十进制数字。
+     * 尾数不超过2^53且小数位数不超过22位时，尾数和10的幂都能精确表示为double，一次除法即可得到正确舍入的结果；
+     * 其余情况（指数、空白、过长的数字等）交给 {@link Double#parseDouble(String)} 处理。
+     */
+    private static double parseNumber(String text, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            negative = text.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0, scale = -1;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (scale >= 0) scale++;
+                if (mantissa > MAX_EXACT_MANTISSA) break;
+            } else if (c == '.' && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+        }
+        if (i < to || digits == 0 || scale > 22) {
+            return Double.parseDouble(text.substring(from, to));
+        }
+        double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 多边形环的简化轮廓，用于在射线法之前快速判断远离边界的点。
+ * <p>
+ * 使用Douglas-Peucker算法按容差ε简化环，原环的每个顶点到所在简化边（线段）的距离都不超过ε，
+ * 原环的边也就都在简化轮廓的ε范围之内。把原环的每一段沿投影连续地移动到对应的简化边上，
+ * 移动过程中环上的点始终在简化轮廓的ε范围内，因此与简化轮廓的距离大于ε的点，在原环内外的判断与在简化轮廓内外的判断相同。
+ * 距离简化轮廓大于ε加 {@link #MARGIN} 的点，内侧直接判定在环内（内缩多边形），外侧直接判定在环外（外扩包络），
+ * 只有两者之间的窄带才需要对原环执行射线法。
+ * <p>
+ * 判断结果与原环的射线法完全相同：窄带之外的点与原环的距离大于 {@link #MARGIN}，远超射线法的精度阈值和定点数的量化误差；
+ * 射线法在查询点经度恰好等于竖直边（含重复顶点）的经度时计数方式特殊，这些经度也交给原环判断。
+ */
+final class RingEnvelope implements Serializable {
+
+    /**
+     * 窄带在容差之外额外保留的宽度（度）。
+     */
+    static final double MARGIN = 1e-6;
+
+    /**
+     * 点在简化轮廓的内缩多边形内，即在原环内。
+     */
+    static final int INSIDE = 1;
+
+    /**
+     * 点在简化轮廓的外扩包络外，即在原环外。
+     */
+    static final int OUTSIDE = 0;
+
+    /**
+     * 点在窄带内，需要对原环执行射线法。
+     */
+    static final int BAND = -1;
+
+    /**
+     * 简化轮廓的顶点经度。
+     */
+    private final double[] lngs;
+
+    /**
+     * 简化轮廓的顶点纬度。
+     */
+    private final double[] lats;
+
+    /**
+     * 窄带宽度，即容差加 {@link #MARGIN}。
+     */
+    private final double band;
+
+    /**
+     * 窄带宽度的平方。
+     */
+    private final double band2;
+
+    /**
+     * 简化轮廓的竖带边索引，边的经度区间外扩了窄带宽度，可能离查询点过近的边都在查询点所在的竖带中。
+     */
+    private final EdgeSlabs slabs;
+
+    /**
+     * 原环中竖直边的经度，升序排列。
+     */
+    private final double[] verticals;
+
+    private RingEnvelope(double[] lngs, double[] lats, double band, double[] verticals) {
+        this.lngs = lngs;
+        this.lats = lats;
+        this.band = band;
+        this.band2 = band * band;
+        this.slabs = new EdgeSlabs(lngs.length, i -> this.lngs[i], band);
+        this.verticals = verticals;
+    }
+
+    /**
+     * 按容差简化多边形环。
+     *
+     * @param ring 多边形环。
+     * @param tolerance 简化容差ε（度）。
+     * @return 简化轮廓；顶点数未能减少一半以上或坐标不是有限值时返回null。
+     */
+    static RingEnvelope of(Ring ring, double tolerance) {
+        final int n = ring.size();
+        if (n < 4 || !(tolerance > 0)) return null;
+        double x0 = ring.lng(0), y0 = ring.lat(0);
+        // 以第一个顶点和距它最远的顶点为端点，把环分为两条折线分别简化
+        int far = 0;
+        double farthest = -1;
+        for (int i = 0; i < n; i++) {
+            double x = ring.lng(i), y = ring.lat(i);
+            if (!Double.isFinite(x) || !Double.isFinite(y)) return null;
+            double d = (x - x0) * (x - x0) + (y - y0) * (y - y0);
+            if (d > farthest) {
+                farthest = d;
+                far = i;
+            }
+        }
+        if (far == 0) return null;
+        boolean[] keep = new boolean[n];
+        keep[0] = keep[far] = true;
+        double tolerance2 = tolerance * tolerance;
+        // 下标n表示第一个顶点，栈中每对下标为一段待简化的折线
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = far;
+        stack[top++] = far;
+        stack[top++] = n;
+        while (top > 0) {
+            int to = stack[--top], from = stack[--top];
+            double ax = ring.lng(from), ay = ring.lat(from);
+            double bx = ring.lng(to % n), by = ring.lat(to % n);
+            int split = -1;
+            double max = tolerance2;
+            for (int k = from + 1; k < to; k++) {
+                double d = distance2(ring.lng(k), ring.lat(k), ax, ay, bx, by);
+                if (d > max) {
+                    max = d;
+                    split = k;
+                }
+            }
+            if (split < 0) continue;
+            keep[split] = true;
+            if (top + 4 > stack.length) stack = Arrays.copyOf(stack, stack.length * 2);
+            stack[top++] = from;
+            stack[top++] = split;
+            stack[top++] = split;
+            stack[top++] = to;
+        }
+        int m = 0;
+        for (boolean k : keep) if (k) m++;
+        if (m * 2 > n) return null;
+        double[] lngs = new double[m], lats = new double[m];
+        for (int i = 0, j = 0; i < n; i++) {
+            if (!keep[i]) continue;
+            lngs[j] = ring.lng(i);
+            lats[j++] = ring.lat(i);
+        }
+        double[] verticals = new double[n];
+        int v = 0;
+        for (int i = 0; i < n; i++) {
+            double x = ring.lng(i);
+            if (x == ring.lng(i + 1 == n ? 0 : i + 1)) verticals[v++] = x;
+        }
+        verticals = Arrays.stream(verticals, 0, v).sorted().distinct().toArray();
+        return new RingEnvelope(lngs, lats, tolerance + MARGIN, verticals);
+    }
+
+    /**
+     * 简化轮廓的顶点数量。
+     *
+     * @return 顶点数量。
+     */
+    int size() {
+        return lngs.length;
+    }
+
+    /**
+     * 判断点与简化轮廓的关系。只遍历查询点所在竖带的简化边，同时统计射线交点和检查距离，任何一条边过近时立即返回。
+     * 大部分边只需与查询点比较坐标范围，只有外包矩形外扩窄带宽度后包含查询点的边才计算距离。
+     *
+     * @param lng 待判断点的经度。
+     * @param lat 待判断点的纬度。
+     * @return {@link #INSIDE}、{@link #OUTSIDE} 或 {@link #BAND}。
+     */
+    int side(double lng, double lat) {
+        if (!Double.isFinite(lng) || !Double.isFinite(lat)) return BAND;
+        if (verticals.length > 0 && Arrays.binarySearch(verticals, lng) >= 0) return BAND;
+        final EdgeSlabs index = slabs;
+        if (!index.covers(lng)) return OUTSIDE;
+        final double[] xs = lngs, ys = lats;
+        final int n = xs.length;
+        final int slab = index.slab(lng);
+        final double width = band;
+        boolean inside = false;
+        for (int k = index.start(slab), end = index.end(slab); k < end; k++) {
+            int i = index.edge(k);
+            int j = i + 1 == n ? 0 : i + 1;
+            double x1 = xs[i], y1 = ys[i], x2 = xs[j], y2 = ys[j];
+            /* 边的经度区间左闭右开 */
+            boolean straddles = (x1 > lng) != (x2 > lng);
+            /* 查询点在边的下方且距离超过窄带宽度，射线与边相交时交点一定在查询点上方 */
+            if (lat < Math.min(y1, y2) - width) {
+                if (straddles) inside = !inside;
+                continue;
+            }
+            /* 查询点在边的上方或两侧且距离超过窄带宽度，射线不会与边相交 */
+            if (lat > Math.max(y1, y2) + width || lng < Math.min(x1, x2) - width || lng > Math.max(x1, x2) + width) {
+                continue;
+            }
+            if (distance2(lng, lat, x1, y1, x2, y2) < band2) return BAND;
+            /* 交点在查询点上方时计数，与边的距离已超过窄带宽度，交点不会与查询点重合 */
+            if (straddles && ((lat - y1) * (x2 - x1) < (lng - x1) * (y2 - y1)) == (x2 > x1)) inside = !inside;
+        }
+        return inside ? INSIDE : OUTSIDE;
+    }
+
+    /**
+     * 点到线段距离的平方。
+     */
+    private static double distance2(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax, dy = by - ay, length2 = dx * dx + dy * dy;
+        double t = length2 > 0 ? ((px - ax) * dx + (py - ay) * dy) / length2 : 0;
+        t = Math.max(0, Math.min(1, t));
+        double ex = px - ax - t * dx, ey = py - ay - t * dy;
+        return ex * ex + ey * ey;
+    }
+}
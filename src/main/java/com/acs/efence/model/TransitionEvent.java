@@ -0,0 +1,60 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * 轨迹区域变化事件，表示一个设备的轨迹进入或离开了某个区域。
+ * 从区县A移动到同一城市的区县B时依次产生"离开A"和"进入B"两个事件，城市和省份没有变化则不产生事件。
+ */
+@Data
+@Accessors(chain = true)
+public class TransitionEvent implements Serializable {
+
+    /**
+     * 变化类型。
+     */
+    TransitionType type;
+
+    /**
+     * 进入或离开的区域代码。
+     */
+    String code;
+
+    /**
+     * 进入或离开的区域级别。
+     */
+    Integer level;
+
+    /**
+     * 触发变化的轨迹点经度。
+     */
+    double lng;
+
+    /**
+     * 触发变化的轨迹点纬度。
+     */
+    double lat;
+
+    /**
+     * 触发变化的轨迹点时间戳，由调用方定义单位。
+     */
+    long timestamp;
+}
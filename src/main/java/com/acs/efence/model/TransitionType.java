@@ -0,0 +1,33 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+/**
+ * 轨迹区域变化类型枚举。
+ */
+public enum TransitionType {
+
+    /**
+     * 进入区域，轨迹点从区域外移动到区域内。
+     */
+    ENTER,
+
+    /**
+     * 离开区域，轨迹点从区域内移动到区域外。
+     */
+    EXIT
+
+}
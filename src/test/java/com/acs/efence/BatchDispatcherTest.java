@@ -0,0 +1,101 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.model.CompareResult;
+import com.acs.efence.model.MatchResult;
+import com.acs.efence.model.Point;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link BatchDispatcher} 异步结果与同步查询的一致性测试。
+ */
+class BatchDispatcherTest {
+
+    @TempDir
+    static Path dir;
+
+    private static ElectronicJsonAPI api;
+
+    @BeforeAll
+    static void load() {
+        api = new ElectronicJsonAPI(TestRegions.write(new TestRegions(7L).records(), dir.resolve("regions.json")));
+    }
+
+    @Test
+    void asyncResultsEqualSyncResults() throws Exception {
+        List<Point> points = TestRegions.randomPoints(new Random(13), 4000);
+        List<String> codes = new ArrayList<>(points.size());
+        Random random = new Random(17);
+        for (int k = 0; k < points.size(); k++) {
+            codes.add(TestRegions.areaCode(random.nextInt(TestRegions.AREA_COUNT), random.nextInt(TestRegions.AREA_COUNT)));
+        }
+        try (BatchDispatcher dispatcher = new BatchDispatcher(api, 2, 64, BatchDispatcher.DEFAULT_CAPACITY)) {
+            List<CompletableFuture<MatchResult>> matches = new ArrayList<>(points.size());
+            List<CompletableFuture<CompareResult>> compares = new ArrayList<>(points.size());
+            for (int k = 0; k < points.size(); k++) {
+                matches.add(dispatcher.match(points.get(k)));
+                compares.add(dispatcher.compare(codes.get(k), points.get(k)));
+            }
+            for (int k = 0; k < points.size(); k++) {
+                Point point = points.get(k);
+                assertEquals(api.toMatch(point), matches.get(k).get(10, TimeUnit.SECONDS));
+                assertEquals(api.toCompare(codes.get(k), point).getVerified(),
+                        compares.get(k).get(10, TimeUnit.SECONDS).getVerified());
+            }
+        }
+    }
+
+    @Test
+    void resubmitFromCallbackCompletes() throws Exception {
+        List<Point> points = TestRegions.randomPoints(new Random(19), 32);
+        // 队列只能容纳一个请求，回调在分派线程中再次提交时不能等待自己
+        try (BatchDispatcher dispatcher = new BatchDispatcher(api, 1, 1, 0, 1, true)) {
+            CompletableFuture<List<MatchResult>> chained = dispatcher.match(points.get(0)).thenCompose(first -> {
+                List<CompletableFuture<MatchResult>> next = new ArrayList<>();
+                for (Point point : points) next.add(dispatcher.match(point));
+                return CompletableFuture.allOf(next.toArray(new CompletableFuture[0])).thenApply(done -> {
+                    List<MatchResult> results = new ArrayList<>();
+                    next.forEach(future -> results.add(future.join()));
+                    return results;
+                });
+            });
+            List<MatchResult> results = chained.get(10, TimeUnit.SECONDS);
+            for (int k = 0; k < points.size(); k++) assertEquals(api.toMatch(points.get(k)), results.get(k));
+        }
+    }
+
+    @Test
+    void closedDispatcherRejects() {
+        BatchDispatcher dispatcher = new BatchDispatcher(api, 1, 16, 64);
+        dispatcher.close();
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.match(new Point(111.0, 31.0)));
+        assertThrows(RejectedExecutionException.class, () -> dispatcher.compare("110101", new Point(111.0, 31.0)));
+    }
+}
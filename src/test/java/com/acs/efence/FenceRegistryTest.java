@@ -0,0 +1,104 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.model.Point;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link FenceRegistry} 注册、注销和查询的测试，结果与逐个判断矩形围栏的结果比较。
+ */
+class FenceRegistryTest {
+
+    @Test
+    void matchesOverlappingFences() {
+        FenceRegistry registry = new FenceRegistry();
+        registry.register("store", Collections.singletonList(box(116.40, 39.90, 116.41, 39.91)));
+        registry.register("mall", Collections.singletonList(box(116.405, 39.905, 116.42, 39.92)));
+        // 覆盖的桶数超过上限，放入上层网格
+        registry.register("city", Collections.singletonList(box(115.0, 39.0, 118.0, 41.0)));
+        // 多个多边形组成的围栏，任一多边形包含该点即命中
+        registry.register("parks", Arrays.asList(box(116.30, 39.80, 116.31, 39.81), box(116.50, 39.95, 116.51, 39.96)));
+
+        assertEquals(4, registry.size());
+        assertEquals(Arrays.asList("city", "mall", "store"), registry.toMatch(new Point(116.407, 39.907)));
+        assertEquals(Arrays.asList("city", "parks"), registry.toMatch(new Point(116.505, 39.955)));
+        assertEquals(Collections.emptyList(), registry.toMatch(new Point(100.0, 30.0)));
+
+        assertTrue(registry.toCompare("store", new Point(116.401, 39.901)).getVerified());
+        assertFalse(registry.toCompare("store", new Point(116.415, 39.915)).getVerified());
+        assertFalse(registry.toCompare("unknown", new Point(116.401, 39.901)).getVerified());
+    }
+
+    @Test
+    void unregisterAndReplace() {
+        FenceRegistry registry = new FenceRegistry();
+        registry.register("a", Collections.singletonList(box(10.0, 10.0, 10.01, 10.01)));
+        registry.register("b", Collections.singletonList(box(10.0, 10.0, 10.02, 10.02)));
+        Point point = new Point(10.005, 10.005);
+        assertEquals(Arrays.asList("a", "b"), registry.toMatch(point));
+
+        assertTrue(registry.unregister("a"));
+        assertFalse(registry.unregister("a"));
+        assertEquals(Collections.singletonList("b"), registry.toMatch(point));
+
+        // 同一代码再次注册时替换原有围栏
+        registry.register("b", Collections.singletonList(box(20.0, 20.0, 20.01, 20.01)));
+        assertEquals(1, registry.size());
+        assertEquals(Collections.emptyList(), registry.toMatch(point));
+        assertEquals(Collections.singletonList("b"), registry.toMatch(new Point(20.005, 20.005)));
+    }
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(23);
+        FenceRegistry registry = new FenceRegistry();
+        List<double[]> boxes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            boolean large = i % 100 == 0;
+            double lng = 100 + random.nextDouble() * 2, lat = 30 + random.nextDouble() * 2;
+            double width = large ? random.nextDouble() * 3 : random.nextDouble() * 0.05;
+            double height = large ? random.nextDouble() * 3 : random.nextDouble() * 0.05;
+            boxes.add(new double[]{lng, lat, lng + width, lat + height});
+            registry.register("f" + i, Collections.singletonList(box(lng, lat, lng + width, lat + height)));
+        }
+        for (int i = 0; i < boxes.size(); i += 3) registry.unregister("f" + i);
+        for (int q = 0; q < 5000; q++) {
+            double lng = 99.5 + random.nextDouble() * 4, lat = 29.5 + random.nextDouble() * 4;
+            TreeSet<String> expected = new TreeSet<>();
+            for (int i = 0; i < boxes.size(); i++) {
+                double[] b = boxes.get(i);
+                if (i % 3 != 0 && lng > b[0] && lng < b[2] && lat > b[1] && lat < b[3]) expected.add("f" + i);
+            }
+            assertEquals(expected, new TreeSet<>(registry.toMatch(new Point(lng, lat))));
+        }
+    }
+
+    private static String box(double minLng, double minLat, double maxLng, double maxLat) {
+        return minLng + "," + minLat + ";" + minLng + "," + maxLat + ";" + maxLng + "," + maxLat + ";" + maxLng + "," + minLat;
+    }
+}
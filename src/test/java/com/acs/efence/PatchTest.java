@@ -0,0 +1,123 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.model.Point;
+import com.acs.efence.model.Polygon;
+import com.acs.efence.model.RegionDelta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ElectronicJsonAPI#patch(RegionDelta)} 与使用修改后的完整数据重新加载的一致性测试。
+ */
+class PatchTest {
+
+    @TempDir
+    Path dir;
+
+    /**
+     * 区县110101缩小为一个格点单元，区县110104被删除，新增的区县110105占据110104原来的范围。
+     * 省份120000的边界改为只覆盖其下半部分，其上半部分的城市和区县不变。
+     */
+    @Test
+    void patchEqualsRebuild() {
+        TestRegions regions = new TestRegions(2L);
+        List<Polygon> records = regions.records();
+        ElectronicJsonAPI base = new ElectronicJsonAPI(TestRegions.write(records, dir.resolve("before.json")));
+
+        int[] shrunk = regions.block("110101"), removed = regions.block("110104"), province = regions.block("120000");
+        Polygon shrunkRecord = copy(find(records, "110101")).setPolygon(regions.outline(shrunk[0], shrunk[1], 1));
+        Polygon addedRecord = copy(find(records, "110104")).setCode("110105").setA_code("110105");
+        Polygon provinceRecord = copy(find(records, "120000"))
+                .setPolygon(regions.outline(province[0], province[1], province[2] / 2));
+        RegionDelta delta = new RegionDelta()
+                .put(shrunkRecord)
+                .remove("110104")
+                .put(addedRecord)
+                .put(provinceRecord);
+        ElectronicJsonAPI patched = base.patch(delta);
+
+        List<Polygon> modified = new ArrayList<>();
+        for (Polygon record : records) {
+            if (record.getCode().equals("110104")) continue;
+            if (record.getCode().equals("110101")) modified.add(shrunkRecord);
+            else if (record.getCode().equals("120000")) modified.add(provinceRecord);
+            else modified.add(record);
+        }
+        modified.add(addedRecord);
+        ElectronicJsonAPI rebuilt = new ElectronicJsonAPI(TestRegions.write(modified, dir.resolve("after.json")));
+
+        assertNotNull(patched.POLYGON_GRID);
+        List<Point> points = new ArrayList<>(TestRegions.randomPoints(new Random(5), 5000));
+        points.addAll(regions.latticePoints());
+        List<String> codes = Arrays.asList("110000", "110100", "110101", "110102", "110104", "110105", "120000", "120100", "120400");
+        for (Point point : points) {
+            assertEquals(rebuilt.toMatch(point), patched.toMatch(point), () -> "toMatch " + point);
+            for (String code : codes) {
+                assertEquals(rebuilt.toCompare(code, point).getVerified(), patched.toCompare(code, point).getVerified(),
+                        () -> "toCompare " + code + " " + point);
+            }
+        }
+
+        // 原数据不受影响
+        Point center = regions.center(removed[0] / TestRegions.CELLS, removed[1] / TestRegions.CELLS);
+        assertEquals("110104", base.toMatch(center).getAreaCode());
+        assertEquals("110105", patched.toMatch(center).getAreaCode());
+        assertTrue(base.toCompare("110104", center).getVerified());
+        assertFalse(patched.toCompare("110104", center).getVerified());
+    }
+
+    @Test
+    void malformedDeltaLeavesDataUnchanged() {
+        TestRegions regions = new TestRegions(3L);
+        List<Polygon> records = regions.records();
+        ElectronicJsonAPI base = new ElectronicJsonAPI(TestRegions.write(records, dir.resolve("regions.json")));
+        RegionDelta delta = new RegionDelta()
+                .remove("110101")
+                .put(copy(find(records, "110102")).setPolygon("not a polygon"));
+        assertThrows(RuntimeException.class, () -> base.patch(delta));
+        Point center = regions.center(0, 0);
+        assertEquals("110101", base.toMatch(center).getAreaCode());
+    }
+
+    private static Polygon find(List<Polygon> records, String code) {
+        return records.stream().filter(record -> record.getCode().equals(code)).findFirst().orElseThrow(IllegalStateException::new);
+    }
+
+    private static Polygon copy(Polygon record) {
+        return new Polygon()
+                .setCode(record.getCode())
+                .setParent_code(record.getParent_code())
+                .setP_code(record.getP_code())
+                .setC_code(record.getC_code())
+                .setA_code(record.getA_code())
+                .setLevel(record.getLevel())
+                .setPolygon(record.getPolygon());
+    }
+}
@@ -0,0 +1,110 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.model.Point;
+import com.acs.efence.model.Polygon;
+import com.acs.efence.model.RegionDelta;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link ReloadableAPI} 重新加载和增量更新时替换数据集的测试。
+ */
+class ReloadableAPITest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reloadSwapsDataset() {
+        TestRegions regions = new TestRegions(5L);
+        List<Polygon> records = regions.records();
+        String before = TestRegions.write(records, dir.resolve("before.json"));
+        String after = TestRegions.write(records.stream().filter(record -> !record.getCode().equals("110101"))
+                .collect(Collectors.toList()), dir.resolve("after.json"));
+        AtomicReference<String> path = new AtomicReference<>(before);
+        Point center = regions.center(0, 0);
+        try (ReloadableAPI api = new ReloadableAPI(() -> new ElectronicJsonAPI(path.get()))) {
+            AcsEFInterface first = api.current();
+            assertEquals("110101", api.toMatch(center).getAreaCode());
+
+            path.set(after);
+            AcsEFInterface second = api.reload();
+            assertSame(second, api.current());
+            assertFalse(api.toCompare("110101", center).getVerified());
+            assertEquals("110100", api.toMatch(center).getCityCode());
+            // 替换前取得的数据集不受影响
+            assertTrue(first.toCompare("110101", center).getVerified());
+        }
+    }
+
+    @Test
+    void failedReloadKeepsDataset() {
+        TestRegions regions = new TestRegions(5L);
+        String file = TestRegions.write(regions.records(), dir.resolve("regions.json"));
+        AtomicReference<String> path = new AtomicReference<>(file);
+        try (ReloadableAPI api = new ReloadableAPI(() -> path.get() == null ? null : new ElectronicJsonAPI(path.get()))) {
+            AcsEFInterface current = api.current();
+            path.set(null);
+            RuntimeException e = assertThrows(RuntimeException.class, api::reload);
+            assertSame(e, api.getLastFailure());
+            assertSame(current, api.current());
+
+            path.set(file);
+            api.reload();
+            assertNull(api.getLastFailure());
+        }
+    }
+
+    @Test
+    void applyPublishesPatchedDataset() {
+        TestRegions regions = new TestRegions(6L);
+        List<Polygon> records = regions.records();
+        String file = TestRegions.write(records, dir.resolve("regions.json"));
+        Point center = regions.center(0, 0);
+        try (ReloadableAPI api = new ReloadableAPI(() -> new ElectronicJsonAPI(file))) {
+            AcsEFInterface before = api.current();
+            AcsEFInterface after = api.apply(new RegionDelta().remove("110101"));
+            assertSame(after, api.current());
+            assertFalse(api.toCompare("110101", center).getVerified());
+            assertTrue(before.toCompare("110101", center).getVerified());
+
+            // 无法应用的变化不替换数据集
+            Polygon malformed = new Polygon().setCode("110101").setParent_code("110100").setP_code("110000")
+                    .setC_code("110100").setA_code("110101").setLevel(3).setPolygon("not a polygon");
+            RuntimeException e = assertThrows(RuntimeException.class, () -> api.apply(new RegionDelta().put(malformed)));
+            assertSame(e, api.getLastFailure());
+            assertSame(after, api.current());
+
+            // 完整重新加载以数据文件为准
+            api.reload();
+            assertTrue(api.toCompare("110101", center).getVerified());
+        }
+    }
+}
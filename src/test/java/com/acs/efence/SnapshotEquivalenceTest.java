@@ -0,0 +1,151 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.model.MatchResult;
+import com.acs.efence.model.Point;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 快照文件、内存映射和Java序列化三种加载方式与JSON加载的一致性测试，以及快照文件损坏时的校验。
+ * <p>
+ * 检查的点包括随机点和全部格点，格点位于区域的共享边界上，各种加载方式在边界上的判断也必须与JSON加载相同。
+ */
+class SnapshotEquivalenceTest {
+
+    @TempDir
+    static Path dir;
+
+    private static ElectronicJsonAPI json;
+
+    private static String snapshot;
+
+    private static List<Point> points;
+
+    @BeforeAll
+    static void load() {
+        TestRegions regions = new TestRegions(1L);
+        json = new ElectronicJsonAPI(TestRegions.write(regions.records(), dir.resolve("regions.json")));
+        snapshot = dir.resolve("regions.snapshot").toString();
+        PolygonStore.write(json, snapshot);
+        points = new ArrayList<>(TestRegions.randomPoints(new Random(11), 5000));
+        points.addAll(regions.latticePoints());
+    }
+
+    @Test
+    void snapshotMatchesJson() {
+        assertSameResults(json, new ElectronicSnapshotAPI(snapshot));
+    }
+
+    @Test
+    void mappedMatchesJson() {
+        ElectronicMappedAPI mapped = new ElectronicMappedAPI(snapshot);
+        assertSameResults(json, mapped);
+        // 再次查询时多边形环已完成准备，结果仍然相同
+        assertSameResults(json, mapped);
+    }
+
+    @Test
+    void deserializedMatchesJson() throws IOException, ClassNotFoundException {
+        Object restored = deserialize(serialize(json));
+        assertInstanceOf(ElectronicSnapshotAPI.class, restored);
+        assertSameResults(json, (AcsEFInterface) restored);
+    }
+
+    @Test
+    void corruptedBodyIsRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(dir.resolve("regions.snapshot"));
+        bytes[bytes.length - 9] ^= 1;
+        Path corrupted = dir.resolve("body.snapshot");
+        Files.write(corrupted, bytes);
+        RuntimeException e = assertThrows(RuntimeException.class, () -> new ElectronicSnapshotAPI(corrupted.toString()));
+        assertTrue(e.getMessage().startsWith("Polygon snapshot checksum mismatch"), e.getMessage());
+    }
+
+    @Test
+    void corruptedHeaderIsRejected() throws IOException {
+        byte[] bytes = Files.readAllBytes(dir.resolve("regions.snapshot"));
+        // 节点数量字段，损坏后不能越界读取，只能报告快照损坏
+        bytes[8] ^= 0x40;
+        Path corrupted = dir.resolve("header.snapshot");
+        Files.write(corrupted, bytes);
+        RuntimeException e = assertThrows(RuntimeException.class, () -> new ElectronicSnapshotAPI(corrupted.toString()));
+        assertTrue(e.getMessage().startsWith("Polygon snapshot"), e.getMessage());
+    }
+
+    @Test
+    void corruptedSerializedFormIsRejected() throws IOException {
+        byte[] bytes = serialize(json);
+        bytes[bytes.length / 2] ^= 1;
+        assertThrows(InvalidObjectException.class, () -> deserialize(bytes));
+    }
+
+    /**
+     * 比较每个点的匹配结果，以及点与所在各级区域、随机一个区县的比较结果。
+     */
+    private static void assertSameResults(AcsEFInterface expected, AcsEFInterface actual) {
+        Random random = new Random(7);
+        for (Point point : points) {
+            MatchResult match = expected.toMatch(point);
+            assertEquals(match, actual.toMatch(point), () -> "toMatch " + point);
+            List<String> codes = new ArrayList<>();
+            if (match != null) {
+                codes.add(match.getProvinceCode());
+                codes.add(match.getCityCode());
+                codes.add(match.getAreaCode());
+            }
+            codes.add(TestRegions.areaCode(random.nextInt(TestRegions.AREA_COUNT), random.nextInt(TestRegions.AREA_COUNT)));
+            for (String code : codes) {
+                if (code == null || code.isEmpty()) continue;
+                assertEquals(expected.toCompare(code, point).getVerified(), actual.toCompare(code, point).getVerified(),
+                        () -> "toCompare " + code + " " + point);
+            }
+        }
+    }
+
+    private static byte[] serialize(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.model.Point;
+import com.acs.efence.model.Polygon;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 测试使用的小规模省、市、区县三级区域数据，格式与region_polygon.json相同。
+ * <p>
+ * 生成方式与基准测试的SyntheticRegions相同：覆盖范围内的格点网带随机扰动，每条格点边插入带垂直扰动的中间点，
+ * 相邻区域共享完全相同的边界顶点，子区域恰好铺满上级区域。
+ * 每个方向2个省份、每个省份2×2个城市、每个城市2×2个区县、每个区县2×2个格点单元，共4个省份、16个城市、64个区县。
+ * 区县按格点块的位置编号，第(ai, aj)个区县的代码见 {@link #areaCode(int, int)}。
+ */
+public final class TestRegions {
+
+    /**
+     * 覆盖范围。
+     */
+    public static final double MIN_LNG = 110.0, MAX_LNG = 114.0, MIN_LAT = 30.0, MAX_LAT = 34.0;
+
+    /**
+     * 每个方向的省份数、每个省份每个方向的城市数、每个城市每个方向的区县数、每个区县每个方向的格点单元数。
+     */
+    public static final int PROVINCES = 2, CITIES = 2, AREAS = 2, CELLS = 2;
+
+    /**
+     * 每个方向的区县数。
+     */
+    public static final int AREA_COUNT = PROVINCES * CITIES * AREAS;
+
+    /**
+     * 每条格点边插入的中间点数量。
+     */
+    private static final int SUBDIVISIONS = 3;
+
+    /**
+     * 每个方向的格点单元数。
+     */
+    private static final int N = AREA_COUNT * CELLS;
+
+    private final long seed;
+
+    /**
+     * 扰动后的格点坐标。
+     */
+    private final double[][] latticeLng = new double[N + 1][N + 1], latticeLat = new double[N + 1][N + 1];
+
+    /**
+     * 按区域代码记录的格点块，依次为起始列、起始行和边长。
+     */
+    private final Map<String, int[]> blocks = new LinkedHashMap<>();
+
+    /**
+     * 创建测试数据，相同种子生成相同的数据。
+     *
+     * @param seed 随机种子。
+     */
+    public TestRegions(long seed) {
+        this.seed = seed;
+        double stepLng = (MAX_LNG - MIN_LNG) / N, stepLat = (MAX_LAT - MIN_LAT) / N;
+        Random random = new Random(seed);
+        for (int i = 0; i <= N; i++) {
+            for (int j = 0; j <= N; j++) {
+                // 覆盖范围四周的格点不扰动，保证最外层边界为矩形
+                boolean border = i == 0 || j == 0 || i == N || j == N;
+                latticeLng[i][j] = MIN_LNG + i * stepLng + (border ? 0 : (random.nextDouble() - 0.5) * 0.4 * stepLng);
+                latticeLat[i][j] = MIN_LAT + j * stepLat + (border ? 0 : (random.nextDouble() - 0.5) * 0.4 * stepLat);
+            }
+        }
+        int areaCells = CELLS, cityCells = AREAS * CELLS, provinceCells = CITIES * AREAS * CELLS;
+        for (int p = 0; p < PROVINCES * PROVINCES; p++) {
+            int pi = p % PROVINCES, pj = p / PROVINCES;
+            blocks.put(provinceCode(p), new int[]{pi * provinceCells, pj * provinceCells, provinceCells});
+            for (int c = 0; c < CITIES * CITIES; c++) {
+                int ci = pi * CITIES + c % CITIES, cj = pj * CITIES + c / CITIES;
+                blocks.put(cityCode(p, c), new int[]{ci * cityCells, cj * cityCells, cityCells});
+                for (int a = 0; a < AREAS * AREAS; a++) {
+                    int ai = ci * AREAS + a % AREAS, aj = cj * AREAS + a / AREAS;
+                    blocks.put(areaCode(ai, aj), new int[]{ai * areaCells, aj * areaCells, areaCells});
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成全部区域记录，顺序为省份、其下的城市、城市下的区县。
+     *
+     * @return 区域记录。
+     */
+    public List<Polygon> records() {
+        List<Polygon> records = new ArrayList<>(blocks.size());
+        for (Map.Entry<String, int[]> entry : blocks.entrySet()) {
+            String code = entry.getKey();
+            int[] block = entry.getValue();
+            boolean province = code.endsWith("0000"), city = !province && code.endsWith("00");
+            String pCode = code.substring(0, 2) + "0000", cCode = code.substring(0, 4) + "00";
+            records.add(new Polygon()
+                    .setCode(code)
+                    .setParent_code(province ? "CHN" : city ? pCode : cCode)
+                    .setP_code(pCode)
+                    .setC_code(province ? "" : cCode)
+                    .setA_code(province || city ? "" : code)
+                    .setLevel(province ? 1 : city ? 2 : 3)
+                    .setPolygon(outline(block[0], block[1], block[2])));
+        }
+        return records;
+    }
+
+    /**
+     * 获取区域对应的格点块。
+     *
+     * @param code 区域代码。
+     * @return 起始列、起始行和边长。
+     */
+    public int[] block(String code) {
+        return blocks.get(code);
+    }
+
+    /**
+     * 第(ai, aj)个区县的中心，即区县格点块中间的格点，位于区县内部，距区县边界至少0.3个格点单元。
+     *
+     * @param ai 区县所在的列。
+     * @param aj 区县所在的行。
+     * @return 中心点。
+     */
+    public Point center(int ai, int aj) {
+        int i = ai * CELLS + CELLS / 2, j = aj * CELLS + CELLS / 2;
+        return new Point(latticeLng[i][j], latticeLat[i][j]);
+    }
+
+    /**
+     * 全部格点，位于区域的边界上或格点单元的公共顶点上，用于检查边界上的判断结果。
+     *
+     * @return 格点列表。
+     */
+    public List<Point> latticePoints() {
+        List<Point> points = new ArrayList<>((N + 1) * (N + 1));
+        for (int i = 0; i <= N; i++) {
+            for (int j = 0; j <= N; j++) points.add(new Point(latticeLng[i][j], latticeLat[i][j]));
+        }
+        return points;
+    }
+
+    /**
+     * 生成随机点，范围比覆盖范围四周各大出一些，包含不在任何区域内的点。
+     *
+     * @param random 随机数生成器。
+     * @param count 点的数量。
+     * @return 随机点列表。
+     */
+    public static List<Point> randomPoints(Random random, int count) {
+        double margin = 0.2;
+        List<Point> points = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            double lng = MIN_LNG - margin + random.nextDouble() * (MAX_LNG - MIN_LNG + 2 * margin);
+            double lat = MIN_LAT - margin + random.nextDouble() * (MAX_LAT - MIN_LAT + 2 * margin);
+            points.add(new Point(lng, lat));
+        }
+        return points;
+    }
+
+    /**
+     * 第(ai, aj)个区县的代码。
+     *
+     * @param ai 区县所在的列。
+     * @param aj 区县所在的行。
+     * @return 区县代码。
+     */
+    public static String areaCode(int ai, int aj) {
+        int ci = ai / AREAS, cj = aj / AREAS, pi = ci / CITIES, pj = cj / CITIES;
+        int p = pj * PROVINCES + pi, c = (cj % CITIES) * CITIES + ci % CITIES, a = (aj % AREAS) * AREAS + ai % AREAS;
+        return cityCode(p, c).substring(0, 4) + String.format("%02d", a + 1);
+    }
+
+    /**
+     * 将区域记录写入JSON文件。
+     *
+     * @param records 区域记录。
+     * @param file 输出文件路径。
+     * @return 输出文件路径的字符串形式。
+     */
+    public static String write(List<Polygon> records, Path file) {
+        try {
+            Files.write(file, new Gson().toJson(records).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file.toString();
+    }
+
+    private static String provinceCode(int p) {
+        return String.format("%02d0000", 11 + p);
+    }
+
+    private static String cityCode(int p, int c) {
+        return provinceCode(p).substring(0, 2) + String.format("%02d00", c + 1);
+    }
+
+    /**
+     * 按逆时针方向输出格点块的外边界，依次经过下、右、上、左四条边。
+     *
+     * @param i0 起始列。
+     * @param j0 起始行。
+     * @param size 格点块的边长。
+     * @return 多边形文本。
+     */
+    public String outline(int i0, int j0, int size) {
+        StringBuilder text = new StringBuilder();
+        for (int i = i0; i < i0 + size; i++) edge(text, i, j0, i + 1, j0);
+        for (int j = j0; j < j0 + size; j++) edge(text, i0 + size, j, i0 + size, j + 1);
+        for (int i = i0 + size; i > i0; i--) edge(text, i, j0 + size, i - 1, j0 + size);
+        for (int j = j0 + size; j > j0; j--) edge(text, i0, j, i0, j - 1);
+        return text.toString();
+    }
+
+    /**
+     * 输出一条格点边的起点和中间点，不含终点。中间点只由边的位置决定，与遍历方向无关。
+     */
+    private void edge(StringBuilder text, int i0, int j0, int i1, int j1) {
+        boolean reversed = i1 < i0 || j1 < j0;
+        int ai = reversed ? i1 : i0, aj = reversed ? j1 : j0, bi = reversed ? i0 : i1, bj = reversed ? j0 : j1;
+        double x0 = latticeLng[ai][aj], y0 = latticeLat[ai][aj], x1 = latticeLng[bi][bj], y1 = latticeLat[bi][bj];
+        Random random = new Random(seed ^ ((long) ai * 1_000_003L + aj) * 31 + (bi == ai ? 1 : 2));
+        double[] xs = new double[SUBDIVISIONS], ys = new double[SUBDIVISIONS];
+        for (int k = 0; k < SUBDIVISIONS; k++) {
+            double t = (k + 1.0) / (SUBDIVISIONS + 1);
+            double wiggle = (random.nextDouble() - 0.5) * 0.15 / (SUBDIVISIONS + 1);
+            xs[k] = x0 + (x1 - x0) * t - (y1 - y0) * wiggle;
+            ys[k] = y0 + (y1 - y0) * t + (x1 - x0) * wiggle;
+        }
+        append(text, latticeLng[i0][j0], latticeLat[i0][j0]);
+        for (int k = 0; k < SUBDIVISIONS; k++) {
+            int m = reversed ? SUBDIVISIONS - 1 - k : k;
+            append(text, xs[m], ys[m]);
+        }
+    }
+
+    private static void append(StringBuilder text, double lng, double lat) {
+        if (text.length() > 0) text.append(';');
+        text.append(lng).append(',').append(lat);
+    }
+}
@@ -0,0 +1,130 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence;
+
+import com.acs.efence.model.Point;
+import com.acs.efence.model.TransitionEvent;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link TrajectoryMatcher} 跨越共享边界时产生的区域变化事件序列测试。
+ * <p>
+ * 事件以"类型 代码"的形式比较：先由最细层级向上依次离开，到共同的上级区域为止，再由共同的上级区域向下依次进入。
+ */
+class TrajectoryMatcherTest {
+
+    @TempDir
+    static Path dir;
+
+    private static TestRegions regions;
+
+    private static ElectronicJsonAPI api;
+
+    @BeforeAll
+    static void load() {
+        regions = new TestRegions(4L);
+        api = new ElectronicJsonAPI(TestRegions.write(regions.records(), dir.resolve("regions.json")));
+    }
+
+    @Test
+    void crossesSharedBorders() {
+        List<TransitionEvent> events = new ArrayList<>();
+        TrajectoryMatcher matcher = new TrajectoryMatcher(api, events::add);
+
+        // 从区域外进入区县110101
+        update(matcher, regions.center(0, 0), 1);
+        assertEvents(events, "ENTER 110000", "ENTER 110100", "ENTER 110101");
+        assertEquals("110101", matcher.getCurrentCode());
+
+        // 在同一区县内移动不产生事件
+        update(matcher, regions.center(0, 0), 2);
+        assertEvents(events);
+
+        // 同一城市内的相邻区县
+        update(matcher, regions.center(1, 0), 3);
+        assertEvents(events, "EXIT 110101", "ENTER 110102");
+
+        // 同一省份内的相邻城市
+        update(matcher, regions.center(2, 0), 4);
+        assertEvents(events, "EXIT 110102", "EXIT 110100", "ENTER 110200", "ENTER 110201");
+
+        // 相邻省份
+        update(matcher, regions.center(4, 0), 5);
+        assertEvents(events, "EXIT 110201", "EXIT 110200", "EXIT 110000", "ENTER 120000", "ENTER 120100", "ENTER 120101");
+
+        // 离开全部区域
+        Point outside = new Point(TestRegions.MIN_LNG - 1, TestRegions.MIN_LAT - 1);
+        assertNull(matcher.update(outside.getLng(), outside.getLat(), 6));
+        assertEvents(events, "EXIT 120101", "EXIT 120100", "EXIT 120000");
+        assertNull(matcher.getCurrentCode());
+    }
+
+    @Test
+    void eventsCarryTrajectoryPoint() {
+        List<TransitionEvent> events = new ArrayList<>();
+        TrajectoryMatcher matcher = new TrajectoryMatcher(api, events::add);
+        update(matcher, regions.center(0, 0), 10);
+        events.clear();
+        Point next = regions.center(0, 1);
+        update(matcher, next, 20);
+        assertEquals(2, events.size());
+        for (TransitionEvent event : events) {
+            assertEquals(next.getLng(), event.getLng());
+            assertEquals(next.getLat(), event.getLat());
+            assertEquals(20, event.getTimestamp());
+            assertEquals(3, (int) event.getLevel());
+        }
+        assertEquals("110103", events.get(1).getCode());
+    }
+
+    @Test
+    void resetDoesNotEmitExit() {
+        List<TransitionEvent> events = new ArrayList<>();
+        TrajectoryMatcher matcher = new TrajectoryMatcher(api, events::add);
+        update(matcher, regions.center(0, 0), 1);
+        events.clear();
+        matcher.reset();
+        update(matcher, regions.center(1, 0), 2);
+        assertEvents(events, "ENTER 110000", "ENTER 110100", "ENTER 110102");
+    }
+
+    /**
+     * 处理轨迹点，并检查返回的匹配结果与 {@link AcsEFInterface#toMatch(Point)} 相同。
+     */
+    private static void update(TrajectoryMatcher matcher, Point point, long timestamp) {
+        assertEquals(api.toMatch(point), matcher.update(point.getLng(), point.getLat(), timestamp));
+    }
+
+    /**
+     * 检查自上次检查以来产生的事件序列，检查后清空。
+     */
+    private static void assertEvents(List<TransitionEvent> events, String... expected) {
+        List<String> actual = new ArrayList<>();
+        for (TransitionEvent event : events) actual.add(event.getType() + " " + event.getCode());
+        assertEquals(Arrays.asList(expected), actual);
+        events.clear();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.AcsEFInterface;
+import com.acs.efence.ElectronicJsonAPI;
+import com.acs.efence.TestRegions;
+import com.acs.efence.model.Point;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link CellCache} 的结果、计数和淘汰测试。
+ */
+class CellCacheTest {
+
+    @TempDir
+    static Path dir;
+
+    private static TestRegions regions;
+
+    private static String file;
+
+    @BeforeAll
+    static void load() {
+        regions = new TestRegions(8L);
+        file = TestRegions.write(regions.records(), dir.resolve("regions.json"));
+    }
+
+    @Test
+    void cachedResultsEqualUncached() {
+        AcsEFInterface plain = new ElectronicJsonAPI(file);
+        AcsEFInterface cached = new ElectronicJsonAPI(file).enableCellCache(64, 0.01);
+        // 围绕少数几个中心的轨迹点，同一小网格会被重复访问，容量不足时发生淘汰
+        Random random = new Random(29);
+        List<Point> points = new ArrayList<>();
+        for (Point center : regions.latticePoints().subList(0, 40)) {
+            for (int k = 0; k < 200; k++) {
+                points.add(new Point(center.getLng() + (random.nextDouble() - 0.5) * 0.05,
+                        center.getLat() + (random.nextDouble() - 0.5) * 0.05));
+            }
+        }
+        for (Point point : points) {
+            assertEquals(plain.toMatch(point), cached.toMatch(point), () -> "toMatch " + point);
+            String code = plain.toMatch(point) == null ? "110101" : plain.toMatch(point).getAreaCode();
+            assertEquals(plain.toCompare(code, point).getVerified(), cached.toCompare(code, point).getVerified(),
+                    () -> "toCompare " + code + " " + point);
+        }
+        CellCache cache = cached.getCellCache();
+        assertTrue(cache.getMisses() > 0);
+        assertTrue(cache.getHits() > 0);
+        assertTrue(cache.size() <= cache.getCapacity());
+    }
+
+    @Test
+    void countsHitsAndBoundaryHitsSeparately() {
+        CellCache cache = new ElectronicJsonAPI(file).enableCellCache(1024, 0.001).getCellCache();
+        Point inside = regions.center(0, 0);
+        assertNotNull(cache.get(inside.getLng(), inside.getLat()));
+        CellCache.Cell cell = cache.get(inside.getLng(), inside.getLat());
+        assertNotNull(cell);
+        assertEquals("110101", cell.hit().getCode());
+        assertTrue(cell.contains("110000"));
+        assertTrue(cell.contains("110100"));
+        assertFalse(cell.contains("110102"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // 格点是多个区县的公共顶点，所在的小网格一定有边经过
+        int size = TestRegions.AREA_COUNT * TestRegions.CELLS + 1;
+        Point vertex = regions.latticePoints().get(TestRegions.CELLS * size + TestRegions.CELLS);
+        assertNull(cache.get(vertex.getLng(), vertex.getLat()));
+        assertNull(cache.get(vertex.getLng(), vertex.getLat()));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getBoundaryHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    void evictionKeepsCapacity() {
+        CellCache cache = new ElectronicJsonAPI(file).enableCellCache(16, 0.001).getCellCache();
+        Random random = new Random(31);
+        for (int k = 0; k < 2000; k++) {
+            cache.get(111 + random.nextDouble(), 31 + random.nextDouble());
+            assertTrue(cache.size() <= 16);
+        }
+        assertEquals(16, cache.size());
+        // 反复访问的小网格在淘汰后仍能得到正确的结果
+        Point inside = regions.center(0, 0);
+        for (int k = 0; k < 100; k++) {
+            cache.get(111 + random.nextDouble(), 31 + random.nextDouble());
+            assertEquals("110101", cache.get(inside.getLng(), inside.getLat()).hit().getCode());
+        }
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
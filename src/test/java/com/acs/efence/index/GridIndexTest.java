@@ -0,0 +1,145 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.BoundingBox;
+import com.acs.efence.model.Point;
+import com.acs.efence.model.PolygonNode;
+import com.acs.efence.model.Ring;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link GridIndex} 的查询结果与逐个判断多边形的结果比较，以及 {@link GridIndex#patch} 与完整重建的比较。
+ * <p>
+ * 测试区域为一个上级区域和恰好铺满它的两个子区域，两个子区域共享一条折线边界。
+ */
+class GridIndexTest {
+
+    private static final int CELLS = 4096;
+
+    @Test
+    void lookupMatchesBruteForce() {
+        List<PolygonNode> regions = Arrays.asList(
+                node("P", "0,0;4,0;4,2;0,2"),
+                node("A", "0,0;2,0;2.3,1;2,2;0,2"),
+                node("B", "2,0;4,0;4,2;2,2;2.3,1"));
+        GridIndex grid = build(regions);
+        int inner = check(grid, regions, new Random(43));
+        assertTrue(inner > 0);
+
+        // 共享边界上的点所在的网格一定是边界网格
+        for (double t = 0; t <= 1; t += 0.05) {
+            assertEquals(GridIndex.BOUNDARY, grid.lookup(2 + 0.3 * t, t));
+        }
+        assertEquals(GridIndex.OUTSIDE, grid.lookup(5, 1));
+    }
+
+    @Test
+    void patchEqualsRebuild() {
+        PolygonNode parent = node("P", "0,0;4,0;4,2;0,2");
+        PolygonNode a = node("A", "0,0;2,0;2.3,1;2,2;0,2");
+        PolygonNode b = node("B", "2,0;4,0;4,2;2,2;2.3,1");
+        List<PolygonNode> before = Arrays.asList(parent, a, b);
+        GridIndex grid = build(before);
+
+        // B缩小为右下角的一块，原来的其余范围只属于P
+        PolygonNode shrunk = node("B", "3,0.2;3.8,0.2;3.8,1;3,1");
+        List<PolygonNode> after = Arrays.asList(parent, a, shrunk);
+        Map<String, PolygonNode> byCode = new HashMap<>();
+        after.forEach(region -> byCode.put(region.getCode(), region));
+        GridIndex patched = grid.patch(Arrays.asList(b.getBounds(), shrunk.getBounds()), after, byCode::get,
+                point -> match(after, point), GridIndexTest::contains);
+        assertNotNull(patched);
+
+        check(patched, after, new Random(47));
+        check(build(after), after, new Random(47));
+        // 原网格索引保持不变
+        check(grid, before, new Random(53));
+    }
+
+    @Test
+    void patchOutsideExtentNeedsRebuild() {
+        List<PolygonNode> regions = Collections.singletonList(node("P", "0,0;4,0;4,2;0,2"));
+        PolygonNode grown = node("P", "0,0;5,0;5,2;0,2");
+        GridIndex patched = build(regions).patch(Collections.singletonList(grown.getBounds()),
+                Collections.singletonList(grown), code -> grown, point -> contains(grown, point) ? grown : null,
+                GridIndexTest::contains);
+        assertNull(patched);
+    }
+
+    /**
+     * 用随机点检查非边界网格的结果，返回落在非边界网格内的点数。
+     */
+    private static int check(GridIndex grid, List<PolygonNode> regions, Random random) {
+        int inner = 0;
+        for (int k = 0; k < 20000; k++) {
+            Point point = new Point(-0.5 + random.nextDouble() * 5, -0.5 + random.nextDouble() * 3);
+            int component = grid.lookup(point.getLng(), point.getLat());
+            if (component == GridIndex.BOUNDARY) continue;
+            if (component == GridIndex.OUTSIDE) {
+                assertNull(match(regions, point), () -> "outside " + point);
+                continue;
+            }
+            inner++;
+            assertEquals(match(regions, point), grid.hit(component), () -> "hit " + point);
+            for (PolygonNode region : regions) {
+                assertEquals(contains(region, point), grid.contains(component, region.getCode()),
+                        () -> "contains " + region.getCode() + " " + point);
+            }
+        }
+        return inner;
+    }
+
+    private static GridIndex build(List<PolygonNode> regions) {
+        return new GridIndex(regions, point -> match(regions, point), GridIndexTest::contains, CELLS);
+    }
+
+    /**
+     * 点所在的最细层级区域：子区域优先于上级区域。
+     */
+    private static PolygonNode match(List<PolygonNode> regions, Point point) {
+        PolygonNode hit = null;
+        for (PolygonNode region : regions) {
+            if (contains(region, point) && (hit == null || !region.getCode().equals("P"))) hit = region;
+        }
+        return hit;
+    }
+
+    private static boolean contains(PolygonNode region, Point point) {
+        for (Ring ring : region.getRings()) {
+            if (ring.contains(point.getLng(), point.getLat())) return true;
+        }
+        return false;
+    }
+
+    private static PolygonNode node(String code, String polygon) {
+        Ring ring = Ring.parse(polygon);
+        BoundingBox bounds = BoundingBox.empty().union(ring.getBounds());
+        return new PolygonNode().setCode(code).setRings(Collections.singletonList(ring)).setBounds(bounds);
+    }
+}
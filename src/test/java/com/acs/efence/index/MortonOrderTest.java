@@ -0,0 +1,79 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.index;
+
+import com.acs.efence.model.BoundingBox;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link MortonOrder} 的排列测试。
+ */
+class MortonOrderTest {
+
+    private static final BoundingBox UNIT = BoundingBox.of(new double[]{0, 1}, new double[]{0, 1});
+
+    @Test
+    void returnsPermutation() {
+        Random random = new Random(37);
+        int n = 10000;
+        double[] lngs = new double[n], lats = new double[n];
+        for (int i = 0; i < n; i++) {
+            lngs[i] = random.nextDouble() * 1.2 - 0.1;
+            lats[i] = random.nextDouble() * 1.2 - 0.1;
+        }
+        int[] order = MortonOrder.sort(lngs, lats, UNIT);
+        int[] sorted = order.clone();
+        Arrays.sort(sorted);
+        for (int i = 0; i < n; i++) assertTrue(sorted[i] == i, "missing index " + i);
+    }
+
+    @Test
+    void ordersQuadrantsAlongZCurve() {
+        // 依次为右上、左下、左上、右下四个象限
+        double[] lngs = {0.9, 0.1, 0.1, 0.9};
+        double[] lats = {0.9, 0.1, 0.9, 0.1};
+        assertArrayEquals(new int[]{1, 3, 2, 0}, MortonOrder.sort(lngs, lats, UNIT));
+    }
+
+    @Test
+    void keepsOrderOfEqualCodes() {
+        // 范围之外和NaN按最近的边界量化，与角点的Morton码相同
+        double[] lngs = {0.5, 0.0, -3.0, Double.NaN, 0.5, 0.0};
+        double[] lats = {0.5, 0.0, -3.0, Double.NaN, 0.5, 0.0};
+        assertArrayEquals(new int[]{1, 2, 3, 5, 0, 4}, MortonOrder.sort(lngs, lats, UNIT));
+    }
+
+    @Test
+    void nearbyPointsStayTogether() {
+        // 两个相距很远的点簇交替出现，排列后每个点簇连续
+        int n = 200;
+        double[] lngs = new double[n], lats = new double[n];
+        Random random = new Random(41);
+        for (int i = 0; i < n; i++) {
+            double base = i % 2 == 0 ? 0.1 : 0.8;
+            lngs[i] = base + random.nextDouble() * 0.05;
+            lats[i] = base + random.nextDouble() * 0.05;
+        }
+        int[] order = MortonOrder.sort(lngs, lats, UNIT);
+        for (int k = 0; k < n; k++) assertTrue(order[k] % 2 == (k < n / 2 ? 0 : 1), "position " + k);
+    }
+}
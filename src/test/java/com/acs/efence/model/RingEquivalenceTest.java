@@ -0,0 +1,285 @@
+/*
+Copyright 2024 Beaulis Wechat:B000l8
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+package com.acs.efence.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 多边形环各种判断方式与原始射线法的一致性测试。
+ * <p>
+ * 原始射线法即最初版本 {@code AcsEFInterface.isInPolygon(Point, List<Point>)} 的实现，原样保留在本测试中作为基准。
+ * 被检查的判断方式包括：{@link Ring#contains(double, double)}（含简化轮廓），竖带边索引 {@link EdgeSlabs}，
+ * 定点数环 {@link FixedRing} 和简化轮廓 {@link RingEnvelope}。
+ * 测试多边形的顶点位于规则网格上，覆盖与顶点重合、位于边上、射线经过顶点、竖直边和水平边等情况，另外加上随机点。
+ */
+class RingEquivalenceTest {
+
+    /**
+     * 简化轮廓的容差，与 {@link Ring#SIMPLIFY_TOLERANCE} 的默认值相同。
+     */
+    private static final double TOLERANCE = 0.002;
+
+    /**
+     * 定点数环只保证与边界的距离大于量化误差的点结果相同，随机点与边界的距离需要大于该值。
+     */
+    private static final double FIXED_CLEARANCE = 1e-6;
+
+    @Test
+    void squareWithVerticalEdges() {
+        verify(113.0, 22.0, 0.1, new int[][]{{0, 0}, {0, 10}, {10, 10}, {10, 0}}, 2000);
+    }
+
+    @Test
+    void concaveWithSharedLongitudes() {
+        // 凹口的顶点与其他顶点经度相同，经过这些经度的射线穿过顶点或沿竖直边
+        verify(113.0, 22.0, 0.1, new int[][]{
+                {0, 0}, {0, 6}, {2, 6}, {2, 2}, {4, 4}, {6, 2}, {6, 6}, {8, 6}, {8, 0}, {6, 0}, {4, 2}, {2, 0}
+        }, 2000);
+    }
+
+    @Test
+    void duplicateAndCollinearVertices() {
+        verify(113.0, 22.0, 0.1, new int[][]{
+                {0, 0}, {0, 3}, {0, 3}, {0, 6}, {3, 6}, {6, 6}, {6, 6}, {9, 3}, {6, 0}, {3, 0}
+        }, 2000);
+    }
+
+    @Test
+    void triangleWithSlantedEdges() {
+        verify(113.0, 22.0, 0.1, new int[][]{{0, 0}, {7, 3}, {2, 9}}, 2000);
+    }
+
+    @Test
+    void largeStarPolygon() {
+        // 顶点数超过竖带边索引和简化轮廓的默认阈值，顶点取在0.0001度的网格上
+        Random random = new Random(20240517);
+        int n = 600;
+        int[][] vertices = new int[n][];
+        for (int i = 0; i < n; i++) {
+            double angle = 2 * Math.PI * i / n;
+            double radius = 5000 + (i % 40 < 20 ? 0 : 1500) + random.nextInt(30);
+            vertices[i] = new int[]{(int) Math.round(radius * Math.cos(angle)), (int) Math.round(radius * Math.sin(angle))};
+        }
+        assertNotNull(RingEnvelope.of(Ring.of(polygon(113.5, 22.5, 0.0001, vertices)), TOLERANCE));
+        verify(113.5, 22.5, 0.0001, vertices, 20000);
+    }
+
+    @Test
+    void largeCombPolygon() {
+        // 梳齿形多边形含大量竖直边和水平边，射线经常沿竖直边或经过顶点
+        int teeth = 80;
+        List<int[]> vertices = new ArrayList<>();
+        vertices.add(new int[]{0, 0});
+        for (int t = 0; t < teeth; t++) {
+            int x = t * 4;
+            vertices.add(new int[]{x, 10 + t % 3});
+            vertices.add(new int[]{x + 2, 10 + t % 3});
+            vertices.add(new int[]{x + 2, 3});
+            vertices.add(new int[]{x + 4, 3});
+        }
+        vertices.add(new int[]{teeth * 4, 0});
+        verify(100.0, 30.0, 0.01, vertices.toArray(new int[0][]), 20000);
+    }
+
+    /**
+     * 以网格坐标创建多边形顶点列表。
+     */
+    private static List<Point> polygon(double lng, double lat, double step, int[][] vertices) {
+        List<Point> points = new ArrayList<>(vertices.length);
+        for (int[] v : vertices) points.add(new Point(lng + v[0] * step, lat + v[1] * step));
+        return points;
+    }
+
+    /**
+     * 对网格坐标给出的多边形检查全部顶点、边的中点、射线经过顶点的点、外包矩形内外的网格点和随机点。
+     * 网格点与顶点使用同样的方式计算坐标，与边界的距离为0或至少半个网格。
+     */
+    private static void verify(double lng, double lat, double step, int[][] vertices, int randomPoints) {
+        List<Point> pts = polygon(lng, lat, step, vertices);
+        Ring ring = Ring.of(pts);
+        // 网格坐标量化没有误差，定点数环与原始射线法判断同一组顶点
+        FixedRing fixed = FixedRing.quantize(ring.getLngs(), ring.getLats());
+        assertNotNull(fixed);
+        RingEnvelope envelope = RingEnvelope.of(ring, TOLERANCE);
+        Checker checker = new Checker(pts, new Ring(ring.getLngs(), ring.getLats()), fixed, envelope);
+
+        int n = pts.size();
+        for (int i = 0; i < n; i++) {
+            Point a = pts.get(i), b = pts.get((i + 1) % n);
+            checker.check(a.getLng(), a.getLat(), true);
+            checker.check((a.getLng() + b.getLng()) / 2, (a.getLat() + b.getLat()) / 2, true);
+            // 射线经过顶点：与顶点经度相同、纬度在顶点上下的点
+            for (int k = -3; k <= 3; k++) checker.check(a.getLng(), lat + (vertices[i][1] * 2 + k) * step / 2, true);
+        }
+        int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+        for (int[] v : vertices) {
+            minX = Math.min(minX, v[0]);
+            maxX = Math.max(maxX, v[0]);
+            minY = Math.min(minY, v[1]);
+            maxY = Math.max(maxY, v[1]);
+        }
+        // 半个网格的步长遍历，网格较大时跳过一部分
+        long cells = (long) (maxX - minX + 5) * 2 * (maxY - minY + 5) * 2;
+        int stride = (int) Math.max(1, cells / 40000);
+        long k = 0;
+        for (int c = (minX - 2) * 2; c <= (maxX + 2) * 2; c++) {
+            for (int r = (minY - 2) * 2; r <= (maxY + 2) * 2; r++) {
+                if (k++ % stride == 0) checker.check(lng + c * step / 2, lat + r * step / 2, true);
+            }
+        }
+        Random random = new Random(n);
+        double x0 = lng + minX * step, y0 = lat + minY * step, width = (maxX - minX) * step, height = (maxY - minY) * step;
+        for (int i = 0; i < randomPoints; i++) {
+            double x = x0 - width * 0.1 + random.nextDouble() * width * 1.2;
+            double y = y0 - height * 0.1 + random.nextDouble() * height * 1.2;
+            checker.check(x, y, distance(pts, x, y) > FIXED_CLEARANCE);
+        }
+    }
+
+    /**
+     * 点到多边形边界的最短距离（度）。
+     */
+    private static double distance(List<Point> pts, double lng, double lat) {
+        double min = Double.POSITIVE_INFINITY;
+        int n = pts.size();
+        for (int i = 0; i < n; i++) {
+            Point a = pts.get(i), b = pts.get((i + 1) % n);
+            double dx = b.getLng() - a.getLng(), dy = b.getLat() - a.getLat(), length2 = dx * dx + dy * dy;
+            double t = length2 > 0 ? ((lng - a.getLng()) * dx + (lat - a.getLat()) * dy) / length2 : 0;
+            t = Math.max(0, Math.min(1, t));
+            double ex = lng - a.getLng() - t * dx, ey = lat - a.getLat() - t * dy;
+            min = Math.min(min, Math.sqrt(ex * ex + ey * ey));
+        }
+        return min;
+    }
+
+    /**
+     * 使用同一组顶点的各种判断方式与原始射线法逐点比较。
+     */
+    private static final class Checker {
+
+        private final List<Point> pts;
+        private final Ring ring;
+        private final FixedRing fixed;
+        private final RingEnvelope envelope;
+
+        Checker(List<Point> pts, Ring ring, FixedRing fixed, RingEnvelope envelope) {
+            this.pts = pts;
+            this.ring = ring;
+            this.fixed = fixed;
+            this.envelope = envelope;
+        }
+
+        /**
+         * @param checkFixed 是否检查定点数环，点与边界的距离小于量化误差时不检查。
+         */
+        void check(double lng, double lat, boolean checkFixed) {
+            boolean expected = isInPolygon(new Point(lng, lat), pts);
+            String at = lng + "," + lat;
+            assertEquals(expected, ring.contains(lng, lat), "Ring.contains " + at);
+            if (ring.isPrepared()) assertEquals(expected, ring.containsPrepared(lng, lat), "EdgeSlabs " + at);
+            if (checkFixed) assertEquals(expected, fixed.contains(lng, lat), "FixedRing " + at);
+            if (envelope != null) {
+                int side = envelope.side(lng, lat);
+                if (side != RingEnvelope.BAND) assertEquals(expected, side == RingEnvelope.INSIDE, "RingEnvelope " + at);
+            }
+        }
+    }
+
+    /**
+     * 原始射线法，与最初版本的实现相同，作为比较的基准。
+     */
+    private static boolean isInPolygon(Point point, List<Point> pts) {
+        /* 多边形的顶点数量 */
+        int N = pts.size();
+        /* 边界或顶点上的点是否被视为在多边形内 */
+        boolean boundOrVertex = true;
+        /* 交点计数器 */
+        int intersectCount = 0;
+        /* 浮点数比较的精度阈值 */
+        double precision = 2e-10;
+        Point p1, p2;
+        Point p = point;
+
+        /* 从第一个顶点开始 */
+        p1 = pts.get(0);
+        for (int i = 1; i <= N; ++i) {
+            /* 如果当前点与p1重合，则点在顶点上 */
+            if (p.equals(p1)) {
+                return boundOrVertex;
+            }
+
+            /* 获取下一个顶点 */
+            p2 = pts.get(i % N);
+            /* 如果当前点在p1和p2的垂直投影之外，则跳过当前边，考虑下一条边 */
+            if (p.getLng() < Math.min(p1.getLng(), p2.getLng()) || p.getLng() > Math.max(p1.getLng(), p2.getLng())) {
+                p1 = p2;
+                continue;
+            }
+
+            /* 射线与边的相交判断 */
+            if (p.getLng() > Math.min(p1.getLng(), p2.getLng()) && p.getLng() < Math.max(p1.getLng(), p2.getLng())) {
+                if (p.getLat() <= Math.max(p1.getLat(), p2.getLat())) {
+                    /* 如果p1和p2的经度相同，且当前点在它们的纬度范围内，则当前点在边界上 */
+                    if (p1.getLng() == p2.getLng() && p.getLat() >= Math.min(p1.getLat(), p2.getLat())) {
+                        return boundOrVertex;
+                    }
+
+                    /* 如果p1和p2的纬度相同，且当前点在它们的经度范围内，则交点数加一 */
+                    if (p1.getLat() == p2.getLat()) {
+                        if (p1.getLat() == p.getLat()) {
+                            return boundOrVertex;
+                        } else {
+                            ++intersectCount;
+                        }
+                    } else {
+                        /* 计算交点的纬度 */
+                        double xinters = (p.getLng() - p1.getLng()) * (p2.getLat() - p1.getLat()) / (p2.getLng() - p1.getLng()) + p1.getLat();
+                        /* 如果当前点的纬度与交点的纬度相差小于精度，则当前点在边界上 */
+                        if (Math.abs(p.getLat() - xinters) < precision) {
+                            return boundOrVertex;
+                        }
+                        /* 如果当前点的纬度小于交点的纬度，则交点数加一 */
+                        if (p.getLat() < xinters) {
+                            ++intersectCount;
+                        }
+                    }
+                }
+            } else {
+                /* 射线经过p2顶点时，根据相邻两条边是否位于射线两侧决定交点数 */
+                if (p.getLng() == p2.getLng() && p.getLat() <= p2.getLat()) {
+                    Point p3 = pts.get((i + 1) % N);
+                    if (p.getLng() >= Math.min(p1.getLng(), p3.getLng()) && p.getLng() <= Math.max(p1.getLng(), p3.getLng())) {
+                        ++intersectCount;
+                    } else {
+                        intersectCount += 2;
+                    }
+                }
+            }
+            /* 更新当前边 */
+            p1 = p2;
+        }
+        /* 如果交点数为奇数，则点在多边形内部；否则在外部 */
+        return intersectCount % 2 != 0;
+    }
+}